@@ -2,25 +2,121 @@ package com.udacity.application;
 
 import com.google.inject.Guice;
 import com.google.inject.Inject;
+import com.google.inject.Injector;
 import com.udacity.application.panel.CatpointGui;
+import com.udacity.application.panel.EdtWatchdog;
 import com.udacity.application.panel.PanelModule;
 import com.udacity.constant.common.Constants;
 import com.udacity.image.service.ImageModule;
+import com.udacity.security.camera.CameraPipeline;
+import com.udacity.security.camera.DirectoryCameraSource;
+import com.udacity.security.camera.MjpegCameraSource;
 import com.udacity.security.data.SecurityModule;
+import com.udacity.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import java.awt.Toolkit;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This is the main class that launches the application.
  *  这个是启动应用程序的主类
  */
 public class CatpointApp {
+    private static final Logger log = LoggerFactory.getLogger(CatpointApp.class);
     @Inject
     private CatpointGui gui;
+    @Inject
+    private CameraPipeline cameraPipeline;
+    @Inject
+    private EdtWatchdog edtWatchdog;
     public void run(){
-        Guice.createInjector(new SecurityModule(), new ImageModule(Constants.AWS_CONTROL),new PanelModule()).injectMembers(this);
-        gui.builder();
-        gui.setVisible(true);
+        StartupTimer timer = new StartupTimer();
+        Injector injector = timer.time("injector", () ->
+                Guice.createInjector(new SecurityModule(), new ImageModule(Constants.AWS_CONTROL), new PanelModule()));
+        // 在后台读取传感器和布防/警报状态并构建服务, 同时主线程初始化 Swing
+        // Load the sensors and alarm/arming state and build the services in the background while
+        // this thread initializes Swing; the panels then pick up the finished SecurityService
+        CompletableFuture<Void> state = CompletableFuture.runAsync(
+                () -> timer.time("state", () -> injector.getInstance(SecurityService.class)), r -> {
+                    Thread t = new Thread(r, "startup-state-loader");
+                    t.setDaemon(true);
+                    t.start();
+                });
+        timer.time("toolkit", () -> {
+            Toolkit.getDefaultToolkit();
+            UIManager.getLookAndFeelDefaults();
+        });
+        timer.time("gui", () -> {
+            injector.injectMembers(this);
+            gui.builder();
+            gui.setVisible(true);
+        });
+        // 窗口显示后 EDT 处理的第一个事件即可交互
+        // the first event the EDT handles after the window is shown marks it interactive
+        SwingUtilities.invokeLater(() -> {
+            timer.mark("interactive");
+            log.info("Startup: {}", timer);
+        });
+        state.exceptionally(t -> {
+            log.warn("Background state loading failed", t);
+            return null;
+        });
+        // 监视 EDT 卡顿, 超过阈值时记录 EDT 调用栈, 退出时输出延迟统计
+        // Watch the EDT for stalls, log its stack when one exceeds the threshold and the latency summary on exit
+        edtWatchdog.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(edtWatchdog::close, "edt-watchdog-shutdown"));
+        addConfiguredCameras(cameraPipeline);
+    }
+
+    /**
+     * Run without Swing: only SecurityModule and ImageModule are wired, no window and no EDT.
+     * Stops gracefully and flushes the stored state on SIGTERM / Ctrl+C.
+     */
+    public static void runHeadless() throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        StartupTimer timer = new StartupTimer();
+        Injector injector = timer.time("injector", () ->
+                Guice.createInjector(new SecurityModule(), new ImageModule(Constants.AWS_CONTROL)));
+        CatpointDaemon daemon = timer.time("state", () -> injector.getInstance(CatpointDaemon.class));
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "catpoint-daemon-shutdown"));
+        timer.time("start", daemon::start);
+        log.info("Startup: {}", timer);
+        daemon.awaitStop();
+    }
+
+    /**
+     * Connect the cameras named by system properties.
+     */
+    static void addConfiguredCameras(CameraPipeline cameraPipeline) {
+        // 可选: 监视摄像头快照目录, 例如 -Dcatpoint.camera.dir=/var/cameras/front-door
+        // Optional continuous feed from a directory of camera snapshots
+        String cameraDir = System.getProperty(Constants.CAMERA_DIRECTORY_PROPERTY);
+        if (cameraDir != null && !cameraDir.trim().isEmpty()) {
+            Path dir = Path.of(cameraDir.trim());
+            cameraPipeline.addSource(new DirectoryCameraSource(dir.getFileName().toString(), dir));
+        }
+        // 可选: 网络摄像头 MJPEG 流, 例如 -Dcatpoint.camera.mjpeg=http://192.168.1.20:8080/video
+        // Optional MJPEG stream of an IP camera
+        String mjpegUrl = System.getProperty(Constants.CAMERA_MJPEG_URL_PROPERTY);
+        if (mjpegUrl != null && !mjpegUrl.trim().isEmpty()) {
+            URI uri = URI.create(mjpegUrl.trim());
+            cameraPipeline.addSource(new MjpegCameraSource(uri.getHost(), uri));
+        }
     }
-    public static void main(String[] args) {
-        new CatpointApp().run();
+    public static void main(String[] args) throws InterruptedException {
+        // 服务器部署: java CatpointApp --headless 或 -Dcatpoint.headless=true
+        // Server deployments: --headless or -Dcatpoint.headless=true
+        if (Boolean.getBoolean(Constants.HEADLESS_PROPERTY) || Arrays.asList(args).contains("--headless")) {
+            runHeadless();
+        } else {
+            new CatpointApp().run();
+        }
     }
 }
@@ -0,0 +1,118 @@
+package com.udacity.application;
+
+import com.google.inject.Inject;
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.security.camera.CameraPipeline;
+import com.udacity.security.data.Storage;
+import com.udacity.security.service.ImageScanExecutor;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StatusListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless runtime of the application: the security service and the camera pipeline without Swing.
+ * 无界面守护进程：只运行安全服务和摄像头流水线，不加载 Swing
+ *
+ * Lifecycle: {@link #start()} connects the cameras configured by system property and logs
+ * every status change; {@link #flush()} writes the stored state to the backing store;
+ * {@link #close()} stops gracefully: cameras first, then the scans in flight get up to
+ * {@link Constants#DAEMON_STOP_TIMEOUT_MILLIS} to finish, then the state is flushed.
+ */
+public class CatpointDaemon implements AutoCloseable {
+    private final Logger log = LoggerFactory.getLogger(CatpointDaemon.class);
+    private final SecurityService securityService;
+    private final CameraPipeline cameraPipeline;
+    private final ImageScanExecutor imageScanExecutor;
+    private final Storage storage;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private boolean started;
+    private boolean closed;
+
+    @Inject
+    public CatpointDaemon(SecurityService securityService, CameraPipeline cameraPipeline,
+                          ImageScanExecutor imageScanExecutor, Storage storage) {
+        this.securityService = Objects.requireNonNull(securityService, "SecurityService must not be null");
+        this.cameraPipeline = Objects.requireNonNull(cameraPipeline, "CameraPipeline must not be null");
+        this.imageScanExecutor = Objects.requireNonNull(imageScanExecutor, "ImageScanExecutor must not be null");
+        this.storage = Objects.requireNonNull(storage, "Storage must not be null");
+    }
+
+    public synchronized CatpointDaemon start() {
+        if (closed) {
+            throw new IllegalStateException("Daemon is closed");
+        }
+        if (started) {
+            return this;
+        }
+        started = true;
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus alarmStatus) {
+                log.info("Alarm status {}", alarmStatus);
+            }
+
+            @Override
+            public void cameraCatDetected(String cameraId, boolean catDetected) {
+                log.info("Camera {} {}", cameraId, catDetected ? "sees a cat" : "sees no cat");
+            }
+        });
+        CatpointApp.addConfiguredCameras(cameraPipeline);
+        log.info("Catpoint daemon started: arming status {}, alarm status {}, {} sensors, {} cameras",
+                securityService.getArmingStatus(), securityService.getAlarmStatus(),
+                securityService.getSensors().size(), cameraPipeline.getSources().size());
+        return this;
+    }
+
+    /**
+     * Write the stored arming status, alarm status and sensors to the backing store now.
+     */
+    public void flush() {
+        try {
+            storage.flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush the stored state", e);
+        }
+    }
+
+    /**
+     * Block until the daemon is closed, e.g. by a shutdown hook.
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // 先停止摄像头, 不再产生新的扫描
+        // stop the cameras first so no new scans are started
+        cameraPipeline.close();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.DAEMON_STOP_TIMEOUT_MILLIS);
+        while (imageScanExecutor.getInFlight() > 0 && System.nanoTime() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int abandoned = imageScanExecutor.getInFlight();
+        imageScanExecutor.close();
+        flush();
+        if (abandoned > 0) {
+            log.warn("Catpoint daemon stopped, {} scans did not finish in time", abandoned);
+        } else {
+            log.info("Catpoint daemon stopped");
+        }
+        stopped.countDown();
+    }
+}
@@ -0,0 +1,52 @@
+package com.udacity.application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times the phases of the application startup and prints them as one line.
+ * 记录启动各阶段耗时，汇总为一行日志
+ *
+ * Phases may run on different threads at the same time; each is reported with the thread it
+ * ran on, its duration and when it finished relative to the start of the timer.
+ */
+final class StartupTimer {
+    private final long startNanos = System.nanoTime();
+    private final List<String> phases = new ArrayList<>();
+
+    <T> T time(String phase, Supplier<T> work) {
+        long begin = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            long end = System.nanoTime();
+            record(String.format("%s %d ms (%s, done at %d ms)", phase, TimeUnit.NANOSECONDS.toMillis(end - begin),
+                    Thread.currentThread().getName(), TimeUnit.NANOSECONDS.toMillis(end - startNanos)));
+        }
+    }
+
+    void time(String phase, Runnable work) {
+        time(phase, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Record a point in time, e.g. the first event the EDT handles after the window is shown.
+     */
+    void mark(String milestone) {
+        record(String.format("%s at %d ms", milestone, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+    }
+
+    private synchronized void record(String phase) {
+        phases.add(phase);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.join(", ", phases);
+    }
+}
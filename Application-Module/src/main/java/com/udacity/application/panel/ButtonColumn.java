@@ -0,0 +1,71 @@
+package com.udacity.application.panel;
+
+import javax.swing.AbstractCellEditor;
+import javax.swing.JButton;
+import javax.swing.JTable;
+import javax.swing.table.TableCellEditor;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
+import java.awt.Component;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Renders a table column as buttons and runs an action with the model row when one is clicked.
+ * 将表格列显示为按钮，点击时以模型行号执行操作
+ *
+ * One button paints every cell and one more takes the click, however many rows the table has.
+ * 无论多少行，都只使用两个按钮组件。
+ */
+class ButtonColumn extends AbstractCellEditor implements TableCellRenderer, TableCellEditor {
+    private final JButton renderButton = new JButton();
+    private final JButton editButton = new JButton();
+    private final IntConsumer action;
+    private JTable table;
+    private int editingRow = -1;
+
+    private ButtonColumn(IntConsumer action) {
+        this.action = Objects.requireNonNull(action, "action must not be null");
+        editButton.setFocusPainted(false);
+        editButton.addActionListener(e -> {
+            int viewRow = editingRow;
+            // 先结束编辑, 操作可能删除这一行
+            // stop editing first, the action may remove this very row
+            fireEditingStopped();
+            if (viewRow >= 0 && viewRow < table.getRowCount()) {
+                action.accept(table.convertRowIndexToModel(viewRow));
+            }
+        });
+    }
+
+    /**
+     * Install button rendering and editing on a column.
+     * @param action receives the model row of the clicked button
+     */
+    static void install(JTable table, int column, IntConsumer action) {
+        ButtonColumn buttons = new ButtonColumn(action);
+        buttons.table = table;
+        TableColumn tableColumn = table.getColumnModel().getColumn(column);
+        tableColumn.setCellRenderer(buttons);
+        tableColumn.setCellEditor(buttons);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        renderButton.setText(value == null ? "" : value.toString());
+        return renderButton;
+    }
+
+    @Override
+    public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+        editingRow = row;
+        editButton.setText(value == null ? "" : value.toString());
+        return editButton;
+    }
+
+    @Override
+    public Object getCellEditorValue() {
+        return editButton.getText();
+    }
+}
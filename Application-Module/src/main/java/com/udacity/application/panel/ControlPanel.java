@@ -68,8 +68,8 @@ public class ControlPanel extends JPanel {
                 // 设置当前状态的按钮颜色
                 // Set the button color for the current state
                 JButton currentButton = buttonMap.get(k);
-                // 只有被点击的按钮的背景设置为 status.getColor()，其他按钮恢复默认
-                currentButton.setBackground(k.getColor());
+                // 只有被点击的按钮的背景设置为 StyleService.colorOf(status)，其他按钮恢复默认
+                currentButton.setBackground(StyleService.colorOf(k));
                 // 移除按钮边框, 可以让背景色跟按钮整体颜色一致
                 // Remove the button border to make the background color consistent
                 // with the overall color of the button
@@ -89,7 +89,7 @@ public class ControlPanel extends JPanel {
             securityService.resetSensorToInactive();
         }
         JButton currentButton = buttonMap.get(currentStatus);
-        currentButton.setBackground(currentStatus.getColor());
+        currentButton.setBackground(StyleService.colorOf(currentStatus));
         currentButton.setBorderPainted(false);
         currentButton.setOpaque(true);
     }
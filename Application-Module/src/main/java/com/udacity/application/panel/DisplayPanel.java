@@ -46,7 +46,9 @@ public class DisplayPanel extends JPanel implements StatusListener {
      */
     public void builder(){
         setLayout(new MigLayout());  // 设置布局管理器
-        securityService.addStatusListener(this);
+        // 状态事件经 EdtStatusBridge 合并后在 EDT 上更新
+        // status events reach this panel coalesced and on the EDT
+        securityService.addStatusListener(new EdtStatusBridge(this));
         panelLabel.setFont(StyleService.HEADING_FONT); // 设置标题的字体格式
         notify(securityService.getAlarmStatus());
         // span 2：表示当前组件占据两列,也就是横跨2列 , wrap：表示组件会自动换行
@@ -57,8 +59,8 @@ public class DisplayPanel extends JPanel implements StatusListener {
 
     @Override
     public void notify(AlarmStatus alarmStatus) {
-        currentStatusLabel.setText(alarmStatus.getDescription());
-        currentStatusLabel.setBackground(alarmStatus.getColor());
+        currentStatusLabel.setText(StyleService.describe(alarmStatus));
+        currentStatusLabel.setBackground(StyleService.colorOf(alarmStatus));
         currentStatusLabel.setOpaque(true);
     }
 
@@ -0,0 +1,111 @@
+package com.udacity.application.panel;
+
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.utils.LatencyHistogram;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a task posted to the EDT waits before it runs.
+ * EDT 延迟探针：周期性地向 EDT 投递任务，测量其排队等待时间
+ *
+ * A busy or backlogged event queue shows up as a growing latency; an idle EDT answers within
+ * a fraction of a millisecond. Only one probe task is outstanding at a time, so the probe itself
+ * never adds to a backlog.
+ *
+ * Subclasses may override {@link #onTick(long)} and {@link #onAnswered(long)} to react to a
+ * probe that is still queued, e.g. to report a stalled EDT.
+ */
+public class EdtLatencyProbe implements AutoCloseable {
+    private final long intervalMillis;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "edt-latency-probe");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean outstanding;
+    private volatile long postedNanos;
+    private volatile Thread edt;
+    private ScheduledFuture<?> task;
+
+    public EdtLatencyProbe() {
+        this(Constants.UI_LATENCY_PROBE_INTERVAL_MILLIS);
+    }
+
+    public EdtLatencyProbe(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        this.intervalMillis = intervalMillis;
+    }
+
+    public synchronized EdtLatencyProbe start() {
+        if (task == null) {
+            task = timer.scheduleAtFixedRate(this::probe, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    private void probe() {
+        if (outstanding) {
+            // 上一次探测仍在排队, EDT 正忙
+            // the previous probe is still queued, the EDT is busy
+            onTick(System.nanoTime() - postedNanos);
+            return;
+        }
+        onTick(-1L);
+        long posted = System.nanoTime();
+        postedNanos = posted;
+        outstanding = true;
+        SwingUtilities.invokeLater(() -> {
+            long waited = System.nanoTime() - posted;
+            edt = Thread.currentThread();
+            latency.record(waited);
+            outstanding = false;
+            onAnswered(waited);
+        });
+    }
+
+    /**
+     * Called on the probe thread once per interval.
+     * @param queuedNanos how long the outstanding probe has been waiting for the EDT, -1 if none was outstanding
+     */
+    protected void onTick(long queuedNanos) {
+    }
+
+    /**
+     * Called on the EDT when a probe task runs.
+     * @param latencyNanos how long the probe waited in the event queue
+     */
+    protected void onAnswered(long latencyNanos) {
+    }
+
+    /**
+     * @return the event dispatch thread as seen by the last probe, null before the first probe ran
+     */
+    protected Thread getEdt() {
+        return edt;
+    }
+
+    /**
+     * @return queueing delay of the probe tasks on the EDT
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public synchronized void close() {
+        timer.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "EdtLatencyProbe{" + latency + "}";
+    }
+}
@@ -0,0 +1,171 @@
+package com.udacity.application.panel;
+
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.utils.LatencyHistogram;
+import com.udacity.security.service.StatusListener;
+
+import javax.swing.SwingUtilities;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StatusListener that hands the events of a Swing panel to the EDT, coalesced per frame.
+ * 将状态事件合并后在 EDT 上交给 Swing 面板，每个帧间隔最多更新一次
+ *
+ * Callbacks may arrive on any thread and at any rate. The bridge only remembers the latest
+ * value of each kind of event (alarm status, overall cat detection, cat detection per camera,
+ * sensors changed) and schedules one flush on the EDT; further events before that flush
+ * overwrite the remembered values instead of queueing more work. Flushes are at least one
+ * frame interval apart, so a burst of thousands of events costs one update of the panel per
+ * frame and the panel always shows the newest state.
+ * 只保留每类事件的最新值，突发事件不会在 EDT 上堆积过期的更新。
+ *
+ * The delegate is always called on the EDT and needs no locking or invokeLater of its own.
+ */
+public class EdtStatusBridge implements StatusListener {
+    private static final ScheduledExecutorService FRAME_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "edt-status-bridge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final StatusListener delegate;
+    private final long frameIntervalNanos;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile long lastFlushNanos;
+    // 本次突发中第一个事件的时间, 用于测量事件到达 EDT 的延迟
+    // arrival of the first event since the last flush, for the event-to-EDT latency
+    private volatile long firstEventNanos;
+
+    private final AtomicReference<AlarmStatus> alarmStatus = new AtomicReference<>();
+    private final AtomicReference<Boolean> catDetected = new AtomicReference<>();
+    private final Map<String, Boolean> cameraCatDetected = new ConcurrentHashMap<>();
+    private final AtomicBoolean sensorsChanged = new AtomicBoolean(false);
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+    public EdtStatusBridge(StatusListener delegate) {
+        this(delegate, Constants.UI_FRAME_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param frameIntervalMillis minimum time between two updates of the delegate, 0 for as soon as the EDT is free
+     */
+    public EdtStatusBridge(StatusListener delegate, long frameIntervalMillis) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate StatusListener must not be null");
+        if (frameIntervalMillis < 0) {
+            throw new IllegalArgumentException("frameIntervalMillis must not be negative");
+        }
+        this.frameIntervalNanos = TimeUnit.MILLISECONDS.toNanos(frameIntervalMillis);
+        this.lastFlushNanos = System.nanoTime() - frameIntervalNanos;
+    }
+
+    @Override
+    public void notify(AlarmStatus alarmStatus) {
+        this.alarmStatus.set(Objects.requireNonNull(alarmStatus, "alarmStatus must not be null"));
+        eventArrived();
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        this.catDetected.set(catDetected);
+        eventArrived();
+    }
+
+    @Override
+    public void cameraCatDetected(String cameraId, boolean catDetected) {
+        cameraCatDetected.put(cameraId, catDetected);
+        eventArrived();
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        sensorsChanged.set(true);
+        eventArrived();
+    }
+
+    private void eventArrived() {
+        events.increment();
+        if (!flushScheduled.compareAndSet(false, true)) {
+            // 已有待执行的刷新, 它会读取刚写入的最新值
+            // a flush is pending and will pick up the value just written
+            return;
+        }
+        long now = System.nanoTime();
+        firstEventNanos = now;
+        long delay = lastFlushNanos + frameIntervalNanos - now;
+        if (delay <= 0) {
+            SwingUtilities.invokeLater(this::flush);
+        } else {
+            FRAME_TIMER.schedule(() -> SwingUtilities.invokeLater(this::flush), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Runs on the EDT: hand the latest values to the delegate.
+     */
+    private void flush() {
+        long firstEvent = firstEventNanos;
+        // 先清除标记: 之后到达的事件会安排下一次刷新, 不会丢失
+        // clear the flag first, an event arriving from here on schedules the next flush
+        flushScheduled.set(false);
+        long now = System.nanoTime();
+        lastFlushNanos = now;
+        deliveryLatency.record(now - firstEvent);
+        flushes.increment();
+
+        AlarmStatus status = alarmStatus.getAndSet(null);
+        if (status != null) {
+            delegate.notify(status);
+        }
+        if (sensorsChanged.getAndSet(false)) {
+            delegate.sensorStatusChanged();
+        }
+        for (Map.Entry<String, Boolean> entry : cameraCatDetected.entrySet()) {
+            if (cameraCatDetected.remove(entry.getKey(), entry.getValue())) {
+                delegate.cameraCatDetected(entry.getKey(), entry.getValue());
+            }
+        }
+        Boolean cat = catDetected.getAndSet(null);
+        if (cat != null) {
+            delegate.catDetected(cat);
+        }
+    }
+
+    /**
+     * @return listener events received, on any thread
+     */
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * @return updates handed to the delegate on the EDT
+     */
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * @return time from the first event of a burst until the delegate saw it on the EDT
+     */
+    public LatencyHistogram getDeliveryLatency() {
+        return deliveryLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EdtStatusBridge{events=%d, flushes=%d, latency=[%s]}",
+                getEvents(), getFlushes(), deliveryLatency);
+    }
+}
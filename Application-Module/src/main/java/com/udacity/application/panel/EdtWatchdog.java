@@ -0,0 +1,127 @@
+package com.udacity.application.panel;
+
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watchdog of the event dispatch thread, started with the application.
+ * EDT 看门狗：持续探测 EDT 延迟，卡顿超过阈值时记录 EDT 的调用栈
+ *
+ * Probes the EDT like {@link EdtLatencyProbe}. When a probe has been queued for longer than the
+ * stall threshold, the stack trace of the EDT is logged once for that stall, which names the
+ * code blocking it (e.g. a scan or decode running on the EDT). The stall is closed when the
+ * probe finally runs and its duration is recorded. A latency summary is logged periodically and
+ * on close; the histograms are available from the getters.
+ */
+public class EdtWatchdog extends EdtLatencyProbe {
+    private final Logger log = LoggerFactory.getLogger(EdtWatchdog.class);
+
+    private final long stallThresholdNanos;
+    private final long reportIntervalNanos;
+    private final LatencyHistogram stallDuration = new LatencyHistogram();
+    private final LongAdder stalls = new LongAdder();
+    // 当前卡顿是否已记录调用栈, 每次卡顿只记录一次
+    // whether the ongoing stall has been reported, its stack is logged once
+    private volatile boolean stallReported;
+    private volatile StackTraceElement[] lastStallStackTrace = new StackTraceElement[0];
+    private long lastReportNanos = System.nanoTime();
+
+    public EdtWatchdog() {
+        this(Constants.UI_LATENCY_PROBE_INTERVAL_MILLIS, Constants.UI_STALL_THRESHOLD_MILLIS,
+                Constants.UI_WATCHDOG_REPORT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param stallThresholdMillis queueing delay from which the EDT is reported as stalled
+     * @param reportIntervalMillis period of the latency summary in the log
+     */
+    public EdtWatchdog(long intervalMillis, long stallThresholdMillis, long reportIntervalMillis) {
+        super(intervalMillis);
+        if (stallThresholdMillis <= 0 || reportIntervalMillis <= 0) {
+            throw new IllegalArgumentException("stallThresholdMillis and reportIntervalMillis must be positive");
+        }
+        this.stallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(stallThresholdMillis);
+        this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportIntervalMillis);
+    }
+
+    @Override
+    protected void onTick(long queuedNanos) {
+        if (queuedNanos >= stallThresholdNanos && !stallReported) {
+            stallReported = true;
+            reportStall(queuedNanos);
+        }
+        long now = System.nanoTime();
+        if (now - lastReportNanos >= reportIntervalNanos) {
+            lastReportNanos = now;
+            log.info("EDT latency: {}", this);
+        }
+    }
+
+    @Override
+    protected void onAnswered(long latencyNanos) {
+        boolean reported = stallReported;
+        stallReported = false;
+        if (latencyNanos < stallThresholdNanos) {
+            return;
+        }
+        stalls.increment();
+        stallDuration.record(latencyNanos);
+        if (reported) {
+            log.warn("EDT responsive again after a stall of {} ms", TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        }
+    }
+
+    private void reportStall(long queuedNanos) {
+        Thread edt = getEdt();
+        if (edt == null) {
+            log.warn("EDT stalled for {} ms before it ran its first event", TimeUnit.NANOSECONDS.toMillis(queuedNanos));
+            return;
+        }
+        StackTraceElement[] stack = edt.getStackTrace();
+        lastStallStackTrace = stack;
+        StringBuilder trace = new StringBuilder();
+        for (StackTraceElement element : stack) {
+            trace.append(System.lineSeparator()).append("\tat ").append(element);
+        }
+        log.warn("EDT stalled: no event dispatched for {} ms, {} is at{}",
+                TimeUnit.NANOSECONDS.toMillis(queuedNanos), edt.getName(), trace);
+    }
+
+    /**
+     * @return stalls longer than the threshold that have ended
+     */
+    public long getStalls() {
+        return stalls.sum();
+    }
+
+    /**
+     * @return duration of the stalls longer than the threshold
+     */
+    public LatencyHistogram getStallDuration() {
+        return stallDuration;
+    }
+
+    /**
+     * @return stack trace of the EDT captured at the last stall, empty if there was none
+     */
+    public StackTraceElement[] getLastStallStackTrace() {
+        return lastStallStackTrace.clone();
+    }
+
+    @Override
+    public synchronized void close() {
+        super.close();
+        log.info("EDT latency at shutdown: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EdtWatchdog{latency=[%s], stalls=%d, stallDuration=[%s]}",
+                getLatency(), getStalls(), stallDuration);
+    }
+}
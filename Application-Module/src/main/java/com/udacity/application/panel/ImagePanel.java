@@ -3,18 +3,29 @@ package com.udacity.application.panel;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.udacity.constant.common.Constants;
+import com.udacity.image.scale.ImageScaler;
+import com.udacity.security.model.Camera;
+import com.udacity.security.service.ScanResult;
 import com.udacity.security.service.SecurityService;
 import com.udacity.security.service.StatusListener;
 import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * 包含‘camera’输出的面板。允许用户“刷新”相机
@@ -30,12 +41,22 @@ import java.util.Objects;
  */
 
 public class ImagePanel extends JPanel implements StatusListener {
+    private final Logger log = LoggerFactory.getLogger(ImagePanel.class);
     private final SecurityService securityService;
     private final JLabel cameraHeader;
     private final JLabel cameraLabel;
     private final JButton addPictureButton;
     private final JButton scanPictureButton;
-    private BufferedImage currentCameraImage;
+    // 面板显示和扫描的是默认摄像头, 其最新一帧保存在摄像头实体中
+    // The panel shows and scans the default camera, whose last frame lives on the Camera entity
+    private final Camera camera;
+    // 缩放后的显示帧只分配一次, 每次换图时重绘到同一缓冲区
+    // The scaled display frame is allocated once and redrawn for every new picture
+    private final BufferedImage displayFrame =
+            new BufferedImage(Constants.IMAGE_WIDTH, Constants.IMAGE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    // 最近一次选择图片的序号, 只在 EDT 上访问; 过期的加载结果被丢弃
+    // number of the latest picture chosen, EDT only; results of older loads are dropped
+    private int loadGeneration;
 
     @Inject
     ImagePanel(
@@ -49,6 +70,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         this.cameraLabel = Objects.requireNonNull(cameraLabel,"imageCameraLabel must not be null");
         this.addPictureButton = Objects.requireNonNull(addPictureButton,"imageAddPictureButton must not be null");
         this.scanPictureButton = Objects.requireNonNull(scanPictureButton,"imageScanPictureButton must not be null");
+        this.camera = securityService.addCamera(Constants.DEFAULT_CAMERA_ID);
     }
 
     /**
@@ -56,7 +78,7 @@ public class ImagePanel extends JPanel implements StatusListener {
      */
     public void builder(){
         setLayout(new MigLayout()); // 设置布局管理器
-        securityService.addStatusListener(this);
+        securityService.addStatusListener(new EdtStatusBridge(this));
         cameraHeader.setFont(StyleService.HEADING_FONT);
         //create a label for the camera image
         // 用于显示当前摄像头图像，设置了固定尺寸和边框
@@ -67,8 +89,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         // 添加一个按钮，允许用户选择一个文件作为当前摄像头图像(上传图片功能)
         // 功能描述：
         //	•	使用 JFileChooser 打开文件选择对话框，让用户选择图片文件。
-        //	•	读取用户选择的图片，并使用 ImageIO.read 加载图片数据到 BufferedImage。
-        //	•	使用 ImageIcon 和 getScaledInstance 方法对图片进行缩放，确保其适配面板大小。
+        //	•	在后台线程中按抽样解码并缩放到显示尺寸，EDT 只接收最终的小图。
         //	•	捕获可能的异常（如文件格式不正确），并通过对话框通知用户。
         addPictureButton.addActionListener(e -> {
             JFileChooser chooser = getJFileChooser();
@@ -76,22 +97,22 @@ public class ImagePanel extends JPanel implements StatusListener {
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
-            try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(Constants.IMAGE_WIDTH, Constants.IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException ioe) {
-                JOptionPane.showMessageDialog(null, "Invalid image selected.");
-            }
-            // 调用 repaint 方法强制面板重新绘制
-            // 更新 cameraLabel 的内容后，需要通知界面刷新。
-            repaint();
+            loadPicture(chooser.getSelectedFile());
         });
 
         //button that sends the image to the image service
-        // 图像扫描功能
+        // 图像扫描功能, 异步执行, 不阻塞 EDT
+        // The scan runs off the EDT, the alarm status is updated when the result arrives
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            ByteBuffer encoded = camera.getLastEncodedFrame();
+            CompletableFuture<ScanResult> scan = encoded != null
+                    ? securityService.processEncodedImageAsync(camera.getCameraId(), encoded, System.nanoTime())
+                    : securityService.processImageAsync(camera.getCameraId(), camera.getLastFrame(), System.nanoTime());
+            scan.exceptionally(t -> {
+                log.error("Image scan failed", t);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Image scan failed."));
+                return null;
+            });
         });
 
         add(cameraHeader, "span 3, wrap");
@@ -100,6 +121,89 @@ public class ImagePanel extends JPanel implements StatusListener {
         add(scanPictureButton);
     }
 
+    /**
+     * Decode the picture on a background worker and show it when ready.
+     * 在后台线程读取并解码图片, 完成后在 EDT 上显示
+     *
+     * The worker decodes a subsampled copy at display size for the label. JPEGs are kept encoded as
+     * the camera frame, so the scan sends them as they are; other formats are decoded in full for
+     * the scan. If another picture is chosen before this one is ready, this one is dropped.
+     */
+    private void loadPicture(File file) {
+        int generation = ++loadGeneration;
+        new SwingWorker<Picture, Void>() {
+            @Override
+            protected Picture doInBackground() throws IOException {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                BufferedImage display = ImageScaler.readScaled(bytes, Constants.IMAGE_WIDTH, Constants.IMAGE_HEIGHT);
+                String name = file.getName().toLowerCase(Locale.ROOT);
+                if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+                    return new Picture(display, ByteBuffer.wrap(bytes), null);
+                }
+                BufferedImage frame = ImageIO.read(new ByteArrayInputStream(bytes));
+                if (frame == null) {
+                    throw new IOException("Unsupported image format");
+                }
+                return new Picture(display, null, frame);
+            }
+
+            @Override
+            protected void done() {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                try {
+                    Picture picture = get();
+                    if (picture.encoded != null) {
+                        camera.setLastEncodedFrame(picture.encoded, System.nanoTime());
+                    } else {
+                        camera.setLastFrame(picture.frame, System.nanoTime());
+                    }
+                    showFrame(picture.display);
+                } catch (ExecutionException ee) {
+                    log.warn("Could not load picture {}", file, ee.getCause());
+                    JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Copy a display sized image into the reused display buffer and show it.
+     * 将已缩放到显示尺寸的图像复制到复用的显示缓冲区
+     */
+    private void showFrame(BufferedImage display) {
+        Graphics2D g = displayFrame.createGraphics();
+        try {
+            g.drawImage(display, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        if (cameraLabel.getIcon() == null) {
+            cameraLabel.setIcon(new ImageIcon(displayFrame));
+        }
+        // 显示缓冲区的内容已变, 通知界面刷新
+        // the buffer behind the icon changed, repaint the label
+        cameraLabel.repaint();
+    }
+
+    /**
+     * A loaded picture: the display copy plus either the encoded JPEG or the decoded frame to scan.
+     */
+    private static final class Picture {
+        private final BufferedImage display;
+        private final ByteBuffer encoded;
+        private final BufferedImage frame;
+
+        private Picture(BufferedImage display, ByteBuffer encoded, BufferedImage frame) {
+            this.display = display;
+            this.encoded = encoded;
+            this.frame = frame;
+        }
+    }
+
     private JFileChooser getJFileChooser() {
         JFileChooser chooser = new JFileChooser();
         // 将文件选择器的默认目录设置为当前目录
@@ -118,7 +222,10 @@ public class ImagePanel extends JPanel implements StatusListener {
 
     @Override
     public void catDetected(boolean catDetected) {
-        securityService.setCatDetected(catDetected);
+        // catDetected 是所有摄像头的汇总结果
+        // catDetected tells whether any camera sees a cat
+        // 由 EdtStatusBridge 在 EDT 上调用, 一帧内的多次扫描结果只更新一次
+        // called on the EDT by EdtStatusBridge, once per frame however many scans finished
         if(catDetected) {
             cameraHeader.setText("DANGER - CAT DETECTED");
         } else {
@@ -1,6 +1,5 @@
 package com.udacity.application.panel;
 
-import com.google.common.collect.Maps;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
@@ -11,7 +10,6 @@ import com.udacity.constant.enums.SensorType;
 
 
 import javax.swing.*;
-import java.awt.*;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -23,6 +21,8 @@ public class PanelModule extends AbstractModule {
         bind(ImagePanel.class).in(Singleton.class);
         bind(ControlPanel.class).in(Singleton.class);
         bind(SensorPanel.class).in(Singleton.class);
+        bind(SensorTableModel.class).in(Singleton.class);
+        bind(EdtWatchdog.class).in(Singleton.class);
     }
 
     // 注入 DisplayPanel类的 组件 开始
@@ -99,7 +99,7 @@ public class PanelModule extends AbstractModule {
     @Named("controlButtonMap")
     Map<ArmingStatus, JButton> controlButtonMap() {
         return Arrays.stream(ArmingStatus.values())
-                .collect(Collectors.toMap(status -> status, status -> new JButton(status.getDescription())));
+                .collect(Collectors.toMap(status -> status, status -> new JButton(StyleService.describe(status))));
     }
 
     // ControlPanel PanelLabel
@@ -115,12 +115,12 @@ public class PanelModule extends AbstractModule {
 
     // 注入 SensorPanel 类的 组件 开始
     // Inject the component of SensorPanel class to start
-    // SensorPanel ComponentMap
+    // SensorPanel SensorTable
     @Provides
     @Singleton
-    @Named("sensorComponentMap")
-    Map<String, Component> sensorComponentMap() {
-        return Maps.newHashMap();
+    @Named("sensorTable")
+    JTable sensorTable() {
+        return new JTable();
     }
 
     // SensorPanel PanelLabel
@@ -3,20 +3,15 @@ package com.udacity.application.panel;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
-import com.udacity.constant.common.Constants;
 import com.udacity.constant.enums.SensorType;
 import com.udacity.security.model.Sensor;
 import com.udacity.security.service.SecurityService;
 import com.udacity.security.service.StatusListener;
 import net.miginfocom.swing.MigLayout;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
@@ -28,14 +23,14 @@ import java.util.Set;
  * 	1.	用户可以手动添加传感器，并指定传感器名称和类型。
  * 	2.	展示当前传感器列表，包括名称、类型、状态（激活或未激活）。
  * 	3.	提供按钮切换传感器状态或删除传感器。
- * 	4.	当传感器数量超过 4 时，限制用户操作，并提示需要升级会员。
+ * 	4.	传感器列表使用 JTable 显示，只渲染可见行，支持数万个传感器。
  */
 public class SensorPanel extends JPanel implements StatusListener {
-    private final Logger log = LoggerFactory.getLogger(SensorPanel.class);
     private final SecurityService securityService;
-    // Map used to store container components
-    // 用来存储容器组件的Map
-    private final Map<String, Component> componentMap;
+    // 传感器表格及其模型, 取代每个传感器一组 JLabel/JButton 的做法
+    // Sensor table and its model, replacing a JLabel and two JButtons per sensor
+    private final JTable sensorTable;
+    private final SensorTableModel sensorTableModel;
     private final JLabel panelLabel;
     private final JLabel newSensorName;
     private final JLabel newSensorType;
@@ -51,7 +46,8 @@ public class SensorPanel extends JPanel implements StatusListener {
     @Inject
     SensorPanel(
             SecurityService securityService,
-            @Named("sensorComponentMap") Map<String, Component> componentMap,
+            @Named("sensorTable") JTable sensorTable,
+            SensorTableModel sensorTableModel,
             @Named("sensorPanelLabel") JLabel panelLabel,
             @Named("newSensorName") JLabel newSensorName,
             @Named("newSensorType") JLabel newSensorType,
@@ -61,7 +57,8 @@ public class SensorPanel extends JPanel implements StatusListener {
             @Named("sensorListPanel") JPanel sensorListPanel,
             @Named("newSensorPanel") JPanel newSensorPanel) {
         this.securityService = Objects.requireNonNull(securityService,"SecurityService must not be null");
-        this.componentMap = Objects.requireNonNull(componentMap,"sensorComponentMap must not be null");
+        this.sensorTable = Objects.requireNonNull(sensorTable,"sensorTable must not be null");
+        this.sensorTableModel = Objects.requireNonNull(sensorTableModel,"SensorTableModel must not be null");
         this.panelLabel = Objects.requireNonNull(panelLabel,"sensorPanelLabel must not be null");
         this.newSensorName = Objects.requireNonNull(newSensorName,"newSensorName must not be null");
         this.newSensorType = Objects.requireNonNull(newSensorType,"newSensorType must not be null");
@@ -77,19 +74,19 @@ public class SensorPanel extends JPanel implements StatusListener {
      */
     public void builder(){
         setLayout(new MigLayout());
-        securityService.addStatusListener(this);
+        securityService.addStatusListener(new EdtStatusBridge(this));
         // 显示标题“Sensor Management”
         panelLabel.setFont(StyleService.HEADING_FONT);
 
         // 动态面板，用于展示当前的传感器列表
-        sensorListPanel.setLayout(new MigLayout());
+        sensorListPanel.setLayout(new MigLayout("fill"));
 
         // 按钮事件 点击“Add New Sensor”按钮时，触发 addSensor 方法，将新传感器添加至系统。
         addNewSensorButton.addActionListener(e -> {
             Sensor sensor = new Sensor.Builder().setName(newSensorNameField.getText())
                     .setSensorType(SensorType.valueOf(Objects.requireNonNull(newSensorTypeDropdown.getSelectedItem()).toString()))
                     .build();
-            addSensor(sensor,sensorListPanel);
+            addSensor(sensor);
         });
         // Sensor Management 下的表单面板，允许用户输入传感器信息并添加新传感器
         buildAddSensorPanel(newSensorPanel);
@@ -122,128 +119,60 @@ public class SensorPanel extends JPanel implements StatusListener {
 
     /**
      * Used to initialize the sensor list. Sensors will display in the order that they are created.
-     *  方法用于初始化传感器列表。
-     * @param p The Panel to populate with the current list of sensor
+     * 方法用于初始化传感器列表, 表格只渲染可见的行
+     * @param p The Panel holding the sensor table
      */
     private void initSensorList(JPanel p){
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            initSensor(s,p);
+        sensorTableModel.setSensors(securityService.getSensors());
+        sensorTable.setModel(sensorTableModel);
+        sensorTable.setRowHeight(28);
+        sensorTable.setFillsViewportHeight(true);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.SENSOR_COLUMN).setPreferredWidth(300);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.TOGGLE_COLUMN).setPreferredWidth(100);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.REMOVE_COLUMN).setPreferredWidth(120);
+        ButtonColumn.install(sensorTable, SensorTableModel.TOGGLE_COLUMN, row -> {
+            Sensor sensor = sensorTableModel.getSensorAt(row);
+            setSensorActivity(sensor, !sensor.getActive());
         });
-    }
-
-    /**
-     * To initialize the sensor settings,
-     * you mainly need to set a unique identification name for the JButton JLabel component.
-     *  初始化传感器的设置, 主要需要给 JButton JLabel组件设置唯一标识名称
-     * @param s Sensor
-     * @param p The Panel to populate with the current list of sensors
-     */
-    private void initSensor(Sensor s, JPanel p){
-        JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-        JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-        JButton sensorRemoveButton = new JButton("Remove Sensor");
-        String sensorId = s.getSensorId().toString();
-
-        // 添加 JLabel JButton 组件的uuid+name, 然后交给componentMap管理
-        // Add the uuid+name of the JLabel JButton component, and then hand it over to componentMap for management
-        addComponentToMap(sensorId+ Constants.LABEL,sensorLabel);
-        addComponentToMap(sensorId+ Constants.TOGGLE,sensorToggleButton);
-        addComponentToMap(sensorId+ Constants.REMOVE,sensorRemoveButton);
-
-        sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-        sensorRemoveButton.addActionListener(e -> removeSensor(s,p));
-
-        //hard code some sizes, tsk tsk
-        p.add(sensorLabel, "width 300:300:300");
-        p.add(sensorToggleButton, "width 100:100:100");
-        p.add(sensorRemoveButton, "wrap");
-    }
-
-    /**
-     * Add Component to Map;
-     *  添加Component到Map中；
-     * @param name uuid + Component name
-     * @param component
-     * @param <T>
-     */
-    private <T extends Component> void addComponentToMap(String name, T component){
-        componentMap.put(name, component);
-    }
-
-    private  <T extends Component> T getComponentByName(String name, Class<T> type) {
-        Component component = componentMap.get(name);
-        if (type.isInstance(component)) {
-            return type.cast(component);
-        }
-        return null;
+        ButtonColumn.install(sensorTable, SensorTableModel.REMOVE_COLUMN,
+                row -> removeSensor(sensorTableModel.getSensorAt(row)));
+        sensorTable.setPreferredScrollableViewportSize(new Dimension(520, 200));
+        p.add(new JScrollPane(sensorTable), "grow, push");
     }
 
     /**
      * setSensorActivity
-     * 通过 sensorId 从MapComponent 来获取sensorToggleButton,然后就可以更新状态信息
-     * Get sensorToggleButton from MapComponent through sensorId, and then update the status information
+     * 更新传感器状态后只重绘该传感器所在的行
+     * Update the activation and repaint the sensor's row only
      * @param sensor
      * @param isActive
      */
-    private synchronized void setSensorActivity(Sensor sensor, Boolean isActive) {
+    private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        // 更新 sensorToggleButton 的内容
-        updateSensorToggleButtonText(sensor);
-        // 重新绘制内容
-        repaint();
-    }
-
-    private void updateSensorToggleButtonText(Sensor sensor){
-        // 获取Sensor的uuid, 并根据sensorId来更新对应的组件
-        String sensorId = sensor.getSensorId().toString();
-        JButton sensorToggleButton = getComponentByName(sensorId+ Constants.TOGGLE, JButton.class);
-        JLabel sensorLabel = getComponentByName(sensorId+ Constants.LABEL, JLabel.class);
-        if (Objects.isNull(sensorToggleButton) || Objects.isNull(sensorLabel)){
-            // SensorPanel类中Map的sensorToggleButton为null
-            log.error("The sensorToggleButton or sensorLabel of the Map in the SensorPanel class is null");
-            return;
-        }
-        sensorToggleButton.setText((sensor.getActive() ? "Deactivate" : "Activate"));
-        sensorLabel.setText(String.format("%s(%s): %s",sensor.getName(),sensor.getSensorType().toString(),(sensor.getActive() ? "Active" : "Inactive")));
+        sensorTableModel.sensorUpdated(sensor);
     }
 
-    private void addSensor(Sensor sensor,JPanel p){
-        if(securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            initSensor(sensor,p);
-        } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
+    private void addSensor(Sensor sensor){
+        securityService.addSensor(sensor);
+        sensorTableModel.addSensor(sensor);
+        // 滚动到新传感器所在行
+        // bring the new sensor into view
+        int row = sensorTableModel.indexOf(sensor);
+        if (row >= 0) {
+            sensorTable.scrollRectToVisible(sensorTable.getCellRect(row, 0, true));
         }
-        // 重新绘制内容
-        repaint();
-        // 重新布局
-        revalidate();
     }
 
-    /**
-     *
-     * @param sensor
-     * @param p
-     */
-    private void removeSensor(Sensor sensor,JPanel p) {
+    private void removeSensor(Sensor sensor) {
         securityService.removeSensor(sensor);
-        String sensorId = sensor.getSensorId().toString();
-        JLabel sensorLabel = getComponentByName(sensorId+ Constants.LABEL, JLabel.class);
-        JButton sensorToggleButton = getComponentByName(sensorId+ Constants.TOGGLE, JButton.class);
-        JButton sensorRemoveButton = getComponentByName(sensorId+ Constants.REMOVE, JButton.class);
-        p.remove(sensorLabel);
-        p.remove(sensorToggleButton);
-        p.remove(sensorRemoveButton);
-
-        repaint();
-        revalidate();
+        sensorTableModel.removeSensor(sensor);
     }
 
 
     @Override
     public void sensorStatusChanged() {
-        Set<Sensor> sensors = securityService.getSensors();
-        sensors.forEach(this::updateSensorToggleButtonText);
-        repaint();
+        // 由 EdtStatusBridge 在 EDT 上调用
+        // called on the EDT by EdtStatusBridge
+        sensorTableModel.allSensorsUpdated();
     }
 }
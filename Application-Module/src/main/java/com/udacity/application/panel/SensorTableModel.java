@@ -0,0 +1,125 @@
+package com.udacity.application.panel;
+
+import com.udacity.security.model.Sensor;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table model of the sensor list, sorted the way Sensor sorts itself.
+ * 传感器列表的表格模型，按 Sensor 的自然顺序排序
+ *
+ * The JTable only renders the rows in view, so the panel stays responsive with tens of
+ * thousands of sensors. Name, type and id never change, so a sensor's row is found by binary
+ * search and a change of one sensor repaints one row.
+ * 只渲染可见行；传感器的排序字段不可变，可以二分查找其所在行。
+ *
+ * Must only be used on the event dispatch thread.
+ */
+public class SensorTableModel extends AbstractTableModel {
+    static final int SENSOR_COLUMN = 0;
+    static final int TOGGLE_COLUMN = 1;
+    static final int REMOVE_COLUMN = 2;
+    private static final String[] COLUMN_NAMES = {"Sensor", "Activation", "Remove"};
+
+    private final List<Sensor> sensors = new ArrayList<>();
+
+    /**
+     * Replace all rows.
+     */
+    public void setSensors(Collection<Sensor> all) {
+        sensors.clear();
+        sensors.addAll(all);
+        Collections.sort(sensors);
+        fireTableDataChanged();
+    }
+
+    public void addSensor(Sensor sensor) {
+        int index = Collections.binarySearch(sensors, sensor);
+        if (index >= 0) {
+            return;
+        }
+        int row = -index - 1;
+        sensors.add(row, sensor);
+        fireTableRowsInserted(row, row);
+    }
+
+    public void removeSensor(Sensor sensor) {
+        int row = indexOf(sensor);
+        if (row < 0) {
+            return;
+        }
+        sensors.remove(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Repaint the row of a sensor whose activation changed.
+     */
+    public void sensorUpdated(Sensor sensor) {
+        int row = indexOf(sensor);
+        if (row >= 0) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Repaint every row, e.g. after all sensors were reset. Only the rows in view are painted.
+     */
+    public void allSensorsUpdated() {
+        if (!sensors.isEmpty()) {
+            fireTableRowsUpdated(0, sensors.size() - 1);
+        }
+    }
+
+    public Sensor getSensorAt(int row) {
+        return sensors.get(row);
+    }
+
+    public int indexOf(Sensor sensor) {
+        int index = Collections.binarySearch(sensors, sensor);
+        return index >= 0 ? index : -1;
+    }
+
+    @Override
+    public int getRowCount() {
+        return sensors.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Sensor sensor = sensors.get(row);
+        switch (column) {
+            case SENSOR_COLUMN:
+                return String.format("%s(%s): %s", sensor.getName(), sensor.getSensorType().toString(),
+                        (sensor.getActive() ? "Active" : "Inactive"));
+            case TOGGLE_COLUMN:
+                return sensor.getActive() ? "Deactivate" : "Activate";
+            case REMOVE_COLUMN:
+                return "Remove Sensor";
+            default:
+                throw new IndexOutOfBoundsException("column " + column);
+        }
+    }
+
+    /**
+     * Only the button columns are editable, editing a cell means clicking its button.
+     */
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == TOGGLE_COLUMN || column == REMOVE_COLUMN;
+    }
+}
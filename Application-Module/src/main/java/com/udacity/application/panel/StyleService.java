@@ -1,7 +1,56 @@
 package com.udacity.application.panel;
 
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.enums.ArmingStatus;
+
 import java.awt.*;
+import java.util.EnumMap;
+import java.util.Map;
 
 public class StyleService {
     public static final Font HEADING_FONT = new Font("Sans Serif", Font.BOLD, 24);
+
+    // 状态枚举的显示文本和颜色, 枚举本身不依赖 AWT
+    // Text and color shown for each status; the status enums themselves stay free of AWT
+    private static final Map<AlarmStatus, String> ALARM_DESCRIPTIONS = new EnumMap<>(Map.of(
+            AlarmStatus.NO_ALARM, "Cool and Good",
+            AlarmStatus.PENDING_ALARM, "I'm in Danger...",
+            AlarmStatus.ALARM, "Awooga!"));
+    private static final Map<AlarmStatus, Color> ALARM_COLORS = new EnumMap<>(Map.of(
+            AlarmStatus.NO_ALARM, new Color(120, 200, 30),
+            AlarmStatus.PENDING_ALARM, new Color(200, 150, 20),
+            AlarmStatus.ALARM, new Color(250, 80, 50)));
+    private static final Map<ArmingStatus, String> ARMING_DESCRIPTIONS = new EnumMap<>(Map.of(
+            ArmingStatus.DISARMED, "Disarmed",
+            ArmingStatus.ARMED_HOME, "Armed - At Home",
+            ArmingStatus.ARMED_AWAY, "Armed - Away"));
+    private static final Map<ArmingStatus, Color> ARMING_COLORS = new EnumMap<>(Map.of(
+            ArmingStatus.DISARMED, new Color(120, 200, 30),
+            ArmingStatus.ARMED_HOME, new Color(190, 180, 50),
+            ArmingStatus.ARMED_AWAY, new Color(170, 30, 150)));
+
+    static {
+        // 新增状态时必须同时提供文本和颜色
+        // a status added to an enum must get its text and color here as well
+        if (ALARM_DESCRIPTIONS.size() != AlarmStatus.values().length || ALARM_COLORS.size() != AlarmStatus.values().length
+                || ARMING_DESCRIPTIONS.size() != ArmingStatus.values().length || ARMING_COLORS.size() != ArmingStatus.values().length) {
+            throw new IllegalStateException("Every AlarmStatus and ArmingStatus needs a description and a color");
+        }
+    }
+
+    public static String describe(AlarmStatus alarmStatus) {
+        return ALARM_DESCRIPTIONS.get(alarmStatus);
+    }
+
+    public static Color colorOf(AlarmStatus alarmStatus) {
+        return ALARM_COLORS.get(alarmStatus);
+    }
+
+    public static String describe(ArmingStatus armingStatus) {
+        return ARMING_DESCRIPTIONS.get(armingStatus);
+    }
+
+    public static Color colorOf(ArmingStatus armingStatus) {
+        return ARMING_COLORS.get(armingStatus);
+    }
 }
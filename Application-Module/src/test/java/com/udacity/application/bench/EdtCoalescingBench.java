@@ -0,0 +1,124 @@
+package com.udacity.application.bench;
+
+import com.udacity.application.panel.EdtLatencyProbe;
+import com.udacity.application.panel.EdtStatusBridge;
+import com.udacity.application.panel.StyleService;
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.utils.LatencyHistogram;
+import com.udacity.security.service.StatusListener;
+
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Floods a Swing listener with status events from several threads and measures how far the EDT
+ * falls behind, once through EdtStatusBridge and once with one invokeLater per event.
+ * 多线程高频发送状态事件，对比合并桥接与逐事件 invokeLater 时 EDT 的延迟
+ *
+ * Each update of the listener costs a fixed amount of EDT time, standing in for layout and
+ * paint. Reports the updates the EDT ran, how stale the shown state was when it ran, and the
+ * queueing delay seen by an EdtLatencyProbe.
+ *
+ * Usage: EdtCoalescingBench [seconds] [eventsPerSecond] [updateMicros]
+ */
+public class EdtCoalescingBench {
+    private static final int PRODUCERS = 4;
+    private static final AlarmStatus[] STATUSES = AlarmStatus.values();
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int eventsPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        long updateMicros = args.length > 2 ? Long.parseLong(args[2]) : 500;
+        System.out.printf("%d events/s from %d threads for %ds, %dus of EDT work per update%n",
+                eventsPerSecond, PRODUCERS, seconds, updateMicros);
+        run("coalesced", seconds, eventsPerSecond, updateMicros, true);
+        run("invokeLater per event", seconds, eventsPerSecond, updateMicros, false);
+    }
+
+    private static void run(String name, int seconds, int eventsPerSecond, long updateMicros, boolean coalesce)
+            throws InterruptedException {
+        JLabel label = new JLabel();
+        LongAdder updates = new LongAdder();
+        LatencyHistogram staleness = new LatencyHistogram();
+        StatusListener panel = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus alarmStatus) {
+                label.setText(StyleService.describe(alarmStatus));
+                busy(updateMicros);
+                updates.increment();
+            }
+        };
+        StatusListener listener;
+        EdtStatusBridge bridge = null;
+        if (coalesce) {
+            bridge = new EdtStatusBridge(panel);
+            listener = bridge;
+        } else {
+            listener = new StatusListener() {
+                @Override
+                public void notify(AlarmStatus alarmStatus) {
+                    long sent = System.nanoTime();
+                    SwingUtilities.invokeLater(() -> {
+                        staleness.record(System.nanoTime() - sent);
+                        panel.notify(alarmStatus);
+                    });
+                }
+            };
+        }
+
+        try (EdtLatencyProbe probe = new EdtLatencyProbe(10).start()) {
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) * PRODUCERS / eventsPerSecond;
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            LongAdder sent = new LongAdder();
+            CountDownLatch done = new CountDownLatch(PRODUCERS);
+            for (int p = 0; p < PRODUCERS; p++) {
+                Thread producer = new Thread(() -> {
+                    long next = System.nanoTime();
+                    int i = 0;
+                    while (next < end) {
+                        listener.notify(STATUSES[i++ % STATUSES.length]);
+                        sent.increment();
+                        next += intervalNanos;
+                        long sleep = next - System.nanoTime();
+                        if (sleep > 0) {
+                            try {
+                                TimeUnit.NANOSECONDS.sleep(sleep);
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                        }
+                    }
+                    done.countDown();
+                }, "event-producer-" + p);
+                producer.setDaemon(true);
+                producer.start();
+            }
+            done.await();
+            long stopped = System.nanoTime();
+            LatencyHistogram probeLatency = probe.getLatency();
+            System.out.printf("%-22s sent=%d updates=%d probe=[%s]%n", name, sent.sum(), updates.sum(), probeLatency);
+            if (bridge != null) {
+                System.out.printf("%-22s staleness=[%s]%n", "", bridge.getDeliveryLatency());
+            } else {
+                System.out.printf("%-22s staleness=[%s]%n", "", staleness);
+            }
+            // 等待 EDT 追上积压
+            // wait for the EDT to drain its backlog
+            CountDownLatch drained = new CountDownLatch(1);
+            SwingUtilities.invokeLater(drained::countDown);
+            drained.await();
+            System.out.printf("%-22s EDT backlog drained %.0fms after the last event%n", "",
+                    (System.nanoTime() - stopped) / 1e6);
+        }
+    }
+
+    private static void busy(long micros) {
+        long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+        while (System.nanoTime() < until) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -21,18 +21,120 @@ public class Constants {
     public static final String SENSOR_NEW_SENSOR_TYPE = "Sensor Type:";
     public static final String SENSOR_ADD_NEW_SENSOR_BUTTON = "Add New Sensor";
 
+    // Swing updates driven by StatusListener events are coalesced to at most one per frame interval
+    public static final long UI_FRAME_INTERVAL_MILLIS = 16L;
+    // Period of the EDT latency probe
+    public static final long UI_LATENCY_PROBE_INTERVAL_MILLIS = 100L;
+    // An EDT that has not run a probe for this long is reported as stalled, with its stack trace
+    public static final long UI_STALL_THRESHOLD_MILLIS = 500L;
+    // Period of the EDT latency summary in the log
+    public static final long UI_WATCHDOG_REPORT_INTERVAL_MILLIS = 300_000L;
+
+    // System property naming a directory for the indexed sensor store of very large fleets, unset keeps sensors in preferences
+    public static final String SENSOR_INDEX_DIRECTORY_PROPERTY = "catpoint.sensor.index";
+
+    // System property naming a directory for the off-heap sensor store of the largest sites, takes precedence over the sensor index
+    public static final String SENSOR_STORE_DIRECTORY_PROPERTY = "catpoint.sensor.offheap";
+
     //preference keys
     public static final String SENSORS = "SENSORS";
     public static final String ALARM_STATUS = "ALARM_STATUS";
     public static final String ARMING_STATUS = "ARMING_STATUS";
 
-    //SensorPanel Component suffix name
-    public static final String LABEL = "_Label";
-    public static final String TOGGLE = "_Toggle";
-    public static final String REMOVE = "_Remove";
-
     // AWS control
     public static final String AWS_CONTROL = "AWS";
     public static final String FAKE_CONTROL = "FAKE";
+    // Offline colour heuristic running on the CPU, much less accurate than AWS
+    public static final String LOCAL_CONTROL = "LOCAL";
+    // Local colour heuristic first, AWS only when the local confidence is uncertain
+    public static final String CASCADE_CONTROL = "CASCADE";
+
+    // Image scanning
+    public static final float CAT_CONFIDENCE_THRESHOLD = 70.0f;
+    // Maximum number of scans that may be waiting on the ImageService at the same time
+    public static final int SCAN_MAX_IN_FLIGHT = 4;
+    // Scan workers camera feeds leave free, so a manual scan is never rejected by a busy feed
+    public static final int SCAN_RESERVED_FOR_MANUAL = 1;
+    // Per-scan deadline, the future completes exceptionally with a TimeoutException after it
+    public static final long SCAN_TIMEOUT_MILLIS = 10_000L;
+    // Local confidences within this distance of the threshold are escalated to the remote classifier
+    public static final float CASCADE_UNCERTAINTY_MARGIN = 20.0f;
+    // Share of frames scanned in each arming status (0 = never, 1 = every frame)
+    public static final double SCAN_RATE_DISARMED = 0.0;
+    public static final double SCAN_RATE_ARMED_HOME = 0.5;
+    public static final double SCAN_RATE_ARMED_AWAY = 1.0;
+
+    // Cameras
+    // Frames waiting to be decoded per camera, the oldest is dropped when full
+    public static final int CAMERA_DECODE_QUEUE_CAPACITY = 8;
+    // System property naming a directory of camera snapshots to watch at startup
+    public static final String CAMERA_DIRECTORY_PROPERTY = "catpoint.camera.dir";
+    // Camera of scans that do not name one, e.g. the picture chosen in the image panel
+    public static final String DEFAULT_CAMERA_ID = "default";
+    // Initial stream buffer of an MJPEG camera, grows to a few frames when frames are larger
+    public static final int MJPEG_BUFFER_BYTES = 256 * 1024;
+    // Wait before reconnecting to a camera stream that failed
+    public static final long CAMERA_RECONNECT_DELAY_MILLIS = 2_000L;
+    // System property with the URL of an MJPEG camera stream to read at startup
+    public static final String CAMERA_MJPEG_URL_PROPERTY = "catpoint.camera.mjpeg";
+
+    // Headless daemon
+    // System property (or --headless argument) starting the application without Swing
+    public static final String HEADLESS_PROPERTY = "catpoint.headless";
+    // How long a graceful stop waits for the scans in flight before abandoning them
+    public static final long DAEMON_STOP_TIMEOUT_MILLIS = 10_000L;
+
+    // Frame buffers
+    // Idle decoded frames kept per frame size, at least the scans in flight
+    public static final int FRAME_POOL_MAX_PER_SHAPE = 8;
+    // Frame sizes pooled, and pixel bytes of all idle frames together; images beyond them are left to the GC
+    public static final int FRAME_POOL_MAX_SHAPES = 16;
+    public static final long FRAME_POOL_MAX_IDLE_BYTES = 128L * 1024 * 1024;
+
+    // Offline batch scanning of image archives
+    // Concurrent ImageService calls of a batch scan
+    public static final int BATCH_MAX_IN_FLIGHT = 8;
+    // Images read, decoded or preprocessed ahead of classification, bounds the memory of a batch
+    public static final int BATCH_MAX_QUEUED = 32;
+    // Images are scaled down so the longer edge is at most this before classification, 0 keeps them as they are
+    public static final int BATCH_MAX_EDGE = 1920;
+
+    // Remote (Rekognition) calls
+    // Deadline of a single DetectLabels call, enforced by the SDK
+    public static final long REMOTE_CALL_TIMEOUT_MILLIS = 3_000L;
+    // Deadline of a whole scan including retries and hedged requests
+    public static final long REMOTE_SCAN_DEADLINE_MILLIS = 8_000L;
+    public static final int REMOTE_MAX_ATTEMPTS = 3;
+    // Exponential backoff with full jitter: sleep a random time in [0, min(max, base * 2^(attempt-1))]
+    public static final long REMOTE_BACKOFF_BASE_MILLIS = 100L;
+    public static final long REMOTE_BACKOFF_MAX_MILLIS = 2_000L;
+    // A hedged request is sent after max(p95 latency, this delay) without an answer
+    public static final long REMOTE_HEDGE_MIN_DELAY_MILLIS = 200L;
+    // Consecutive failed scans that open the circuit breaker, and how long it stays open
+    public static final int REMOTE_BREAKER_FAILURE_THRESHOLD = 5;
+    public static final long REMOTE_BREAKER_OPEN_MILLIS = 30_000L;
+    // Threads making remote calls, hedged and abandoned ones included; further calls fail fast.
+    // Same as REMOTE_HTTP_MAX_CONNECTIONS, more threads would only wait for a connection
+    public static final int REMOTE_MAX_CONCURRENT_CALLS = 16;
+
+    // Rekognition HTTP transport, overridable with aws.http.* keys in config.properties
+    // Pooled connections; leave room for hedged requests on top of SCAN_MAX_IN_FLIGHT
+    public static final int REMOTE_HTTP_MAX_CONNECTIONS = 16;
+    // How long a call may wait for a free pooled connection
+    public static final long REMOTE_HTTP_ACQUIRE_TIMEOUT_MILLIS = 1_000L;
+    public static final long REMOTE_HTTP_CONNECT_TIMEOUT_MILLIS = 2_000L;
+    // Idle connections are kept alive this long, and every connection is recycled after the TTL
+    public static final long REMOTE_HTTP_MAX_IDLE_MILLIS = 60_000L;
+    public static final long REMOTE_HTTP_CONNECTION_TTL_MILLIS = 300_000L;
+
+    // Remote call budget and priority scheduling
+    // Sustained calls per second and the burst allowed on top of it
+    public static final double REMOTE_CALLS_PER_SECOND = 5.0;
+    public static final int REMOTE_CALL_BURST = 5;
+    // Calls per calendar day, further scans fail fast until midnight
+    public static final int REMOTE_DAILY_CALL_BUDGET = 10_000;
+    // Priority aging: queued ARMED_HOME / DISARMED requests are ordered as if they had arrived this much later
+    public static final long SCHEDULER_HOME_DELAY_MILLIS = 2_000L;
+    public static final long SCHEDULER_DISARMED_DELAY_MILLIS = 30_000L;
 
 }
@@ -1,46 +1,16 @@
 package com.udacity.constant.enums;
 
 
-import java.awt.*;
-
 /**
- * List of potential states the alarm can have. Also contains metadata about what
- * text and color is associated with the alarm.
- * 警报可能具有的潜在状态列表。还包含有关什么的元数据
- * 文本和颜色与警报相关。
+ * List of potential states the alarm can have. Text and color shown for each state are
+ * presentation concerns and live with the GUI (StyleService), so this enum needs no AWT.
+ * 警报可能具有的潜在状态列表。显示文本和颜色由界面层（StyleService）提供，本枚举不依赖 AWT。
  */
 public enum AlarmStatus {
 
-    NO_ALARM("Cool and Good", new Color(120,200,30)), //表示系统运行正常无报警
-    PENDING_ALARM("I'm in Danger...", new Color(200,150,20)), // 待处理警报
-    ALARM("Awooga!", new Color(250,80,50)); //系统处于报警状态
-
-    private final String description;
-    private final Color color;
-
-    AlarmStatus(String description, Color color) {
-        if (description == null || description.trim().isEmpty()) {
-            throw new IllegalArgumentException("Description cannot be null or empty");
-        }
-        if (color == null) {
-            throw new IllegalArgumentException("Color cannot be null");
-        }
-        if (color.getRed() < 0 || color.getRed() > 255 ||
-                color.getGreen() < 0 || color.getGreen() > 255 ||
-                color.getBlue() < 0 || color.getBlue() > 255) {
-            throw new IllegalArgumentException("AlarmStatus Invalid RGB color values");
-        }
-        this.description = description;
-        this.color = color;
-    }
-
-    public String getDescription() {
-        return description;
-    }
-
-    public Color getColor() {
-        return color;
-    }
+    NO_ALARM, //表示系统运行正常无报警
+    PENDING_ALARM, // 待处理警报
+    ALARM; //系统处于报警状态
 
     @Override
     public String toString() {
@@ -1,45 +1,16 @@
 package com.udacity.constant.enums;
 
 
-import java.awt.*;
-
 /**
  * List of potential states the security system can use to describe how the system is armed.
- * Also contains metadata about what text and color is associated with the arming status.
+ * Text and color shown for each state live with the GUI (StyleService), so this enum needs no AWT.
  *  安全系统可用于描述系统如何布防的潜在状态列表。
- *  还包含有关与布防状态相关联的文本和颜色的元数据。
+ *  显示文本和颜色由界面层（StyleService）提供，本枚举不依赖 AWT。
  */
 public enum ArmingStatus {
-    DISARMED("Disarmed", new Color(120,200,30)),// 安防系统未布防状态
-    ARMED_HOME("Armed - At Home", new Color(190,180,50)),// 在家布防状态
-    ARMED_AWAY("Armed - Away", new Color(170,30,150));//外出布防状态
-
-    private final String description;
-    private final Color color;
-
-    ArmingStatus(String description, Color color) {
-        if (description == null || description.trim().isEmpty()) {
-            throw new IllegalArgumentException("Description cannot be null or empty");
-        }
-        if (color == null) {
-            throw new IllegalArgumentException("Color cannot be null");
-        }
-        if (color.getRed() < 0 || color.getRed() > 255 ||
-                color.getGreen() < 0 || color.getGreen() > 255 ||
-                color.getBlue() < 0 || color.getBlue() > 255) {
-            throw new IllegalArgumentException("ArmingStatus Invalid RGB color values");
-        }
-        this.description = description;
-        this.color = color;
-    }
-
-    public String getDescription() {
-        return description;
-    }
-
-    public Color getColor() {
-        return color;
-    }
+    DISARMED,// 安防系统未布防状态
+    ARMED_HOME,// 在家布防状态
+    ARMED_AWAY;//外出布防状态
 
     @Override
     public String toString() {
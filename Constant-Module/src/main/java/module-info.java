@@ -1,6 +1,5 @@
 module com.udacity.constant {
-    requires java.desktop;
     exports com.udacity.constant.common;
     exports com.udacity.constant.enums;
     exports com.udacity.constant.utils;
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.udacity.image.batch;
+
+import com.udacity.constant.utils.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals and per-stage latencies of a batch scan.
+ * 批量扫描的统计: 吞吐量、各阶段延迟分位数和猫/非猫数量
+ *
+ * Stage latencies measure the work of the stage; the total latency of an image also includes the
+ * time it waited for a free worker between stages.
+ */
+public class BatchScanReport {
+    private final LatencyHistogram decodeLatency = new LatencyHistogram();
+    private final LatencyHistogram preprocessLatency = new LatencyHistogram();
+    private final LatencyHistogram classifyLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+    private final LongAdder cats = new LongAdder();
+    private final LongAdder notCats = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long elapsedNanos;
+
+    void recordResult(BatchScanResult result, long totalNanos) {
+        totalLatency.record(totalNanos);
+        if (result.getCat() == null) {
+            failures.increment();
+        } else if (result.getCat()) {
+            cats.increment();
+        } else {
+            notCats.increment();
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getImages() {
+        return cats.sum() + notCats.sum() + failures.sum();
+    }
+
+    public long getCats() {
+        return cats.sum();
+    }
+
+    public long getNotCats() {
+        return notCats.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    /**
+     * @return images finished per second of wall-clock time
+     */
+    public double getImagesPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : getImages() / getElapsedSeconds();
+    }
+
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    public LatencyHistogram getPreprocessLatency() {
+        return preprocessLatency;
+    }
+
+    public LatencyHistogram getClassifyLatency() {
+        return classifyLatency;
+    }
+
+    public LatencyHistogram getTotalLatency() {
+        return totalLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("images=%d, cats=%d, notCats=%d, failures=%d, elapsed=%.1fs, throughput=%.1f images/s%n"
+                        + "  decode     %s%n  preprocess %s%n  classify   %s%n  total      %s",
+                getImages(), getCats(), getNotCats(), getFailures(), getElapsedSeconds(), getImagesPerSecond(),
+                decodeLatency, preprocessLatency, classifyLatency, totalLatency);
+    }
+}
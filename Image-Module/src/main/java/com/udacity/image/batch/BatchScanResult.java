@@ -0,0 +1,80 @@
+package com.udacity.image.batch;
+
+/**
+ * One line of the JSONL output of a batch scan.
+ * 批量扫描结果文件中的一行
+ *
+ * {@code cat} is absent and {@code error} set when the image could not be read or classified.
+ * Stage times are in milliseconds; a stage that was not reached is absent.
+ */
+public class BatchScanResult {
+    private final String path;
+    private Boolean cat;
+    private Integer width;
+    private Integer height;
+    private Double decodeMillis;
+    private Double preprocessMillis;
+    private Double classifyMillis;
+    private String error;
+
+    BatchScanResult(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Boolean getCat() {
+        return cat;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public Double getDecodeMillis() {
+        return decodeMillis;
+    }
+
+    public Double getPreprocessMillis() {
+        return preprocessMillis;
+    }
+
+    public Double getClassifyMillis() {
+        return classifyMillis;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    void setCat(boolean cat) {
+        this.cat = cat;
+    }
+
+    void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    void setDecodeNanos(long nanos) {
+        this.decodeMillis = nanos / 1e6;
+    }
+
+    void setPreprocessNanos(long nanos) {
+        this.preprocessMillis = nanos / 1e6;
+    }
+
+    void setClassifyNanos(long nanos) {
+        this.classifyMillis = nanos / 1e6;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,382 @@
+package com.udacity.image.batch;
+
+import com.google.gson.Gson;
+import com.google.inject.Guice;
+import com.udacity.constant.common.Constants;
+import com.udacity.image.buffer.FrameBufferPool;
+import com.udacity.image.service.ImageModule;
+import com.udacity.image.service.ImageService;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Headless scan of a directory tree of images with any ImageService, e.g. to re-evaluate
+ * historical footage or to size hardware.
+ * 离线批量扫描目录树中的图片，用于重新评估历史录像或估算所需硬件
+ *
+ * Every image passes three stages, each on its own thread pool: read and decode, preprocess
+ * (scale down to {@code maxEdge}), classify. At most {@code maxInFlight} ImageService calls run at
+ * once, and at most {@code maxQueued} further images wait decoded in memory; the directory walk
+ * blocks while the pipeline is full. JPEGs are decoded through the frame buffer pool and the
+ * frames are recycled once classified.
+ * 三个阶段各有线程池，流水线满时目录遍历阻塞，内存占用有界。
+ *
+ * One JSON object per image is written to the output as it finishes, so lines are in completion
+ * order rather than directory order. An unreadable image or a failed scan is recorded on its line
+ * and does not stop the batch.
+ */
+public class BatchScanner {
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp", "gif", "wbmp");
+
+    private final ImageService imageService;
+    private final float confidenceThreshold;
+    private final int decodeThreads;
+    private final int preprocessThreads;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final int maxEdge;
+    private final FrameBufferPool framePool;
+    private final Gson gson = new Gson();
+
+    private BatchScanner(Builder builder) {
+        this.imageService = builder.imageService;
+        this.confidenceThreshold = builder.confidenceThreshold;
+        this.decodeThreads = builder.decodeThreads;
+        this.preprocessThreads = builder.preprocessThreads;
+        this.maxInFlight = builder.maxInFlight;
+        this.maxQueued = builder.maxQueued;
+        this.maxEdge = builder.maxEdge;
+        this.framePool = builder.framePool;
+    }
+
+    /**
+     * Scan every image below root and write one JSON line per image.
+     * @param root directory to walk, or a single image
+     * @param output receives the JSONL results, flushed but not closed
+     * @return totals and stage latencies of the batch
+     * @throws IOException if the tree cannot be walked or a result cannot be serialized or written;
+     *                     the batch stops at the first such failure
+     */
+    public BatchScanReport run(Path root, Writer output) throws IOException, InterruptedException {
+        Objects.requireNonNull(root, "root must not be null");
+        Objects.requireNonNull(output, "output must not be null");
+        BatchScanReport report = new BatchScanReport();
+        int capacity = maxInFlight + maxQueued;
+        Semaphore slots = new Semaphore(capacity);
+        AtomicReference<IOException> writeFailure = new AtomicReference<>();
+        ExecutorService decodePool = newPool("batch-decode-", decodeThreads);
+        ExecutorService preprocessPool = newPool("batch-preprocess-", preprocessThreads);
+        ExecutorService classifyPool = newPool("batch-classify-", maxInFlight);
+        long start = System.nanoTime();
+        try (Stream<Path> files = Files.walk(root)) {
+            Iterator<Path> images = files.filter(Files::isRegularFile).filter(BatchScanner::isImage).iterator();
+            while (images.hasNext() && writeFailure.get() == null) {
+                Path file = images.next();
+                slots.acquire();
+                Job job = new Job(file, root.equals(file) ? file.getFileName().toString() : root.relativize(file).toString());
+                CompletableFuture.supplyAsync(() -> decode(job), decodePool)
+                        .thenApplyAsync(this::preprocess, preprocessPool)
+                        .thenApplyAsync(this::classify, classifyPool)
+                        .whenComplete((done, t) -> {
+                            try {
+                                finish(job, t, output, report, writeFailure);
+                            } catch (RuntimeException e) {
+                                // 异常不能留在 whenComplete 返回的 future 里, 否则结果行会悄悄丢失
+                                // an exception left in the future of whenComplete would drop the line silently
+                                writeFailure.compareAndSet(null, new IOException("Cannot record the result of " + job.result.getPath(), e));
+                            } finally {
+                                slots.release();
+                            }
+                        });
+            }
+            // 等待流水线中的图片全部完成
+            // wait until every image in the pipeline has finished
+            slots.acquire(capacity);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            report.setElapsedNanos(System.nanoTime() - start);
+            decodePool.shutdownNow();
+            preprocessPool.shutdownNow();
+            classifyPool.shutdownNow();
+        }
+        if (writeFailure.get() != null) {
+            throw writeFailure.get();
+        }
+        output.flush();
+        return report;
+    }
+
+    private Job decode(Job job) {
+        long start = System.nanoTime();
+        try {
+            ByteBuffer encoded = ByteBuffer.wrap(Files.readAllBytes(job.file));
+            if (isJpeg(job.file)) {
+                job.setImage(framePool.decode(encoded), true);
+            } else {
+                job.setImage(ImageService.decode(encoded), false);
+            }
+            job.result.setSize(job.image.getWidth(), job.image.getHeight());
+        } catch (IOException | RuntimeException e) {
+            job.fail(e);
+        } finally {
+            job.result.setDecodeNanos(System.nanoTime() - start);
+        }
+        return job;
+    }
+
+    private Job preprocess(Job job) {
+        if (job.failed()) {
+            return job;
+        }
+        long start = System.nanoTime();
+        try {
+            BufferedImage image = job.image;
+            int longerEdge = Math.max(image.getWidth(), image.getHeight());
+            if (maxEdge > 0 && longerEdge > maxEdge) {
+                double scale = (double) maxEdge / longerEdge;
+                int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+                int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+                BufferedImage scaled = framePool.acquire(width, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = scaled.createGraphics();
+                try {
+                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.drawImage(image, 0, 0, width, height, null);
+                } finally {
+                    g.dispose();
+                }
+                job.setImage(scaled, true);
+            }
+        } catch (RuntimeException e) {
+            job.fail(e);
+        } finally {
+            job.result.setPreprocessNanos(System.nanoTime() - start);
+        }
+        return job;
+    }
+
+    private Job classify(Job job) {
+        if (job.failed()) {
+            return job;
+        }
+        long start = System.nanoTime();
+        try {
+            job.result.setCat(imageService.imageContainsCat(job.image, confidenceThreshold));
+        } catch (RuntimeException e) {
+            job.fail(e);
+        } finally {
+            job.result.setClassifyNanos(System.nanoTime() - start);
+        }
+        return job;
+    }
+
+    private void finish(Job job, Throwable t, Writer output, BatchScanReport report,
+                        AtomicReference<IOException> writeFailure) {
+        if (t != null && !job.failed()) {
+            job.fail(t);
+        }
+        job.setImage(null, false);
+        BatchScanResult result = job.result;
+        if (result.getDecodeMillis() != null) {
+            report.getDecodeLatency().record(Math.round(result.getDecodeMillis() * 1e6));
+        }
+        if (result.getPreprocessMillis() != null) {
+            report.getPreprocessLatency().record(Math.round(result.getPreprocessMillis() * 1e6));
+        }
+        if (result.getClassifyMillis() != null) {
+            report.getClassifyLatency().record(Math.round(result.getClassifyMillis() * 1e6));
+        }
+        report.recordResult(result, System.nanoTime() - job.startNanos);
+        String line;
+        try {
+            line = gson.toJson(result);
+        } catch (RuntimeException e) {
+            writeFailure.compareAndSet(null, new IOException("Cannot serialize the result of " + result.getPath(), e));
+            return;
+        }
+        synchronized (output) {
+            try {
+                output.write(line);
+                output.write('\n');
+            } catch (IOException e) {
+                writeFailure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    private static boolean isImage(Path file) {
+        return IMAGE_EXTENSIONS.contains(extension(file));
+    }
+
+    private static boolean isJpeg(Path file) {
+        String extension = extension(file);
+        return extension.equals("jpg") || extension.equals("jpeg");
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static ExecutorService newPool(String prefix, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, prefix + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Usage: BatchScanner imageDir [results.jsonl] [AWS|LOCAL|CASCADE|FAKE]
+     * Writes the results next to the working directory by default and scans with the local classifier.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: BatchScanner imageDir [results.jsonl] [AWS|LOCAL|CASCADE|FAKE]");
+            System.exit(2);
+        }
+        Path root = Path.of(args[0]);
+        Path results = Path.of(args.length > 1 ? args[1] : "batch-scan-results.jsonl");
+        String control = args.length > 2 ? args[2] : Constants.LOCAL_CONTROL;
+        ImageService imageService = Guice.createInjector(new ImageModule(control)).getInstance(ImageService.class);
+        BatchScanner scanner = new Builder().setImageService(imageService).build();
+        try (Writer output = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+            BatchScanReport report = scanner.run(root, output);
+            System.out.println(report);
+            System.out.println("Results written to " + results.toAbsolutePath());
+        }
+    }
+
+    /**
+     * One image on its way through the stages; stages hand it on through the futures, so each
+     * field is written by one stage at a time.
+     */
+    private final class Job {
+        private final Path file;
+        private final long startNanos = System.nanoTime();
+        private final BatchScanResult result;
+        private BufferedImage image;
+        private boolean pooled;
+
+        private Job(Path file, String relativePath) {
+            this.file = file;
+            this.result = new BatchScanResult(relativePath);
+        }
+
+        /**
+         * Replace the current image, recycling the previous one if it came from the frame pool.
+         */
+        private void setImage(BufferedImage next, boolean nextPooled) {
+            if (pooled && image != null && image != next) {
+                framePool.release(image);
+            }
+            image = next;
+            pooled = nextPooled;
+        }
+
+        private boolean failed() {
+            return result.getError() != null;
+        }
+
+        private void fail(Throwable t) {
+            Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            result.setError(cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage());
+        }
+    }
+
+    public static class Builder {
+        private ImageService imageService;
+        private float confidenceThreshold = Constants.CAT_CONFIDENCE_THRESHOLD;
+        private int decodeThreads = Runtime.getRuntime().availableProcessors();
+        private int preprocessThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int maxInFlight = Constants.BATCH_MAX_IN_FLIGHT;
+        private int maxQueued = Constants.BATCH_MAX_QUEUED;
+        private int maxEdge = Constants.BATCH_MAX_EDGE;
+        private FrameBufferPool framePool = FrameBufferPool.shared();
+
+        public Builder setImageService(ImageService imageService) {
+            this.imageService = Objects.requireNonNull(imageService, "imageService must not be null");
+            return this;
+        }
+
+        public Builder setConfidenceThreshold(float confidenceThreshold) {
+            this.confidenceThreshold = confidenceThreshold;
+            return this;
+        }
+
+        public Builder setDecodeThreads(int decodeThreads) {
+            this.decodeThreads = decodeThreads;
+            return this;
+        }
+
+        public Builder setPreprocessThreads(int preprocessThreads) {
+            this.preprocessThreads = preprocessThreads;
+            return this;
+        }
+
+        /**
+         * @param maxInFlight concurrent ImageService calls
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param maxQueued images read ahead of classification
+         */
+        public Builder setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+            return this;
+        }
+
+        /**
+         * @param maxEdge longest edge after preprocessing, 0 to classify images at their own size
+         */
+        public Builder setMaxEdge(int maxEdge) {
+            this.maxEdge = maxEdge;
+            return this;
+        }
+
+        public Builder setFramePool(FrameBufferPool framePool) {
+            this.framePool = Objects.requireNonNull(framePool, "framePool must not be null");
+            return this;
+        }
+
+        public BatchScanner build() {
+            if (imageService == null) {
+                throw new IllegalStateException("imageService is required");
+            }
+            if (decodeThreads <= 0 || preprocessThreads <= 0 || maxInFlight <= 0) {
+                throw new IllegalStateException("thread counts and maxInFlight must be positive");
+            }
+            if (maxQueued < 0 || maxEdge < 0) {
+                throw new IllegalStateException("maxQueued and maxEdge must not be negative");
+            }
+            return new BatchScanner(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.udacity.image.buffer;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * ImageInputStream over a byte array region that can be pointed at a new region, so one instance
+ * serves every frame a decoder thread reads.
+ * 可重复使用的字节数组 ImageInputStream，每个解码线程一个实例
+ *
+ * Unlike ImageIO.createImageInputStream it neither allocates nor caches per frame.
+ */
+final class ByteArrayImageInputStream extends ImageInputStreamImpl {
+    private byte[] data = new byte[0];
+    private int offset;
+    private int length;
+
+    void setData(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.streamPos = 0;
+        this.bitOffset = 0;
+        this.flushedPos = 0;
+    }
+
+    @Override
+    public int read() {
+        bitOffset = 0;
+        if (streamPos >= length) {
+            return -1;
+        }
+        return data[offset + (int) streamPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        int available = length - (int) streamPos;
+        if (available <= 0) {
+            return -1;
+        }
+        int n = Math.min(len, available);
+        System.arraycopy(data, offset + (int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+}
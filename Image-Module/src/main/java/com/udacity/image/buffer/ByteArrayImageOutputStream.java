@@ -0,0 +1,88 @@
+package com.udacity.image.buffer;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable in-memory ImageOutputStream that keeps its array across frames.
+ * 可重复使用的内存 ImageOutputStream，数组在帧之间保留
+ *
+ * After a few frames the array has reached the largest encoded size and encoding stops allocating.
+ */
+final class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+    private byte[] buf;
+    private int count;
+
+    ByteArrayImageOutputStream(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    void clear() {
+        streamPos = 0;
+        bitOffset = 0;
+        flushedPos = 0;
+        count = 0;
+    }
+
+    /**
+     * @return the bytes written since the last clear, backed by the internal array
+     */
+    ByteBuffer contents() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + 1);
+        buf[(int) streamPos++] = (byte) b;
+        count = Math.max(count, (int) streamPos);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + len);
+        System.arraycopy(b, off, buf, (int) streamPos, len);
+        streamPos += len;
+        count = Math.max(count, (int) streamPos);
+    }
+
+    @Override
+    public int read() {
+        bitOffset = 0;
+        if (streamPos >= count) {
+            return -1;
+        }
+        return buf[(int) streamPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        int available = count - (int) streamPos;
+        if (available <= 0) {
+            return -1;
+        }
+        int n = Math.min(len, available);
+        System.arraycopy(buf, (int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return count;
+    }
+
+    private void ensureCapacity(long needed) {
+        if (needed > buf.length) {
+            buf = Arrays.copyOf(buf, (int) Math.max(needed, buf.length * 2L));
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.udacity.image.buffer;
+
+import com.udacity.constant.common.Constants;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of frame rasters plus per-thread JPEG decoders and encoders that reuse them.
+ * 帧缓冲池：复用解码目标图像和编码缓冲区，稳定扫描时每帧几乎不分配内存
+ *
+ * {@link #decode(ByteBuffer)} decodes into a pooled BufferedImage through
+ * {@link ImageReadParam#setDestination(BufferedImage)}; the caller gives it back with
+ * {@link #release(BufferedImage)} once nothing reads it any more. {@link #encodeJpeg(RenderedImage)}
+ * encodes into a per-thread array that grows to the largest frame and is then reused. Each thread
+ * keeps one ImageReader and one ImageWriter for its lifetime.
+ * 解码得到的图像用完后必须 release，编码结果在同一线程下一次编码前有效。
+ *
+ * Frames are pooled by exact width, height and image type; a camera produces one shape, so a
+ * site with a handful of cameras has a handful of buckets. Archives of mixed sizes are bounded by
+ * the number of shapes pooled and the bytes of idle frames kept; beyond those frames are
+ * allocated and left to the GC as before.
+ *
+ * The JDK JPEG codec still copies pixels through a short lived row array per scanline; those die in
+ * the TLAB, the frame sized rasters and byte arrays are what the pool keeps out of the heap.
+ */
+public class FrameBufferPool {
+    private static final FrameBufferPool SHARED = new FrameBufferPool(Constants.FRAME_POOL_MAX_PER_SHAPE);
+
+    private final int maxPerShape;
+    private final int maxShapes;
+    private final long maxIdleBytes;
+    private final AtomicLong idleBytes = new AtomicLong();
+    // 形状很少, 线性查找比哈希表更省 (无装箱、无键对象)
+    // few shapes, a linear scan needs no key objects or boxing
+    private volatile Bucket[] buckets = new Bucket[0];
+    private final ThreadLocal<Codec> codecs = ThreadLocal.withInitial(Codec::new);
+
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    /**
+     * @param maxPerShape idle frames kept per shape, further released frames are left to the GC
+     */
+    public FrameBufferPool(int maxPerShape) {
+        this(maxPerShape, Constants.FRAME_POOL_MAX_SHAPES, Constants.FRAME_POOL_MAX_IDLE_BYTES);
+    }
+
+    /**
+     * @param maxPerShape idle frames kept per shape
+     * @param maxShapes shapes pooled, frames of further shapes are not pooled
+     * @param maxIdleBytes pixel bytes of all idle frames together
+     */
+    public FrameBufferPool(int maxPerShape, int maxShapes, long maxIdleBytes) {
+        if (maxPerShape <= 0 || maxShapes <= 0 || maxIdleBytes <= 0) {
+            throw new IllegalArgumentException("maxPerShape, maxShapes and maxIdleBytes must be positive");
+        }
+        this.maxPerShape = maxPerShape;
+        this.maxShapes = maxShapes;
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    /**
+     * @return pool shared by the image services
+     */
+    public static FrameBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Take an idle frame of this shape, or allocate one. Its pixels are undefined.
+     */
+    public BufferedImage acquire(int width, int height, int imageType) {
+        Bucket bucket = bucket(width, height, imageType);
+        BufferedImage image = bucket == null ? null : bucket.idle.poll();
+        if (image != null) {
+            idleBytes.addAndGet(-pixelBytes(image));
+            reused.increment();
+            return image;
+        }
+        allocated.increment();
+        return new BufferedImage(width, height, imageType);
+    }
+
+    /**
+     * Give a frame back. The caller must not touch it afterwards.
+     */
+    public void release(BufferedImage image) {
+        if (image == null) {
+            return;
+        }
+        int type = image.getType();
+        Bucket bucket = type == BufferedImage.TYPE_CUSTOM ? null : bucket(image.getWidth(), image.getHeight(), type);
+        long bytes = pixelBytes(image);
+        if (bucket == null || idleBytes.addAndGet(bytes) > maxIdleBytes) {
+            if (bucket != null) {
+                idleBytes.addAndGet(-bytes);
+            }
+            discarded.increment();
+            return;
+        }
+        if (!bucket.idle.offer(image)) {
+            idleBytes.addAndGet(-bytes);
+            discarded.increment();
+            return;
+        }
+        released.increment();
+    }
+
+    /**
+     * Decode the JPEG between the buffer's position and limit into a pooled frame.
+     * 将 JPEG 解码到池中的图像，用完后调用 release
+     * @return frame to {@link #release(BufferedImage)} when done
+     * @throws IllegalArgumentException if the bytes are not a readable image
+     */
+    public BufferedImage decode(ByteBuffer encoded) {
+        return codecs.get().decode(this, encoded);
+    }
+
+    /**
+     * Encode an image as JPEG into this thread's reusable buffer.
+     * 将图像编码为 JPEG，结果在本线程下一次编码之前有效
+     * @return the JPEG bytes, valid until this thread encodes again
+     * @throws IOException if the image cannot be written as JPEG
+     */
+    public ByteBuffer encodeJpeg(RenderedImage image) throws IOException {
+        return codecs.get().encode(image);
+    }
+
+    public long getAllocated() {
+        return allocated.sum();
+    }
+
+    public long getReused() {
+        return reused.sum();
+    }
+
+    public long getReleased() {
+        return released.sum();
+    }
+
+    public long getDiscarded() {
+        return discarded.sum();
+    }
+
+    public long getIdleBytes() {
+        return idleBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FrameBufferPool{shapes=%d, allocated=%d, reused=%d, released=%d, discarded=%d, idleBytes=%d}",
+                buckets.length, getAllocated(), getReused(), getReleased(), getDiscarded(), getIdleBytes());
+    }
+
+    /**
+     * @return the bucket of this shape, or null when maxShapes other shapes are pooled already
+     */
+    private Bucket bucket(int width, int height, int imageType) {
+        Bucket[] current = buckets;
+        for (Bucket bucket : current) {
+            if (bucket.matches(width, height, imageType)) {
+                return bucket;
+            }
+        }
+        if (current.length >= maxShapes) {
+            return null;
+        }
+        synchronized (this) {
+            for (Bucket bucket : buckets) {
+                if (bucket.matches(width, height, imageType)) {
+                    return bucket;
+                }
+            }
+            if (buckets.length >= maxShapes) {
+                return null;
+            }
+            Bucket bucket = new Bucket(width, height, imageType, maxPerShape);
+            Bucket[] grown = Arrays.copyOf(buckets, buckets.length + 1);
+            grown[grown.length - 1] = bucket;
+            buckets = grown;
+            return bucket;
+        }
+    }
+
+    private static long pixelBytes(BufferedImage image) {
+        DataBuffer data = image.getRaster().getDataBuffer();
+        return (long) data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+    }
+
+    private static final class Bucket {
+        private final int width;
+        private final int height;
+        private final int imageType;
+        // 基于数组的队列, offer/poll 不分配节点
+        // array backed, offer and poll allocate no nodes
+        private final ArrayBlockingQueue<BufferedImage> idle;
+
+        private Bucket(int width, int height, int imageType, int capacity) {
+            this.width = width;
+            this.height = height;
+            this.imageType = imageType;
+            this.idle = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private boolean matches(int width, int height, int imageType) {
+            return this.width == width && this.height == height && this.imageType == imageType;
+        }
+    }
+
+    /**
+     * One reader, writer and their streams per thread.
+     */
+    private static final class Codec {
+        private final ImageReader reader;
+        private final ImageReadParam readParam;
+        private final ByteArrayImageInputStream input = new ByteArrayImageInputStream();
+        private byte[] directCopy = new byte[0];
+        private final ImageWriter writer;
+        private final ByteArrayImageOutputStream output = new ByteArrayImageOutputStream(64 * 1024);
+
+        private Codec() {
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpeg");
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+            if (!readers.hasNext() || !writers.hasNext()) {
+                throw new IllegalStateException("No JPEG ImageReader/ImageWriter available");
+            }
+            this.reader = readers.next();
+            this.readParam = reader.getDefaultReadParam();
+            this.writer = writers.next();
+        }
+
+        private BufferedImage decode(FrameBufferPool pool, ByteBuffer encoded) {
+            if (encoded.hasArray()) {
+                input.setData(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+            } else {
+                if (directCopy.length < encoded.remaining()) {
+                    directCopy = new byte[encoded.remaining()];
+                }
+                encoded.duplicate().get(directCopy, 0, encoded.remaining());
+                input.setData(directCopy, 0, encoded.remaining());
+            }
+            reader.setInput(input, true, true);
+            try {
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                ImageTypeSpecifier type = reader.getImageTypes(0).next();
+                if (type.getBufferedImageType() == BufferedImage.TYPE_CUSTOM) {
+                    // 非标准类型无法池化, 直接解码
+                    // custom layouts cannot be pooled by type, decode into a fresh image
+                    return reader.read(0);
+                }
+                BufferedImage destination = pool.acquire(width, height, type.getBufferedImageType());
+                readParam.setDestination(destination);
+                try {
+                    return reader.read(0, readParam);
+                } catch (IOException | RuntimeException e) {
+                    pool.release(destination);
+                    throw e;
+                } finally {
+                    readParam.setDestination(null);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Encoded frame is not a readable image", e);
+            } finally {
+                reader.setInput(null);
+            }
+        }
+
+        private ByteBuffer encode(RenderedImage image) throws IOException {
+            output.clear();
+            writer.setOutput(output);
+            try {
+                writer.write(null, new IIOImage(image, null, null), null);
+            } finally {
+                writer.setOutput(null);
+            }
+            return output.contents();
+        }
+    }
+}
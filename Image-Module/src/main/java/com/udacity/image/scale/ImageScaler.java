@@ -0,0 +1,92 @@
+package com.udacity.image.scale;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Fast downscaling of large images to a small display size.
+ * 将大图快速缩小到显示尺寸
+ *
+ * {@link #readScaled(byte[], int, int)} lets the decoder skip pixels with
+ * {@link ImageReadParam#setSourceSubsampling} so a 24 megapixel photo is decoded at little more
+ * than the target size, then {@link #scale(BufferedImage, int, int)} finishes with bilinear steps
+ * that halve the image at most, which keeps the quality of SCALE_SMOOTH at a fraction of its cost.
+ * 先按整数倍抽样解码，再逐级（每次不小于一半）双线性缩放。
+ *
+ * Images are stretched to exactly the requested size, like the camera label always did.
+ */
+public final class ImageScaler {
+    private ImageScaler() {
+    }
+
+    /**
+     * Decode an encoded image straight down to the requested size.
+     * @param encoded image file contents in any format ImageIO reads
+     * @throws IOException if the bytes are not a readable image
+     */
+    public static BufferedImage readScaled(byte[] encoded, int width, int height) throws IOException {
+        checkSize(width, height);
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // 抽样后的尺寸仍不小于目标尺寸, 剩余部分由双线性缩放完成
+                // subsample by as much as keeps both edges at or above the target size
+                int step = Math.max(1, Math.min(reader.getWidth(0) / width, reader.getHeight(0) / height));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return scale(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale an image to the requested size, halving at most per bilinear step when shrinking.
+     * @return a new image of exactly width x height
+     */
+    public static BufferedImage scale(BufferedImage source, int width, int height) {
+        checkSize(width, height);
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            // 单步缩小超过一半时双线性会跳过像素, 产生锯齿
+            // bilinear drops pixels when one step shrinks by more than half, so halve first
+            int nextWidth = currentWidth > width ? Math.max(width, (currentWidth + 1) / 2) : width;
+            int nextHeight = currentHeight > height ? Math.max(height, (currentHeight + 1) / 2) : height;
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be positive");
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.udacity.image.service;
 
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.udacity.constant.common.Constants;
+import com.udacity.image.buffer.FrameBufferPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.SdkBytes;
@@ -10,10 +13,10 @@ import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -43,12 +46,35 @@ public class AwsImageService implements ImageService {
 
     //aws recommendation is to maintain only a single instance of client objects
     // AWS Rekognition 客户端，按 AWS 的建议使用单例模式，避免重复创建客户端实例
-    private final RekognitionClient rekognitionClient;
+    // 首次扫描时才创建 (读取配置、解密凭证、构建 SDK 客户端), 不拖慢启动
+    // created on the first scan (config, credential decryption, SDK client), not at startup
+    private final Provider<RekognitionClient> rekognitionClient;
+    // 单次 DetectLabels 调用的超时时间, 超时抛出 ApiCallTimeoutException
+    // deadline of a single DetectLabels call, exceeded calls throw ApiCallTimeoutException
+    private final Duration callTimeout;
 
-    @Inject
     public AwsImageService(RekognitionClient rekognitionClient) {
+        this(rekognitionClient, Duration.ofMillis(Constants.REMOTE_CALL_TIMEOUT_MILLIS));
+    }
+
+    public AwsImageService(RekognitionClient rekognitionClient, Duration callTimeout) {
+        this(providerOf(Objects.requireNonNull(rekognitionClient, "rekognitionClient must not be null")), callTimeout);
+    }
+
+    @Inject
+    public AwsImageService(Provider<RekognitionClient> rekognitionClient) {
+        this(rekognitionClient, Duration.ofMillis(Constants.REMOTE_CALL_TIMEOUT_MILLIS));
+    }
+
+    public AwsImageService(Provider<RekognitionClient> rekognitionClient, Duration callTimeout) {
         Objects.requireNonNull(rekognitionClient, "rekognitionClient must not be null");
+        Objects.requireNonNull(callTimeout, "callTimeout must not be null");
         this.rekognitionClient = rekognitionClient;
+        this.callTimeout = callTimeout;
+    }
+
+    private static Provider<RekognitionClient> providerOf(RekognitionClient client) {
+        return () -> client;
     }
 
     /**
@@ -61,19 +87,36 @@ public class AwsImageService implements ImageService {
      */
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
         Image awsImage = null;
-        // 使用 ImageIO 将 BufferedImage 写入 ByteArrayOutputStream
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            // 将图像字节数组转换为 AWS 的 Image 对象
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        // 编码到本线程复用的缓冲区, SDK 只复制一次最终大小的字节
+        // encode into this thread's reusable buffer, the SDK copies the final bytes once
+        try {
+            awsImage = Image.builder().bytes(SdkBytes.fromByteBuffer(FrameBufferPool.shared().encodeJpeg(image))).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
         }
+        return detectCat(awsImage, confidenceThreshhold);
+    }
+
+    /**
+     * Send an already encoded JPEG frame as it is, without decoding and re-encoding it.
+     * 直接发送已编码的 JPEG 帧，无需解码再编码
+     */
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedJpeg, float confidenceThreshold) {
+        Image awsImage = Image.builder().bytes(SdkBytes.fromByteBuffer(encodedJpeg.duplicate())).build();
+        return detectCat(awsImage, confidenceThreshold);
+    }
+
+    private boolean detectCat(Image awsImage, float confidenceThreshhold) {
         // 指定图像和置信度阈值
-        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder()
+                .image(awsImage)
+                .minConfidence(confidenceThreshhold)
+                .overrideConfiguration(o -> o.apiCallTimeout(callTimeout))
+                .build();
         // 调用 AWS Rekognition
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
+        DetectLabelsResponse response = rekognitionClient.get().detectLabels(detectLabelsRequest);
         logLabelsForFun(response);
         return response.labels().stream()
                 .anyMatch(l -> l.name().equalsIgnoreCase("cat"));
@@ -81,11 +124,10 @@ public class AwsImageService implements ImageService {
 
     public boolean imageContainsLabel(BufferedImage image, String label,float confidenceThreshhold) {
         Image awsImage = null;
-        // 使用 ImageIO 将 BufferedImage 写入 ByteArrayOutputStream
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            // 将图像字节数组转换为 AWS 的 Image 对象
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        // 编码到本线程复用的缓冲区, SDK 只复制一次最终大小的字节
+        // encode into this thread's reusable buffer, the SDK copies the final bytes once
+        try {
+            awsImage = Image.builder().bytes(SdkBytes.fromByteBuffer(FrameBufferPool.shared().encodeJpeg(image))).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
@@ -94,10 +136,11 @@ public class AwsImageService implements ImageService {
         DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder()
                 .image(awsImage)
                 .minConfidence(confidenceThreshhold)
+                .overrideConfiguration(o -> o.apiCallTimeout(callTimeout))
                 .build();
 
         // 调用 AWS Rekognition
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
+        DetectLabelsResponse response = rekognitionClient.get().detectLabels(detectLabelsRequest);
         logLabelsForFun(response);
         return response.labels().stream()
                 .anyMatch(l -> l.name().toLowerCase()
@@ -0,0 +1,109 @@
+package com.udacity.image.service;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier classifier: the local colour heuristic answers on its own when it is clearly above or below the
+ * caller's threshold, and only frames in the uncertain band are sent to the remote service.
+ * 两级识别：本地模型置信度明显高于或低于阈值时直接返回，只有不确定的帧才调用远程服务。
+ *
+ * With threshold 70 and margin 20, a local confidence of 90 or more answers "cat", 50 or less
+ * answers "no cat", and everything in between is escalated.
+ */
+public class CascadingImageService implements ImageService {
+    private final Logger log = LoggerFactory.getLogger(CascadingImageService.class);
+
+    private final LocalImageService local;
+    private final ImageService remote;
+    private final float uncertaintyMargin;
+
+    private final LongAdder localPositives = new LongAdder();
+    private final LongAdder localNegatives = new LongAdder();
+    private final LongAdder escalations = new LongAdder();
+    private final LatencyHistogram localLatency = new LatencyHistogram();
+    private final LatencyHistogram remoteLatency = new LatencyHistogram();
+
+    @Inject
+    public CascadingImageService(LocalImageService local, @Named("remoteImageService") ImageService remote) {
+        this(local, remote, Constants.CASCADE_UNCERTAINTY_MARGIN);
+    }
+
+    public CascadingImageService(LocalImageService local, ImageService remote, float uncertaintyMargin) {
+        if (uncertaintyMargin < 0f) {
+            throw new IllegalArgumentException("uncertaintyMargin must not be negative");
+        }
+        this.local = Objects.requireNonNull(local, "local LocalImageService must not be null");
+        this.remote = Objects.requireNonNull(remote, "remote ImageService must not be null");
+        this.uncertaintyMargin = uncertaintyMargin;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        long start = System.nanoTime();
+        float confidence = local.catConfidence(image);
+        localLatency.record(System.nanoTime() - start);
+
+        if (confidence >= confidenceThreshold + uncertaintyMargin) {
+            localPositives.increment();
+            return true;
+        }
+        if (confidence <= confidenceThreshold - uncertaintyMargin) {
+            localNegatives.increment();
+            return false;
+        }
+        // 本地模型不确定, 交给远程服务判断
+        // the local model is unsure, ask the remote classifier
+        escalations.increment();
+        log.debug("Local confidence {} is within {} of threshold {}, escalating", confidence, uncertaintyMargin, confidenceThreshold);
+        start = System.nanoTime();
+        try {
+            return remote.imageContainsCat(image, confidenceThreshold);
+        } finally {
+            remoteLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    public long getLocalPositives() {
+        return localPositives.sum();
+    }
+
+    public long getLocalNegatives() {
+        return localNegatives.sum();
+    }
+
+    public long getEscalations() {
+        return escalations.sum();
+    }
+
+    /**
+     * @return share of scans answered by the local tier, between 0 and 1
+     */
+    public double getLocalHitRatio() {
+        long local = localPositives.sum() + localNegatives.sum();
+        long total = local + escalations.sum();
+        return total == 0 ? 0.0 : (double) local / total;
+    }
+
+    public LatencyHistogram getLocalLatency() {
+        return localLatency;
+    }
+
+    public LatencyHistogram getRemoteLatency() {
+        return remoteLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CascadingImageService{localHitRatio=%.2f, localPositives=%d, localNegatives=%d, escalations=%d, local=[%s], remote=[%s]}",
+                getLocalHitRatio(), getLocalPositives(), getLocalNegatives(), getEscalations(), localLatency, remoteLatency);
+    }
+}
@@ -0,0 +1,175 @@
+package com.udacity.image.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Small convolutional network evaluated on the CPU for {@link LocalImageService}.
+ * 在 CPU 上执行的小型卷积网络结构，随附的权重是手工设定的颜色启发式规则，并非训练所得
+ *
+ * Layout: conv 3x3 (3 -> conv1.filters) + ReLU + 2x2 max pool, conv 3x3 (conv1.filters ->
+ * conv2.filters) + ReLU + global average pool, dense (conv2.filters -> 1) + sigmoid.
+ * Weights are read from a properties file (see local-cat-model.properties) as comma separated
+ * floats, convolution weights in [out][in][ky][kx] order. Instances are immutable and can be
+ * shared between threads; every thread uses its own {@link Scratch}.
+ */
+final class CatClassifierModel {
+    private static final int KERNEL = 3;
+    private static final int KERNEL_AREA = KERNEL * KERNEL;
+    private static final int CHANNELS = 3;
+
+    private final int inputSize;
+    private final int conv1Filters;
+    private final float[] conv1Weights;
+    private final float[] conv1Bias;
+    private final int conv2Filters;
+    private final float[] conv2Weights;
+    private final float[] conv2Bias;
+    private final float[] denseWeights;
+    private final float denseBias;
+
+    private CatClassifierModel(Properties props) {
+        this.inputSize = Integer.parseInt(required(props, "input.size"));
+        if (inputSize < 2 || inputSize % 2 != 0) {
+            throw new IllegalArgumentException("input.size must be an even number >= 2");
+        }
+        this.conv1Filters = Integer.parseInt(required(props, "conv1.filters"));
+        this.conv1Weights = floats(props, "conv1.weights", conv1Filters * CHANNELS * KERNEL_AREA);
+        this.conv1Bias = floats(props, "conv1.bias", conv1Filters);
+        this.conv2Filters = Integer.parseInt(required(props, "conv2.filters"));
+        this.conv2Weights = floats(props, "conv2.weights", conv2Filters * conv1Filters * KERNEL_AREA);
+        this.conv2Bias = floats(props, "conv2.bias", conv2Filters);
+        this.denseWeights = floats(props, "dense.weights", conv2Filters);
+        this.denseBias = floats(props, "dense.bias", 1)[0];
+    }
+
+    static CatClassifierModel load(InputStream is) throws IOException {
+        Properties props = new Properties();
+        props.load(is);
+        return new CatClassifierModel(props);
+    }
+
+    int getInputSize() {
+        return inputSize;
+    }
+
+    Scratch newScratch() {
+        return new Scratch(this);
+    }
+
+    /**
+     * @param input planar RGB input, 3 x inputSize x inputSize, values in [0, 1]
+     * @param scratch per-thread working memory
+     * @return probability in [0, 1] that the image contains a cat
+     */
+    float predict(float[] input, Scratch scratch) {
+        int size = inputSize;
+        int pooledSize = size / 2;
+        convolveRelu(input, CHANNELS, size, conv1Weights, conv1Bias, conv1Filters, scratch.conv1);
+        maxPool(scratch.conv1, conv1Filters, size, scratch.pooled);
+        convolveRelu(scratch.pooled, conv1Filters, pooledSize, conv2Weights, conv2Bias, conv2Filters, scratch.conv2);
+
+        int area = pooledSize * pooledSize;
+        float logit = denseBias;
+        for (int f = 0; f < conv2Filters; f++) {
+            float sum = 0f;
+            int base = f * area;
+            for (int i = 0; i < area; i++) {
+                sum += scratch.conv2[base + i];
+            }
+            logit += denseWeights[f] * (sum / area);
+        }
+        return (float) (1.0 / (1.0 + Math.exp(-logit)));
+    }
+
+    /**
+     * 3x3 "same" convolution with zero padding followed by ReLU.
+     */
+    private static void convolveRelu(float[] in, int inChannels, int size, float[] weights, float[] bias,
+                                     int outChannels, float[] out) {
+        int area = size * size;
+        for (int o = 0; o < outChannels; o++) {
+            int outBase = o * area;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    float acc = bias[o];
+                    for (int c = 0; c < inChannels; c++) {
+                        int inBase = c * area;
+                        int wBase = (o * inChannels + c) * KERNEL_AREA;
+                        for (int ky = 0; ky < KERNEL; ky++) {
+                            int iy = y + ky - 1;
+                            if (iy < 0 || iy >= size) {
+                                continue;
+                            }
+                            int row = inBase + iy * size;
+                            int wRow = wBase + ky * KERNEL;
+                            for (int kx = 0; kx < KERNEL; kx++) {
+                                int ix = x + kx - 1;
+                                if (ix >= 0 && ix < size) {
+                                    acc += weights[wRow + kx] * in[row + ix];
+                                }
+                            }
+                        }
+                    }
+                    out[outBase + y * size + x] = acc > 0f ? acc : 0f;
+                }
+            }
+        }
+    }
+
+    private static void maxPool(float[] in, int channels, int size, float[] out) {
+        int half = size / 2;
+        for (int c = 0; c < channels; c++) {
+            int inBase = c * size * size;
+            int outBase = c * half * half;
+            for (int y = 0; y < half; y++) {
+                for (int x = 0; x < half; x++) {
+                    int i = inBase + (2 * y) * size + 2 * x;
+                    out[outBase + y * half + x] = Math.max(Math.max(in[i], in[i + 1]),
+                            Math.max(in[i + size], in[i + size + 1]));
+                }
+            }
+        }
+    }
+
+    private static String required(Properties props, String key) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing model property: " + key);
+        }
+        return value.trim();
+    }
+
+    private static float[] floats(Properties props, String key, int expected) {
+        String[] parts = required(props, key).split("[,\\s]+");
+        if (parts.length != expected) {
+            throw new IllegalArgumentException(String.format("Model property %s has %d values, expected %d",
+                    key, parts.length, expected));
+        }
+        float[] values = new float[expected];
+        for (int i = 0; i < expected; i++) {
+            values[i] = Float.parseFloat(parts[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Per-thread working memory so inference does not allocate per frame.
+     */
+    static final class Scratch {
+        final float[] input;
+        private final float[] conv1;
+        private final float[] pooled;
+        private final float[] conv2;
+
+        private Scratch(CatClassifierModel model) {
+            int area = model.inputSize * model.inputSize;
+            int pooledArea = area / 4;
+            this.input = new float[CHANNELS * area];
+            this.conv1 = new float[model.conv1Filters * area];
+            this.pooled = new float[model.conv1Filters * pooledArea];
+            this.conv2 = new float[model.conv2Filters * pooledArea];
+        }
+    }
+}
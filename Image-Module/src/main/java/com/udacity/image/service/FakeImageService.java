@@ -1,6 +1,7 @@
 package com.udacity.image.service;
 
 import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 /**
@@ -13,4 +14,11 @@ public class FakeImageService implements ImageService {
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
         return r.nextBoolean();
     }
+
+    // 随机结果不需要解码图像
+    // the answer is random, no need to decode the frame
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedJpeg, float confidenceThreshold) {
+        return r.nextBoolean();
+    }
 }
@@ -1,27 +1,63 @@
 package com.udacity.image.service;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Key;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.OptionalBinder;
+import com.google.inject.name.Names;
 import com.udacity.constant.common.Constants;
+import com.udacity.constant.enums.ArmingStatus;
 import com.udacity.image.config.encryptedAwsConfig;
+import com.udacity.image.transport.HandshakeTimingSocketFactory;
+import com.udacity.image.transport.RekognitionTransportMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClientBuilder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class ImageModule extends AbstractModule {
+    /**
+     * Arming status that orders remote calls in RemoteScanScheduler. Without a security system
+     * (e.g. BatchScanner) every call is treated as ARMED_AWAY; SecurityModule binds the real one with
+     * {@code OptionalBinder.newOptionalBinder(binder(), ImageModule.ARMING_STATUS).setBinding()}.
+     * 远程调用的优先级取自布防状态, 默认按外出布防处理
+     */
+    public static final Key<Supplier<ArmingStatus>> ARMING_STATUS =
+            Key.get(new TypeLiteral<Supplier<ArmingStatus>>() { }, Names.named("armingStatus"));
+
     private final Logger log = LoggerFactory.getLogger(ImageModule.class);
 
     private final String control;
+    // 覆盖 Rekognition 的访问地址, 例如指向本地的 RekognitionStubServer
+    // Overrides the Rekognition endpoint, e.g. to point at a local RekognitionStubServer
+    private final URI endpointOverride;
+    // 连接池、握手和请求耗时指标
+    // connection pool, handshake and request time metrics of the Rekognition client
+    private final RekognitionTransportMetrics transportMetrics = new RekognitionTransportMetrics();
+
     public ImageModule(String control){
+        this(control, null);
+    }
+
+    public ImageModule(String control, URI endpointOverride){
         this.control = control;
+        this.endpointOverride = endpointOverride;
     }
 
     @Override
@@ -29,14 +65,57 @@ public class ImageModule extends AbstractModule {
         // 绑定 ImageService 接口的实现
         if (control.equals(Constants.AWS_CONTROL)) {
             configureAwsBindings();
+        } else if (control.equals(Constants.LOCAL_CONTROL)) {
+            bind(ImageService.class).annotatedWith(Names.named("baseImageService"))
+                    .to(LocalImageService.class).in(Singleton.class);
+        } else if (control.equals(Constants.CASCADE_CONTROL)) {
+            bindRemoteImageService();
+            bind(ImageService.class).annotatedWith(Names.named("baseImageService"))
+                    .to(CascadingImageService.class).in(Singleton.class);
         } else {
-            bind(ImageService.class).to(FakeImageService.class).in(Singleton.class);
+            bind(ImageService.class).annotatedWith(Names.named("baseImageService"))
+                    .to(FakeImageService.class).in(Singleton.class);
         }
+        // 合并相同帧的并发识别请求
+        // Concurrent scans of the same frame share one call to the base ImageService
+        bind(ImageService.class).to(SingleFlightImageService.class).in(Singleton.class);
     }
 
     private void configureAwsBindings() {
-        bind(RekognitionClient.class).toInstance(createRekognitionClient());
-        bind(ImageService.class).to(AwsImageService.class).in(Singleton.class);
+        bindRemoteImageService();
+        bind(ImageService.class).annotatedWith(Names.named("baseImageService"))
+                .to(Key.get(ImageService.class, Names.named("remoteImageService")));
+    }
+
+    /**
+     * Rekognition calls go through RemoteScanScheduler for the call budget and priority, then
+     * ResilientImageService for deadlines, retries, hedging and the circuit breaker. Only this tier
+     * is throttled; local answers of the cascade are not.
+     * Rekognition 调用先经过预算和优先级调度, 再经过容错装饰器: 超时、重试、对冲请求和熔断
+     */
+    private void bindRemoteImageService() {
+        // 延迟到首次扫描才创建客户端, 启动时不读取配置也不解密凭证
+        // the client is built on first use, startup neither reads the config nor decrypts the credentials
+        bind(RekognitionClient.class).toProvider(new RekognitionClientProvider()).in(Singleton.class);
+        bind(RekognitionTransportMetrics.class).toInstance(transportMetrics);
+        bind(ImageService.class).annotatedWith(Names.named("awsImageService"))
+                .to(AwsImageService.class).in(Singleton.class);
+        bind(ImageService.class).annotatedWith(Names.named("resilientImageService"))
+                .to(ResilientImageService.class).in(Singleton.class);
+        OptionalBinder.newOptionalBinder(binder(), ARMING_STATUS).setDefault()
+                .toInstance(() -> ArmingStatus.ARMED_AWAY);
+        bind(ImageService.class).annotatedWith(Names.named("remoteImageService"))
+                .to(RemoteScanScheduler.class).in(Singleton.class);
+    }
+
+    private class RekognitionClientProvider implements Provider<RekognitionClient> {
+        @Override
+        public RekognitionClient get() {
+            long start = System.nanoTime();
+            RekognitionClient client = createRekognitionClient();
+            log.info("Rekognition client created in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return client;
+        }
     }
 
     private RekognitionClient createRekognitionClient() {
@@ -61,10 +140,67 @@ public class ImageModule extends AbstractModule {
         }
 
         AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        return RekognitionClient.builder()
+        RekognitionClientBuilder builder = RekognitionClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                 .region(Region.of(awsRegion))
-                .build();
+                .httpClientBuilder(createHttpClientBuilder(props))
+                // 重试由 ResilientImageService 负责, 关闭 SDK 自带的重试避免重试次数相乘
+                // ResilientImageService owns retries; SDK retries would multiply the attempts
+                .overrideConfiguration(c -> c
+                        .retryStrategy(AwsRetryStrategy.doNotRetry())
+                        .addMetricPublisher(transportMetrics));
+        URI endpoint = resolveEndpoint(props);
+        if (endpoint != null) {
+            log.info("Using Rekognition endpoint override {}", endpoint);
+            builder.endpointOverride(endpoint);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Pooled keep-alive transport so concurrent scans reuse connections instead of paying a TLS handshake per request.
+     * 使用连接池和长连接, 避免每次请求都做 TLS 握手
+     */
+    private ApacheHttpClient.Builder createHttpClientBuilder(Properties props) {
+        return ApacheHttpClient.builder()
+                .maxConnections(intProperty(props, "aws.http.maxConnections", Constants.REMOTE_HTTP_MAX_CONNECTIONS))
+                .connectionAcquisitionTimeout(millisProperty(props, "aws.http.acquireTimeoutMillis", Constants.REMOTE_HTTP_ACQUIRE_TIMEOUT_MILLIS))
+                .connectionTimeout(millisProperty(props, "aws.http.connectTimeoutMillis", Constants.REMOTE_HTTP_CONNECT_TIMEOUT_MILLIS))
+                .socketTimeout(Duration.ofMillis(Constants.REMOTE_CALL_TIMEOUT_MILLIS))
+                .connectionMaxIdleTime(millisProperty(props, "aws.http.maxIdleMillis", Constants.REMOTE_HTTP_MAX_IDLE_MILLIS))
+                .connectionTimeToLive(millisProperty(props, "aws.http.connectionTtlMillis", Constants.REMOTE_HTTP_CONNECTION_TTL_MILLIS))
+                .useIdleConnectionReaper(true)
+                .tcpKeepAlive(true)
+                .socketFactory(new HandshakeTimingSocketFactory(transportMetrics));
+    }
+
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static Duration millisProperty(Properties props, String key, long defaultMillis) {
+        String value = props.getProperty(key);
+        return Duration.ofMillis(value == null || value.trim().isEmpty() ? defaultMillis : Long.parseLong(value.trim()));
+    }
+
+    public RekognitionTransportMetrics getTransportMetrics() {
+        return transportMetrics;
+    }
+
+    /**
+     * Endpoint precedence: constructor argument, then the aws.endpoint system property,
+     * then aws.endpoint in config.properties. Null means the real AWS endpoint.
+     */
+    private URI resolveEndpoint(Properties props) {
+        if (endpointOverride != null) {
+            return endpointOverride;
+        }
+        String endpoint = System.getProperty("aws.endpoint", props.getProperty("aws.endpoint"));
+        if (endpoint == null || endpoint.trim().isEmpty()) {
+            return null;
+        }
+        return URI.create(endpoint.trim());
     }
 
 }
@@ -1,11 +1,62 @@
 package com.udacity.image.service;
 
+import com.udacity.image.buffer.FrameBufferPool;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 
 /**
  *  Image Interface
  */
 public interface ImageService {
     boolean imageContainsCat(BufferedImage image, float confidenceThreshold);
+
+    /**
+     * Classify an encoded JPEG frame, e.g. a slice of an MJPEG stream.
+     * 识别已编码的 JPEG 帧，例如 MJPEG 流中的一帧
+     *
+     * The default decodes the frame into a pooled buffer and calls
+     * {@link #imageContainsCat(BufferedImage, float)}; the buffer is reused once that returns, so
+     * implementations must not keep the image. Services that can use the encoded bytes as they
+     * are (AWS) override this and skip the decode and re-encode. The buffer's position and limit
+     * are left unchanged.
+     * @param encodedJpeg JPEG bytes between position and limit
+     */
+    default boolean encodedImageContainsCat(ByteBuffer encodedJpeg, float confidenceThreshold) {
+        FrameBufferPool pool = FrameBufferPool.shared();
+        BufferedImage image = pool.decode(encodedJpeg);
+        try {
+            return imageContainsCat(image, confidenceThreshold);
+        } finally {
+            pool.release(image);
+        }
+    }
+
+    /**
+     * Decode the image between the buffer's position and limit without copying heap buffers.
+     * @throws IllegalArgumentException if the bytes are not a readable image
+     */
+    static BufferedImage decode(ByteBuffer encoded) {
+        ByteArrayInputStream in;
+        if (encoded.hasArray()) {
+            in = new ByteArrayInputStream(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+        } else {
+            byte[] bytes = new byte[encoded.remaining()];
+            encoded.duplicate().get(bytes);
+            in = new ByteArrayInputStream(bytes);
+        }
+        try {
+            BufferedImage image = ImageIO.read(in);
+            if (image == null) {
+                throw new IllegalArgumentException("Encoded frame is not a readable image");
+            }
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error decoding frame", e);
+        }
+    }
 }
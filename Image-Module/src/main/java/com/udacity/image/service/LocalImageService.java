@@ -0,0 +1,104 @@
+package com.udacity.image.service;
+
+import com.google.inject.Inject;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * Offline image recognition service based on a colour heuristic, no network or AWS account needed.
+ * 基于颜色启发式规则的离线识别服务，不需要网络和 AWS 凭证，识别效果远不如远程服务。
+ *
+ * The bundled local-cat-model.properties holds hand-set weights, not trained ones: frames with
+ * much green or blue, strong edges or high brightness score low, warm and plain frames score high.
+ * Its accuracy has not been measured on a labelled data set, so use it to skip obvious frames in
+ * front of the remote classifier (CASCADE) rather than on its own. The weights are laid out as a
+ * small convolutional network (see {@link CatClassifierModel}), so trained weights of the same
+ * layout can replace the file. A frame is scaled down to the model input size and classified in
+ * well under a millisecond on the calling thread; callers that scan in parallel, such as the scan
+ * executor and BatchScanner, bring their own threads.
+ */
+public class LocalImageService implements ImageService {
+    private static final String MODEL_RESOURCE = "/local-cat-model.properties";
+
+    private final CatClassifierModel model;
+    // 每个线程复用自己的缩放图像和计算缓冲区
+    // every thread reuses its own scaled image and network buffers
+    private final ThreadLocal<Worker> workers;
+
+    @Inject
+    public LocalImageService() {
+        this(loadModel(MODEL_RESOURCE));
+    }
+
+    LocalImageService(CatClassifierModel model) {
+        this.model = Objects.requireNonNull(model, "model must not be null");
+        this.workers = ThreadLocal.withInitial(() -> new Worker(model));
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        return catConfidence(image) >= confidenceThreshold;
+    }
+
+    /**
+     * @param image Image to classify
+     * @return confidence between 0 and 100 that the image contains a cat
+     */
+    public float catConfidence(BufferedImage image) {
+        Objects.requireNonNull(image, "image must not be null");
+        return workers.get().classify(image);
+    }
+
+    private static CatClassifierModel loadModel(String resource) {
+        try (InputStream is = LocalImageService.class.getResourceAsStream(resource)) {
+            if (is == null) {
+                throw new IllegalStateException("Local classifier model " + resource + " not found");
+            }
+            return CatClassifierModel.load(is);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading local classifier model " + resource, e);
+        }
+    }
+
+    /**
+     * Per-thread preprocessing and inference state.
+     */
+    private static final class Worker {
+        private final CatClassifierModel model;
+        private final CatClassifierModel.Scratch scratch;
+        private final BufferedImage scaled;
+        private final Graphics2D graphics;
+        private final int[] pixels;
+
+        private Worker(CatClassifierModel model) {
+            this.model = model;
+            this.scratch = model.newScratch();
+            int size = model.getInputSize();
+            this.scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            this.graphics = scaled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            this.pixels = new int[size * size];
+        }
+
+        private float classify(BufferedImage image) {
+            int size = model.getInputSize();
+            int area = size * size;
+            graphics.drawImage(image, 0, 0, size, size, null);
+            scaled.getRGB(0, 0, size, size, pixels, 0, size);
+            float[] input = scratch.input;
+            for (int i = 0; i < area; i++) {
+                int rgb = pixels[i];
+                input[i] = ((rgb >> 16) & 0xFF) / 255f;
+                input[area + i] = ((rgb >> 8) & 0xFF) / 255f;
+                input[2 * area + i] = (rgb & 0xFF) / 255f;
+            }
+            return model.predict(input, scratch) * 100f;
+        }
+    }
+}
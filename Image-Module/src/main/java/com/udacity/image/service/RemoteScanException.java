@@ -0,0 +1,16 @@
+package com.udacity.image.service;
+
+/**
+ * A remote scan ended without an answer: the circuit breaker is open, too many calls are in
+ * flight, the request was rejected or every attempt failed.
+ * 远程识别没有得到结果，调用方不应据此修改猫检测状态
+ */
+public class RemoteScanException extends RuntimeException {
+    public RemoteScanException(String message) {
+        super(message);
+    }
+
+    public RemoteScanException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,335 @@
+package com.udacity.image.service;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.constant.utils.LatencyHistogram;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Call budget and priority scheduler in front of the (paid, rate limited) classifier.
+ * 远程识别调用的预算与优先级调度：限制每秒调用数和每日调用总数，布防外出优先于在家布防。
+ *
+ * Calls take a token from a token bucket ({@code permitsPerSecond}, {@code burst}) and one unit
+ * of the daily budget, which resets at local midnight. When no token is free, callers queue in
+ * priority order. Priority ages: a request is ordered by its arrival time plus a delay for its
+ * arming status (none for ARMED_AWAY), so an ARMED_HOME request only yields to ARMED_AWAY requests
+ * that arrived less than {@code homeDelayMillis} after it, and nothing waits forever.
+ * DISARMED requests are either deferred behind everything else or rejected outright; a rejected
+ * request has no answer, so the caller keeps the cat state it had.
+ * 优先级随等待时间老化，不会有请求被饿死。
+ *
+ * ImageModule puts it in front of the remote tier only, so local answers are never throttled.
+ */
+public class RemoteScanScheduler implements ImageService {
+    public enum DisarmedPolicy {
+        // queue behind armed requests
+        DEFER,
+        // reject with RejectedExecutionException without calling the classifier
+        SKIP
+    }
+
+    private final ImageService delegate;
+    private final Supplier<ArmingStatus> armingStatus;
+    private final double permitsPerSecond;
+    private final double burst;
+    private final int dailyBudget;
+    private final long homeDelayNanos;
+    private final long disarmedDelayNanos;
+    private final DisarmedPolicy disarmedPolicy;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Ticket t) -> t.virtualNanos).thenComparingLong(t -> t.sequence));
+    private long nextSequence;
+    private double tokens;
+    private long lastRefillNanos;
+    private LocalDate budgetDay;
+    private int usedToday;
+
+    private final Map<ArmingStatus, LongAdder> served = new EnumMap<>(ArmingStatus.class);
+    private final Map<ArmingStatus, LatencyHistogram> queueWait = new EnumMap<>(ArmingStatus.class);
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+
+    /**
+     * @param delegate the resilient remote classifier
+     * @param armingStatus current system arming status, see {@link ImageModule#ARMING_STATUS}
+     */
+    @Inject
+    public RemoteScanScheduler(@Named("resilientImageService") ImageService delegate,
+                               @Named("armingStatus") Supplier<ArmingStatus> armingStatus) {
+        this(new Builder(delegate, armingStatus).validate());
+    }
+
+    private RemoteScanScheduler(Builder builder) {
+        this.delegate = builder.delegate;
+        this.armingStatus = builder.armingStatus;
+        this.permitsPerSecond = builder.permitsPerSecond;
+        this.burst = builder.burst;
+        this.dailyBudget = builder.dailyBudget;
+        this.homeDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.homeDelayMillis);
+        this.disarmedDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.disarmedDelayMillis);
+        this.disarmedPolicy = builder.disarmedPolicy;
+        this.clock = builder.clock;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.budgetDay = LocalDate.now(clock);
+        for (ArmingStatus status : ArmingStatus.values()) {
+            served.put(status, new LongAdder());
+            queueWait.put(status, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Scan with the priority of the current system arming status.
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        return imageContainsCat(image, confidenceThreshold, armingStatus.get());
+    }
+
+    /**
+     * Scan with the priority of the given arming status, blocking until the call is admitted.
+     * 按给定布防状态的优先级扫描，阻塞直到获得调用许可
+     * @throws RejectedExecutionException if the daily budget is used up, or the request is
+     *         DISARMED and the SKIP policy is set
+     * @throws CancellationException if the caller is interrupted while queued
+     */
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold, ArmingStatus status) {
+        admit(status);
+        return delegate.imageContainsCat(image, confidenceThreshold);
+    }
+
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedJpeg, float confidenceThreshold) {
+        admit(armingStatus.get());
+        return delegate.encodedImageContainsCat(encodedJpeg, confidenceThreshold);
+    }
+
+    /**
+     * Wait for a call slot.
+     * @throws RejectedExecutionException if the request is skipped (DISARMED with the SKIP policy)
+     *         or the daily budget is used up
+     */
+    private void admit(ArmingStatus status) {
+        Objects.requireNonNull(status, "ArmingStatus must not be null");
+        if (status == ArmingStatus.DISARMED && disarmedPolicy == DisarmedPolicy.SKIP) {
+            skipped.increment();
+            // 跳过的请求没有答案, 不能当作 "没有猫"
+            // a skipped request has no answer and must not read as "no cat"
+            throw new RejectedExecutionException("Remote scans are skipped while disarmed");
+        }
+        long start = System.nanoTime();
+        try {
+            acquire(status, start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a remote scan slot");
+        }
+        queueWait.get(status).record(System.nanoTime() - start);
+        served.get(status).increment();
+    }
+
+    private void acquire(ArmingStatus status, long now) throws InterruptedException {
+        lock.lockInterruptibly();
+        Ticket ticket = new Ticket(now + priorityDelayNanos(status), nextSequence++);
+        queue.add(ticket);
+        try {
+            while (true) {
+                if (queue.peek() != ticket) {
+                    changed.await();
+                    continue;
+                }
+                rollBudgetDay();
+                if (usedToday >= dailyBudget) {
+                    overBudget.increment();
+                    throw new RejectedExecutionException("Daily remote scan budget of " + dailyBudget + " calls is used up");
+                }
+                refill();
+                if (tokens >= 1.0) {
+                    tokens -= 1.0;
+                    usedToday++;
+                    return;
+                }
+                // 等待下一个令牌, 期间更高优先级的请求可能插队
+                // wait for the next token; a higher priority request may take the head meanwhile
+                long waitNanos = (long) Math.ceil((1.0 - tokens) / permitsPerSecond * 1e9);
+                changed.awaitNanos(Math.max(1L, waitNanos));
+            }
+        } finally {
+            queue.remove(ticket);
+            changed.signalAll();
+            lock.unlock();
+        }
+    }
+
+    private long priorityDelayNanos(ArmingStatus status) {
+        switch (status) {
+            case ARMED_AWAY:
+                return 0L;
+            case ARMED_HOME:
+                return homeDelayNanos;
+            default:
+                return disarmedDelayNanos;
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * permitsPerSecond);
+        lastRefillNanos = now;
+    }
+
+    private void rollBudgetDay() {
+        LocalDate today = LocalDate.now(clock);
+        if (!today.equals(budgetDay)) {
+            budgetDay = today;
+            usedToday = 0;
+        }
+    }
+
+    public int getDailyBudget() {
+        return dailyBudget;
+    }
+
+    public int getUsedToday() {
+        lock.lock();
+        try {
+            rollBudgetDay();
+            return usedToday;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRemainingToday() {
+        return Math.max(0, dailyBudget - getUsedToday());
+    }
+
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getServed(ArmingStatus status) {
+        return served.get(status).sum();
+    }
+
+    public LatencyHistogram getQueueWait(ArmingStatus status) {
+        return queueWait.get(status);
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getOverBudget() {
+        return overBudget.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("RemoteScanScheduler{budget=%d/%d, queued=%d, skipped=%d, overBudget=%d",
+                getUsedToday(), dailyBudget, getQueueLength(), getSkipped(), getOverBudget()));
+        for (ArmingStatus status : ArmingStatus.values()) {
+            sb.append(String.format(", %s=[served=%d, wait: %s]", status, getServed(status), queueWait.get(status)));
+        }
+        return sb.append('}').toString();
+    }
+
+    private static final class Ticket {
+        private final long virtualNanos;
+        private final long sequence;
+
+        private Ticket(long virtualNanos, long sequence) {
+            this.virtualNanos = virtualNanos;
+            this.sequence = sequence;
+        }
+    }
+
+    public static class Builder {
+        private final ImageService delegate;
+        private final Supplier<ArmingStatus> armingStatus;
+        private double permitsPerSecond = Constants.REMOTE_CALLS_PER_SECOND;
+        private double burst = Constants.REMOTE_CALL_BURST;
+        private int dailyBudget = Constants.REMOTE_DAILY_CALL_BUDGET;
+        private long homeDelayMillis = Constants.SCHEDULER_HOME_DELAY_MILLIS;
+        private long disarmedDelayMillis = Constants.SCHEDULER_DISARMED_DELAY_MILLIS;
+        private DisarmedPolicy disarmedPolicy = DisarmedPolicy.DEFER;
+        private Clock clock = Clock.systemDefaultZone();
+
+        /**
+         * @param delegate classifier whose calls are budgeted
+         * @param armingStatus current system arming status, used by {@link #imageContainsCat(BufferedImage, float)}
+         */
+        public Builder(ImageService delegate, Supplier<ArmingStatus> armingStatus) {
+            this.delegate = Objects.requireNonNull(delegate, "ImageService must not be null");
+            this.armingStatus = Objects.requireNonNull(armingStatus, "armingStatus must not be null");
+        }
+
+        public Builder setRate(double permitsPerSecond, double burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        public Builder setDailyBudget(int dailyBudget) {
+            this.dailyBudget = dailyBudget;
+            return this;
+        }
+
+        public Builder setAging(long homeDelayMillis, long disarmedDelayMillis) {
+            this.homeDelayMillis = homeDelayMillis;
+            this.disarmedDelayMillis = disarmedDelayMillis;
+            return this;
+        }
+
+        public Builder setDisarmedPolicy(DisarmedPolicy disarmedPolicy) {
+            this.disarmedPolicy = Objects.requireNonNull(disarmedPolicy, "disarmedPolicy must not be null");
+            return this;
+        }
+
+        public Builder setClock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock must not be null");
+            return this;
+        }
+
+        public RemoteScanScheduler build() {
+            return new RemoteScanScheduler(validate());
+        }
+
+        private Builder validate() {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalStateException("permitsPerSecond must be positive and burst at least 1");
+            }
+            if (dailyBudget < 0 || homeDelayMillis < 0 || disarmedDelayMillis < 0) {
+                throw new IllegalStateException("dailyBudget and aging delays must not be negative");
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.udacity.image.service;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Decorator that keeps the tail latency of a remote ImageService bounded.
+ * 远程识别服务的容错装饰器：超时、抖动退避重试、对冲请求和熔断。
+ *
+ * Every scan has an overall deadline. Failed attempts that look transient (timeouts, throttling,
+ * 5xx, network errors) are retried with full-jitter exponential backoff while the deadline allows.
+ * Once enough latencies are known, an attempt that has not answered after the p95 latency gets a
+ * second, hedged request and the first answer wins. Scans that still fail count against a circuit
+ * breaker; while it is open, scans fail without calling the service.
+ *
+ * A scan that gets no answer throws instead of guessing one, so the caller's cat and alarm state
+ * stay as they were. At most {@code maxConcurrentCalls} requests run at once, further requests
+ * fail fast.
+ * 无法得到识别结果时抛出异常而不是返回默认值，调用方的猫检测和警报状态保持不变。
+ */
+public class ResilientImageService implements ImageService {
+    // 少于该样本数时 p95 不可靠, 不发送对冲请求
+    // below this many samples the p95 is not trustworthy, so no hedging yet
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    private final Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private final ImageService delegate;
+    private final CircuitBreaker breaker;
+    private final long deadlineNanos;
+    private final int maxAttempts;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    private final boolean hedging;
+    private final long hedgeMinDelayNanos;
+    private final ExecutorService executor;
+
+    private final LatencyHistogram callLatency = new LatencyHistogram();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+
+    @Inject
+    public ResilientImageService(@Named("awsImageService") ImageService delegate) {
+        this(new Builder(delegate).validate());
+    }
+
+    private ResilientImageService(Builder builder) {
+        this.delegate = builder.delegate;
+        this.breaker = new CircuitBreaker(builder.breakerFailureThreshold, builder.breakerOpenMillis);
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(builder.deadlineMillis);
+        this.maxAttempts = builder.maxAttempts;
+        this.backoffBaseMillis = builder.backoffBaseMillis;
+        this.backoffMaxMillis = builder.backoffMaxMillis;
+        this.hedging = builder.hedging;
+        this.hedgeMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.hedgeMinDelayMillis);
+        AtomicInteger counter = new AtomicInteger();
+        // 没有队列: 线程都在忙时新请求立即失败, 空闲线程在一分钟后退出
+        // no queue: a request fails fast when every thread is busy; idle threads exit after a minute
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(builder.maxConcurrentCalls, builder.maxConcurrentCalls,
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "remote-image-call-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        return scan(() -> delegate.imageContainsCat(image, confidenceThreshold));
+    }
+
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedJpeg, float confidenceThreshold) {
+        // 对冲请求可能并发读取同一缓冲区, 每次调用使用独立的视图
+        // hedged requests may read the buffer concurrently, give every call its own view
+        return scan(() -> delegate.encodedImageContainsCat(encodedJpeg.duplicate(), confidenceThreshold));
+    }
+
+    /**
+     * @throws RemoteScanException if the breaker is open, the request was rejected or every attempt failed
+     * @throws CancellationException if the calling thread was interrupted
+     */
+    private boolean scan(Supplier<Boolean> call) {
+        scans.increment();
+        if (!breaker.allowRequest()) {
+            // 熔断中, 不调用远程服务, 直接失败
+            // the service is degraded, fail fast
+            shortCircuited.increment();
+            failures.increment();
+            throw new RemoteScanException("Remote image service unavailable, circuit breaker is " + breaker.getState());
+        }
+        long deadline = System.nanoTime() + deadlineNanos;
+        Throwable lastFailure = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                boolean result = attempt(call, deadline);
+                breaker.recordSuccess();
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                breaker.recordAbandoned();
+                throw new CancellationException("Interrupted while waiting for the remote image service");
+            } catch (RejectedExecutionException e) {
+                // 本地并发已满, 与远程服务的健康无关
+                // local overload, says nothing about the health of the service
+                breaker.recordAbandoned();
+                failures.increment();
+                throw new RemoteScanException("Too many remote image calls in flight", e);
+            } catch (TimeoutException | RuntimeException e) {
+                lastFailure = e;
+                if (!isRetryable(e)) {
+                    // 请求本身有问题, 服务是健康的
+                    // the service answered, the request itself was rejected
+                    breaker.recordSuccess();
+                    failures.increment();
+                    throw new RemoteScanException("Remote image scan failed with a non-retryable error", e);
+                }
+                long backoff = TimeUnit.MILLISECONDS.toNanos(backoffMillis(attempt));
+                if (attempt == maxAttempts || System.nanoTime() + backoff >= deadline) {
+                    break;
+                }
+                retries.increment();
+                log.debug("Remote image scan attempt {} failed, retrying in {} ms", attempt, TimeUnit.NANOSECONDS.toMillis(backoff), e);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    breaker.recordAbandoned();
+                    throw new CancellationException("Interrupted while backing off");
+                }
+            }
+        }
+        breaker.recordFailure();
+        failures.increment();
+        throw new RemoteScanException("Remote image scan failed, breaker is " + breaker.getState(), lastFailure);
+    }
+
+    /**
+     * One attempt, possibly with a hedged second request. Completes with the first successful
+     * answer, or fails when every request sent for it has failed.
+     */
+    private boolean attempt(Supplier<Boolean> call, long deadline)
+            throws InterruptedException, TimeoutException {
+        CompletableFuture<Boolean> winner = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        CompletableFuture<Boolean> primary = send(call, winner, outstanding);
+        CompletableFuture<Boolean> hedge = null;
+        try {
+            long hedgeDelay = hedgeDelayNanos();
+            if (hedgeDelay > 0 && System.nanoTime() + hedgeDelay < deadline) {
+                try {
+                    return winner.get(hedgeDelay, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException slow) {
+                    if (!winner.isDone()) {
+                        outstanding.incrementAndGet();
+                        try {
+                            hedge = send(call, winner, outstanding);
+                            hedges.increment();
+                        } catch (RejectedExecutionException busy) {
+                            // 没有空闲线程时不对冲, 继续等待第一个请求
+                            // no thread for a hedge, keep waiting for the first request
+                            outstanding.decrementAndGet();
+                        }
+                    }
+                }
+            }
+            return winner.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Remote image scan failed", cause);
+        } finally {
+            // 放弃未完成的请求, SDK 的单次调用超时会终止它们
+            // abandon the losers; the SDK per-call timeout ends them
+            primary.cancel(false);
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+        }
+    }
+
+    private CompletableFuture<Boolean> send(Supplier<Boolean> call, CompletableFuture<Boolean> winner, AtomicInteger outstanding) {
+        CompletableFuture<Boolean> request = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            boolean result = call.get();
+            callLatency.record(System.nanoTime() - start);
+            return result;
+        }, executor);
+        request.whenComplete((result, failure) -> {
+            if (failure == null) {
+                winner.complete(result);
+            } else if (outstanding.decrementAndGet() == 0) {
+                winner.completeExceptionally(failure instanceof CompletionException
+                        ? failure.getCause() : failure);
+            }
+        });
+        return request;
+    }
+
+    private long hedgeDelayNanos() {
+        if (!hedging || callLatency.getCount() < HEDGE_MIN_SAMPLES) {
+            return 0L;
+        }
+        long p95 = (long) (callLatency.getPercentileMillis(95.0) * 1_000_000L);
+        return Math.max(p95, hedgeMinDelayNanos);
+    }
+
+    private long backoffMillis(int attempt) {
+        long cap = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(attempt - 1, 20));
+        return cap <= 0 ? 0L : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return true;
+        }
+        if (e instanceof SdkServiceException) {
+            SdkServiceException service = (SdkServiceException) e;
+            return service.isThrottlingException() || service.statusCode() >= 500;
+        }
+        // 网络错误和 SDK 的单次调用超时
+        // network errors and the SDK's ApiCallTimeoutException
+        return e instanceof SdkClientException;
+    }
+
+    public CircuitBreaker.State getBreakerState() {
+        return breaker.getState();
+    }
+
+    public long getScans() {
+        return scans.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return scans that threw instead of answering, short-circuited ones included
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getShortCircuited() {
+        return shortCircuited.sum();
+    }
+
+    public LatencyHistogram getCallLatency() {
+        return callLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResilientImageService{breaker=%s, scans=%d, retries=%d, hedges=%d, failures=%d, shortCircuited=%d, calls=[%s]}",
+                getBreakerState(), getScans(), getRetries(), getHedges(), getFailures(), getShortCircuited(), callLatency);
+    }
+
+    public static class Builder {
+        private final ImageService delegate;
+        private long deadlineMillis = Constants.REMOTE_SCAN_DEADLINE_MILLIS;
+        private int maxAttempts = Constants.REMOTE_MAX_ATTEMPTS;
+        private long backoffBaseMillis = Constants.REMOTE_BACKOFF_BASE_MILLIS;
+        private long backoffMaxMillis = Constants.REMOTE_BACKOFF_MAX_MILLIS;
+        private boolean hedging = true;
+        private long hedgeMinDelayMillis = Constants.REMOTE_HEDGE_MIN_DELAY_MILLIS;
+        private int breakerFailureThreshold = Constants.REMOTE_BREAKER_FAILURE_THRESHOLD;
+        private long breakerOpenMillis = Constants.REMOTE_BREAKER_OPEN_MILLIS;
+        private int maxConcurrentCalls = Constants.REMOTE_MAX_CONCURRENT_CALLS;
+
+        public Builder(ImageService delegate) {
+            this.delegate = Objects.requireNonNull(delegate, "delegate ImageService must not be null");
+        }
+
+        public Builder setDeadlineMillis(long deadlineMillis) {
+            this.deadlineMillis = deadlineMillis;
+            return this;
+        }
+
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder setBackoff(long baseMillis, long maxMillis) {
+            this.backoffBaseMillis = baseMillis;
+            this.backoffMaxMillis = maxMillis;
+            return this;
+        }
+
+        public Builder setHedging(boolean hedging) {
+            this.hedging = hedging;
+            return this;
+        }
+
+        public Builder setHedgeMinDelayMillis(long hedgeMinDelayMillis) {
+            this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+            return this;
+        }
+
+        public Builder setBreaker(int failureThreshold, long openMillis) {
+            this.breakerFailureThreshold = failureThreshold;
+            this.breakerOpenMillis = openMillis;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrentCalls requests that may run at once, hedged and abandoned ones included
+         */
+        public Builder setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            return this;
+        }
+
+        public ResilientImageService build() {
+            return new ResilientImageService(validate());
+        }
+
+        private Builder validate() {
+            if (deadlineMillis <= 0 || maxAttempts <= 0) {
+                throw new IllegalStateException("deadlineMillis and maxAttempts must be positive");
+            }
+            if (backoffBaseMillis < 0 || backoffMaxMillis < backoffBaseMillis) {
+                throw new IllegalStateException("Backoff must satisfy 0 <= base <= max");
+            }
+            if (hedgeMinDelayMillis < 0 || breakerFailureThreshold <= 0 || breakerOpenMillis < 0) {
+                throw new IllegalStateException("hedgeMinDelayMillis and breakerOpenMillis must not be negative, "
+                        + "breakerFailureThreshold must be positive");
+            }
+            if (maxConcurrentCalls <= 0) {
+                throw new IllegalStateException("maxConcurrentCalls must be positive");
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.udacity.image.service;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImageService decorator that coalesces identical concurrent scans.
+ * 合并相同帧的并发识别请求的 ImageService 装饰器
+ *
+ * When several callers (scan button, scheduled scanner, API) ask about the same frame while a
+ * scan of it is still running, only the first one reaches the delegate; the others wait for and
+ * share its answer. Nothing is cached once the scan completes, so results are never stale.
+ * 同一帧只有第一个请求会调用底层服务，其余请求共享其结果；识别完成后不做缓存。
+ */
+public class SingleFlightImageService implements ImageService {
+    private final ImageService delegate;
+    private final ConcurrentMap<FrameKey, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder delegatedCalls = new LongAdder();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    @Inject
+    public SingleFlightImageService(@Named("baseImageService") ImageService delegate) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate ImageService must not be null");
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        FrameKey key = new FrameKey(image, confidenceThreshold);
+        CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return await(existing);
+        }
+        delegatedCalls.increment();
+        try {
+            boolean result = delegate.imageContainsCat(image, confidenceThreshold);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Encoded frames are distinct buffers, there is nothing to coalesce.
+     */
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedJpeg, float confidenceThreshold) {
+        delegatedCalls.increment();
+        return delegate.encodedImageContainsCat(encodedJpeg, confidenceThreshold);
+    }
+
+    private boolean await(CompletableFuture<Boolean> leader) {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            // 等待方被中断（例如扫描被取消）
+            // the waiting scan was cancelled, do not keep blocking on the leader
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a coalesced image scan");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Coalesced image scan failed", cause);
+        }
+    }
+
+    /**
+     * @return scans that were forwarded to the delegate
+     */
+    public long getDelegatedCalls() {
+        return delegatedCalls.sum();
+    }
+
+    /**
+     * @return scans that shared the answer of a scan already in flight
+     */
+    public long getCoalescedCalls() {
+        return coalescedCalls.sum();
+    }
+
+    /**
+     * Identity of the frame (the same BufferedImage instance) plus the requested threshold.
+     */
+    private static final class FrameKey {
+        private final BufferedImage image;
+        private final float confidenceThreshold;
+
+        private FrameKey(BufferedImage image, float confidenceThreshold) {
+            this.image = image;
+            this.confidenceThreshold = confidenceThreshold;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FrameKey other = (FrameKey) o;
+            return image == other.image
+                    && Float.compare(confidenceThreshold, other.confidenceThreshold) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(image) + Float.hashCode(confidenceThreshold);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.udacity.image.transport;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Objects;
+
+/**
+ * TLS socket factory that times connection setup, since the HTTP client reports no handshake metric.
+ * 记录每个新连接的建立和 TLS 握手耗时
+ *
+ * Only new connections pass through here, requests on a kept-alive pooled connection do not.
+ */
+public class HandshakeTimingSocketFactory implements LayeredConnectionSocketFactory {
+    private final LayeredConnectionSocketFactory delegate;
+    private final RekognitionTransportMetrics metrics;
+
+    public HandshakeTimingSocketFactory(RekognitionTransportMetrics metrics) {
+        this(SSLConnectionSocketFactory.getSocketFactory(), metrics);
+    }
+
+    public HandshakeTimingSocketFactory(LayeredConnectionSocketFactory delegate, RekognitionTransportMetrics metrics) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.metrics = Objects.requireNonNull(metrics, "metrics must not be null");
+    }
+
+    @Override
+    public Socket createSocket(HttpContext context) throws IOException {
+        return delegate.createSocket(context);
+    }
+
+    @Override
+    public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                InetSocketAddress localAddress, HttpContext context) throws IOException {
+        // SSLConnectionSocketFactory 在 connectSocket 中完成 TCP 连接和 TLS 握手
+        // SSLConnectionSocketFactory connects and completes the TLS handshake in connectSocket
+        long start = System.nanoTime();
+        Socket connected = delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        metrics.recordNewConnection(System.nanoTime() - start);
+        return connected;
+    }
+
+    @Override
+    public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+        return delegate.createLayeredSocket(socket, target, port, context);
+    }
+}
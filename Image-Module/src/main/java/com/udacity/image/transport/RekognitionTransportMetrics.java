@@ -0,0 +1,153 @@
+package com.udacity.image.transport;
+
+import com.udacity.constant.utils.LatencyHistogram;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects transport metrics of the Rekognition client: connection pool utilization,
+ * connection setup (TCP + TLS handshake) time and request time.
+ * Rekognition 客户端的传输层指标：连接池使用率、握手耗时和请求耗时。
+ *
+ * The SDK publishes one MetricCollection per API call (call → attempts → HTTP client);
+ * connection setup times come from {@link HandshakeTimingSocketFactory}. If most calls wait for a
+ * connection ({@link #getPoolWaitCalls()}) or leased connections sit at the maximum, the pool is
+ * the bottleneck; if new connections grow with every call, keep-alive is not working.
+ */
+public class RekognitionTransportMetrics implements MetricPublisher {
+    private final LatencyHistogram apiCallLatency = new LatencyHistogram();
+    private final LatencyHistogram serviceCallLatency = new LatencyHistogram();
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder newConnections = new LongAdder();
+    private final LongAdder poolWaitCalls = new LongAdder();
+    private final LongAdder poolExhaustedCalls = new LongAdder();
+    private final AtomicInteger maxConnections = new AtomicInteger();
+    private final AtomicInteger lastLeased = new AtomicInteger();
+    private final AtomicInteger peakLeased = new AtomicInteger();
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        calls.increment();
+        record(metricCollection);
+    }
+
+    // 指标分布在调用、重试和 HTTP 客户端的嵌套集合中
+    // metrics are spread over the nested call / attempt / http client collections
+    private void record(MetricCollection collection) {
+        recordDurations(collection, CoreMetric.API_CALL_DURATION, apiCallLatency);
+        recordDurations(collection, CoreMetric.SERVICE_CALL_DURATION, serviceCallLatency);
+        recordDurations(collection, HttpMetric.CONCURRENCY_ACQUIRE_DURATION, acquireLatency);
+
+        List<Integer> max = collection.metricValues(HttpMetric.MAX_CONCURRENCY);
+        List<Integer> leased = collection.metricValues(HttpMetric.LEASED_CONCURRENCY);
+        List<Integer> pending = collection.metricValues(HttpMetric.PENDING_CONCURRENCY_ACQUIRES);
+        if (!max.isEmpty()) {
+            maxConnections.set(max.get(0));
+        }
+        if (!leased.isEmpty()) {
+            int current = leased.get(0);
+            lastLeased.set(current);
+            peakLeased.accumulateAndGet(current, Math::max);
+            if (!max.isEmpty() && current >= max.get(0)) {
+                poolExhaustedCalls.increment();
+            }
+        }
+        if (!pending.isEmpty() && pending.get(0) > 0) {
+            poolWaitCalls.increment();
+        }
+        for (MetricCollection child : collection.children()) {
+            record(child);
+        }
+    }
+
+    private static void recordDurations(MetricCollection collection, SdkMetric<Duration> metric, LatencyHistogram histogram) {
+        for (Duration d : collection.metricValues(metric)) {
+            histogram.record(d.toNanos());
+        }
+    }
+
+    /**
+     * Called by the socket factory for every new connection.
+     * @param nanos time spent connecting and completing the TLS handshake
+     */
+    void recordNewConnection(long nanos) {
+        newConnections.increment();
+        connectLatency.record(nanos);
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getNewConnections() {
+        return newConnections.sum();
+    }
+
+    /**
+     * @return share of calls that reused a pooled connection, between 0 and 1
+     */
+    public double getConnectionReuseRatio() {
+        long n = calls.sum();
+        return n == 0 ? 0.0 : Math.max(0.0, 1.0 - (double) newConnections.sum() / n);
+    }
+
+    /**
+     * @return leased / max connections as last reported by the HTTP client, between 0 and 1
+     */
+    public double getPoolUtilization() {
+        int max = maxConnections.get();
+        return max == 0 ? 0.0 : (double) lastLeased.get() / max;
+    }
+
+    public int getPeakLeased() {
+        return peakLeased.get();
+    }
+
+    public long getPoolWaitCalls() {
+        return poolWaitCalls.sum();
+    }
+
+    public long getPoolExhaustedCalls() {
+        return poolExhaustedCalls.sum();
+    }
+
+    public LatencyHistogram getApiCallLatency() {
+        return apiCallLatency;
+    }
+
+    public LatencyHistogram getServiceCallLatency() {
+        return serviceCallLatency;
+    }
+
+    public LatencyHistogram getAcquireLatency() {
+        return acquireLatency;
+    }
+
+    public LatencyHistogram getConnectLatency() {
+        return connectLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RekognitionTransportMetrics{calls=%d, newConnections=%d, reuse=%.2f, pool=%d/%d (peak %d), poolWaitCalls=%d, poolExhaustedCalls=%d, "
+                        + "apiCall=[%s], serviceCall=[%s], acquire=[%s], connect=[%s]}",
+                getCalls(), getNewConnections(), getConnectionReuseRatio(), lastLeased.get(), maxConnections.get(), getPeakLeased(),
+                getPoolWaitCalls(), getPoolExhaustedCalls(), apiCallLatency, serviceCallLatency, acquireLatency, connectLatency);
+    }
+}
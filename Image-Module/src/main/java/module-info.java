@@ -4,10 +4,21 @@ module com.udacity.image {
     requires software.amazon.awssdk.services.rekognition;
     requires com.google.guice;
     requires software.amazon.awssdk.core;
+    requires software.amazon.awssdk.awscore;
+    requires software.amazon.awssdk.http;
+    requires software.amazon.awssdk.http.apache;
+    requires software.amazon.awssdk.metrics;
+    requires org.apache.httpcomponents.httpclient;
+    requires org.apache.httpcomponents.httpcore;
     requires com.udacity.constant;
     requires software.amazon.awssdk.auth;
     requires software.amazon.awssdk.regions;
     requires com.google.gson;
     exports com.udacity.image.service;
+    exports com.udacity.image.batch;
+    exports com.udacity.image.buffer;
+    exports com.udacity.image.scale;
+    exports com.udacity.image.transport;
+    opens com.udacity.image.batch to com.google.gson;
 
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package com.udacity.image.batch;
+
+import com.google.gson.Gson;
+import com.udacity.image.service.ImageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchScannerTest {
+    @TempDir
+    Path root;
+    private final Gson gson = new Gson();
+
+    private void writeImage(String relativePath, int width, int height, String format) throws IOException {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, file.toFile());
+    }
+
+    private Map<String, BatchScanResult> parse(StringWriter output) {
+        List<BatchScanResult> results = new ArrayList<>();
+        for (String line : output.toString().split("\n")) {
+            if (!line.isEmpty()) {
+                results.add(gson.fromJson(line, BatchScanResult.class));
+            }
+        }
+        return results.stream().collect(Collectors.toMap(BatchScanResult::getPath, Function.identity()));
+    }
+
+    @Test
+    void run_shouldWriteOneLinePerImageAndCountResults() throws Exception {
+        writeImage("a.png", 20, 10, "png");
+        writeImage("nested/b.jpg", 30, 10, "jpg");
+        Files.writeString(root.resolve("notes.txt"), "not an image");
+        // 宽度大于 25 的图片视为猫
+        ImageService imageService = (image, confidenceThreshold) -> image.getWidth() > 25;
+        BatchScanner scanner = new BatchScanner.Builder().setImageService(imageService).setMaxEdge(0).build();
+        StringWriter output = new StringWriter();
+
+        BatchScanReport report = scanner.run(root, output);
+
+        Map<String, BatchScanResult> results = parse(output);
+        assertThat(results.keySet()).containsExactly("a.png", Path.of("nested", "b.jpg").toString());
+        assertThat(results.get("a.png").getCat()).isFalse();
+        assertThat(results.get("a.png").getWidth()).isEqualTo(20);
+        assertThat(results.get(Path.of("nested", "b.jpg").toString()).getCat()).isTrue();
+        assertThat(report.getImages()).isEqualTo(2);
+        assertThat(report.getCats()).isEqualTo(1);
+        assertThat(report.getNotCats()).isEqualTo(1);
+        assertThat(report.getFailures()).isEqualTo(0);
+    }
+
+    @Test
+    void run_unreadableImageOrFailedScan_shouldBeRecordedWithoutStoppingBatch() throws Exception {
+        writeImage("good.png", 10, 10, "png");
+        writeImage("fails.png", 12, 12, "png");
+        Files.write(root.resolve("broken.jpg"), new byte[]{1, 2, 3});
+        ImageService imageService = (image, confidenceThreshold) -> {
+            if (image.getWidth() == 12) {
+                throw new IllegalStateException("service down");
+            }
+            return true;
+        };
+        BatchScanner scanner = new BatchScanner.Builder().setImageService(imageService).setMaxEdge(0).build();
+        StringWriter output = new StringWriter();
+
+        BatchScanReport report = scanner.run(root, output);
+
+        Map<String, BatchScanResult> results = parse(output);
+        assertThat(results.get("good.png").getCat()).isTrue();
+        assertThat(results.get("fails.png").getCat()).isNull();
+        assertThat(results.get("fails.png").getError()).isEqualTo("service down");
+        assertThat(results.get("broken.jpg").getCat()).isNull();
+        assertThat(results.get("broken.jpg").getError()).isNotNull();
+        // 解码失败的图片不会进入识别阶段
+        assertThat(results.get("broken.jpg").getClassifyMillis()).isNull();
+        assertThat(report.getFailures()).isEqualTo(2);
+        assertThat(report.getCats()).isEqualTo(1);
+    }
+
+    @Test
+    void run_withMaxEdge_shouldClassifyDownscaledImage() throws Exception {
+        writeImage("large.png", 400, 200, "png");
+        writeImage("small.png", 40, 20, "png");
+        Map<Integer, Integer> classifiedHeights = new ConcurrentHashMap<>();
+        ImageService imageService = (image, confidenceThreshold) -> {
+            classifiedHeights.put(image.getWidth(), image.getHeight());
+            return false;
+        };
+        BatchScanner scanner = new BatchScanner.Builder().setImageService(imageService).setMaxEdge(100).build();
+
+        scanner.run(root, new StringWriter());
+
+        // 只缩小超过 maxEdge 的图片, 并保持宽高比
+        assertThat(classifiedHeights).containsExactly(100, 50, 40, 20);
+    }
+
+    @Test
+    void run_shouldNotExceedMaxInFlightServiceCalls() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            writeImage("image-" + i + ".png", 8, 8, "png");
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ImageService imageService = (image, confidenceThreshold) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return false;
+        };
+        BatchScanner scanner = new BatchScanner.Builder().setImageService(imageService)
+                .setMaxInFlight(2).setMaxQueued(1).setDecodeThreads(4).build();
+
+        BatchScanReport report = scanner.run(root, new StringWriter());
+
+        assertThat(report.getImages()).isEqualTo(12);
+        assertThat(maxRunning.get()).isAtMost(2);
+    }
+
+    @Test
+    void run_outputFails_shouldThrowInsteadOfDroppingResults() throws Exception {
+        writeImage("a.png", 8, 8, "png");
+        ImageService imageService = (image, confidenceThreshold) -> false;
+        BatchScanner scanner = new BatchScanner.Builder().setImageService(imageService).build();
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        IOException e = assertThrows(IOException.class, () -> scanner.run(root, failing));
+
+        assertThat(e).hasMessageThat().isEqualTo("disk full");
+    }
+
+    @Test
+    void build_withoutImageServiceOrWithInvalidLimits_shouldThrow() {
+        ImageService imageService = (image, confidenceThreshold) -> false;
+
+        assertThrows(IllegalStateException.class, () -> new BatchScanner.Builder().build());
+        assertThrows(IllegalStateException.class,
+                () -> new BatchScanner.Builder().setImageService(imageService).setMaxInFlight(0).build());
+        assertThrows(IllegalStateException.class,
+                () -> new BatchScanner.Builder().setImageService(imageService).setMaxQueued(-1).build());
+    }
+}
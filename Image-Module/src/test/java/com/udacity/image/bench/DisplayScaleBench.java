@@ -0,0 +1,92 @@
+package com.udacity.image.bench;
+
+import com.udacity.image.scale.ImageScaler;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+
+/**
+ * Compares ways of turning a multi-megapixel JPEG into the 300x225 camera label image.
+ * 对比将数百万像素 JPEG 缩放为摄像头显示图的几种方式
+ *
+ * The sample picture is upscaled to several camera resolutions and encoded once; every method
+ * then starts from the JPEG bytes, as the refresh button does. getScaledInstance is lazy, so its
+ * result is drawn into an image to include the actual scaling.
+ *
+ * Usage: DisplayScaleBench [iterations] [image]
+ */
+public class DisplayScaleBench {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 225;
+    private static final int[][] RESOLUTIONS = {{2048, 1536}, {4000, 3000}, {6000, 4000}};
+
+    private interface Method {
+        BufferedImage load(byte[] jpeg) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        BufferedImage sample = ImageIO.read(Path.of(args.length > 1 ? args[1] : "sample-cat.jpg").toFile());
+        if (sample == null) {
+            throw new IOException("Unsupported image");
+        }
+        for (int[] resolution : RESOLUTIONS) {
+            byte[] jpeg = encode(ImageScaler.scale(sample, resolution[0], resolution[1]));
+            System.out.printf("%dx%d (%.1f MP, %d KB JPEG)%n", resolution[0], resolution[1],
+                    resolution[0] * resolution[1] / 1e6, jpeg.length / 1024);
+            measure("read + SCALE_SMOOTH", iterations, jpeg, DisplayScaleBench::smooth);
+            measure("read + one bilinear step", iterations, jpeg, DisplayScaleBench::singleBilinear);
+            measure("subsampled + progressive", iterations, jpeg, bytes -> ImageScaler.readScaled(bytes, WIDTH, HEIGHT));
+        }
+    }
+
+    private static BufferedImage smooth(byte[] jpeg) throws IOException {
+        Image scaled = ImageIO.read(new ByteArrayInputStream(jpeg)).getScaledInstance(WIDTH, HEIGHT, Image.SCALE_SMOOTH);
+        BufferedImage out = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.drawImage(scaled, 0, 0, null);
+        g.dispose();
+        return out;
+    }
+
+    private static BufferedImage singleBilinear(byte[] jpeg) throws IOException {
+        BufferedImage full = ImageIO.read(new ByteArrayInputStream(jpeg));
+        BufferedImage out = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(full, 0, 0, WIDTH, HEIGHT, null);
+        g.dispose();
+        return out;
+    }
+
+    private static void measure(String name, int iterations, byte[] jpeg, Method method) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        // warm up the JIT before measuring
+        method.load(jpeg);
+        method.load(jpeg);
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            method.load(jpeg);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        System.out.printf("  %-26s %8.1f ms/image %8.1f MB/image%n",
+                name, elapsed / 1e6 / iterations, allocated / 1e6 / iterations);
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,81 @@
+package com.udacity.image.bench;
+
+import com.udacity.image.buffer.FrameBufferPool;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures bytes allocated per frame for decoding and encoding, with and without FrameBufferPool.
+ * 测量每帧解码和编码分配的内存，对比帧缓冲池与 ImageIO 默认路径
+ *
+ * Usage: FrameAllocationBench [iterations] [image...]
+ * Defaults to 200 iterations over the sample images in the working directory.
+ */
+public class FrameAllocationBench {
+    private static final String[] SAMPLE_IMAGES = {"sample-cat.jpg", "sample-not-cat.jpg", "sample-not-a-cat-fail.jpg"};
+
+    private interface FrameTask {
+        void run(int frame) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        String[] paths = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : SAMPLE_IMAGES;
+
+        List<byte[]> jpegs = new ArrayList<>();
+        List<BufferedImage> images = new ArrayList<>();
+        for (String path : paths) {
+            byte[] jpeg = Files.readAllBytes(Path.of(path));
+            jpegs.add(jpeg);
+            images.add(ImageIO.read(new ByteArrayInputStream(jpeg)));
+        }
+        List<ByteBuffer> encoded = new ArrayList<>();
+        for (byte[] jpeg : jpegs) {
+            encoded.add(ByteBuffer.wrap(jpeg));
+        }
+        FrameBufferPool pool = new FrameBufferPool(4);
+        int n = jpegs.size();
+
+        measure("decode ImageIO.read", iterations, n,
+                i -> ImageIO.read(new ByteArrayInputStream(jpegs.get(i % n))));
+        measure("decode pooled", iterations, n,
+                i -> pool.release(pool.decode(encoded.get(i % n))));
+        measure("encode ByteArrayOutputStream", iterations, n, i -> {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            ImageIO.write(images.get(i % n), "jpg", os);
+            os.toByteArray();
+        });
+        measure("encode pooled", iterations, n, i -> pool.encodeJpeg(images.get(i % n)));
+        System.out.println(pool);
+    }
+
+    private static void measure(String name, int iterations, int images, FrameTask task) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int frames = iterations * images;
+        // warm up the JIT and fill the pools before measuring
+        for (int i = 0; i < Math.max(images * 10, 30); i++) {
+            task.run(i);
+        }
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            task.run(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        System.out.printf("%-30s %10.1f KB/frame  %7.3f ms/frame%n",
+                name, allocated / 1024.0 / frames, elapsed / 1e6 / frames);
+    }
+}
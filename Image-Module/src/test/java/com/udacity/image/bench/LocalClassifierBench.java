@@ -0,0 +1,87 @@
+package com.udacity.image.bench;
+
+import com.udacity.image.service.LocalImageService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures LocalImageService latency and its throughput when called from one thread per core.
+ * 测量本地识别服务的单帧延迟与多线程吞吐量
+ *
+ * Usage: LocalClassifierBench [iterations] [image...]
+ * Defaults to 200 iterations over the sample images in the working directory.
+ */
+public class LocalClassifierBench {
+    private static final String[] SAMPLE_IMAGES = {"sample-cat.jpg", "sample-not-cat.jpg", "sample-not-a-cat-fail.jpg"};
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        String[] paths = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : SAMPLE_IMAGES;
+
+        List<BufferedImage> images = new ArrayList<>();
+        for (String path : paths) {
+            BufferedImage image = ImageIO.read(new File(path));
+            if (image == null) {
+                throw new IOException("Unsupported image: " + path);
+            }
+            images.add(image);
+        }
+
+        LocalImageService service = new LocalImageService();
+        for (int i = 0; i < paths.length; i++) {
+            System.out.printf("%-32s confidence=%5.1f%%%n", paths[i], service.catConfidence(images.get(i)));
+        }
+
+        // warm up the JIT before measuring
+        for (int i = 0; i < 50; i++) {
+            for (BufferedImage image : images) {
+                service.catConfidence(image);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (BufferedImage image : images) {
+                service.catConfidence(image);
+            }
+        }
+        long singleNanos = System.nanoTime() - start;
+        int frames = iterations * images.size();
+        System.out.printf("single thread: %.3f ms/frame%n", singleNanos / 1e6 / frames);
+
+        // 每个核心一个调用线程
+        // one calling thread per core
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService callers = Executors.newFixedThreadPool(cores);
+        try {
+            List<Future<?>> done = new ArrayList<>(cores);
+            start = System.nanoTime();
+            for (int t = 0; t < cores; t++) {
+                done.add(callers.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        for (BufferedImage image : images) {
+                            service.catConfidence(image);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+            long parallelNanos = System.nanoTime() - start;
+            System.out.printf("%d threads: %.0f frames/s%n", cores, (double) frames * cores / (parallelNanos / 1e9));
+        } finally {
+            callers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.udacity.image.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FrameBufferPoolTest {
+    private static final int RGB = BufferedImage.TYPE_INT_RGB;
+
+    private static BufferedImage filled(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static ByteBuffer jpeg(FrameBufferPool pool, BufferedImage image) throws IOException {
+        ByteBuffer encoded = pool.encodeJpeg(image);
+        // 编码结果只在本线程下一次编码前有效, 复制一份
+        // the encoded bytes are only valid until this thread encodes again, keep a copy
+        ByteBuffer copy = ByteBuffer.allocate(encoded.remaining());
+        copy.put(encoded.duplicate()).flip();
+        return copy;
+    }
+
+    @Test
+    void acquire_afterRelease_shouldReuseSameFrame() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        BufferedImage first = pool.acquire(64, 48, RGB);
+
+        pool.release(first);
+        BufferedImage second = pool.acquire(64, 48, RGB);
+
+        assertThat(second).isSameInstanceAs(first);
+        assertThat(pool.getAllocated()).isEqualTo(1);
+        assertThat(pool.getReused()).isEqualTo(1);
+        assertThat(pool.getIdleBytes()).isEqualTo(0);
+    }
+
+    @Test
+    void acquire_otherShape_shouldNotReuseReleasedFrame() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        BufferedImage frame = pool.acquire(64, 48, RGB);
+        pool.release(frame);
+
+        BufferedImage otherSize = pool.acquire(32, 48, RGB);
+        BufferedImage otherType = pool.acquire(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+
+        assertThat(otherSize).isNotSameInstanceAs(frame);
+        assertThat(otherType).isNotSameInstanceAs(frame);
+        assertThat(pool.getAllocated()).isEqualTo(3);
+        assertThat(pool.getIdleBytes()).isEqualTo(64 * 48 * 4);
+    }
+
+    @Test
+    void release_moreThanMaxPerShape_shouldDiscardExtraFrames() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        BufferedImage a = pool.acquire(16, 16, RGB);
+        BufferedImage b = pool.acquire(16, 16, RGB);
+        BufferedImage c = pool.acquire(16, 16, RGB);
+
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+
+        assertThat(pool.getReleased()).isEqualTo(2);
+        assertThat(pool.getDiscarded()).isEqualTo(1);
+        assertThat(pool.getIdleBytes()).isEqualTo(2L * 16 * 16 * 4);
+    }
+
+    @Test
+    void release_beyondIdleBytesOrShapes_shouldDiscard() {
+        // 只能保留一帧 16x16 的像素, 只池化一种形状
+        // room for one 16x16 frame and one shape
+        FrameBufferPool pool = new FrameBufferPool(4, 1, 16 * 16 * 4);
+        BufferedImage a = pool.acquire(16, 16, RGB);
+        BufferedImage b = pool.acquire(16, 16, RGB);
+        BufferedImage otherShape = pool.acquire(8, 8, RGB);
+
+        pool.release(a);
+        pool.release(b);
+        pool.release(otherShape);
+
+        assertThat(pool.getReleased()).isEqualTo(1);
+        assertThat(pool.getDiscarded()).isEqualTo(2);
+        assertThat(pool.getIdleBytes()).isEqualTo(16 * 16 * 4);
+    }
+
+    @Test
+    void release_null_shouldBeIgnored() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+
+        pool.release(null);
+
+        assertThat(pool.getReleased()).isEqualTo(0);
+        assertThat(pool.getDiscarded()).isEqualTo(0);
+    }
+
+    @Test
+    void decode_releasedFrame_shouldBeReusedForNextFrameOfSameShape() throws IOException {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        ByteBuffer red = jpeg(pool, filled(64, 48, Color.RED));
+        ByteBuffer blue = jpeg(pool, filled(64, 48, Color.BLUE));
+
+        BufferedImage first = pool.decode(red);
+        assertThat(new Color(first.getRGB(32, 24)).getRed()).isGreaterThan(200);
+        pool.release(first);
+        BufferedImage second = pool.decode(blue);
+
+        // 复用的缓冲区被新帧完全覆盖
+        // the reused frame is fully overwritten by the new one
+        assertThat(second).isSameInstanceAs(first);
+        Color pixel = new Color(second.getRGB(32, 24));
+        assertThat(pixel.getBlue()).isGreaterThan(200);
+        assertThat(pixel.getRed()).isLessThan(50);
+        assertThat(pool.getReused()).isEqualTo(1);
+    }
+
+    @Test
+    void decode_directBuffer_shouldLeavePositionAndLimitUnchanged() throws IOException {
+        FrameBufferPool pool = new FrameBufferPool(2);
+        ByteBuffer heap = jpeg(pool, filled(40, 30, Color.GREEN));
+        ByteBuffer direct = ByteBuffer.allocateDirect(heap.remaining() + 8);
+        direct.position(8);
+        direct.put(heap.duplicate()).flip().position(8);
+
+        BufferedImage frame = pool.decode(direct);
+
+        assertThat(frame.getWidth()).isEqualTo(40);
+        assertThat(frame.getHeight()).isEqualTo(30);
+        assertThat(direct.position()).isEqualTo(8);
+        assertThat(direct.limit()).isEqualTo(heap.remaining() + 8);
+    }
+
+    @Test
+    void decode_unreadableBytes_shouldThrowWithoutLeakingFrame() {
+        FrameBufferPool pool = new FrameBufferPool(2);
+
+        assertThrows(IllegalArgumentException.class, () -> pool.decode(ByteBuffer.wrap(new byte[]{1, 2, 3, 4})));
+
+        assertThat(pool.getAllocated()).isEqualTo(0);
+    }
+
+    @Test
+    void encodeJpeg_shouldProduceReadableJpeg() throws IOException {
+        FrameBufferPool pool = new FrameBufferPool(2);
+
+        ByteBuffer encoded = jpeg(pool, filled(20, 10, Color.WHITE));
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoded.array()));
+        assertThat(decoded.getWidth()).isEqualTo(20);
+        assertThat(decoded.getHeight()).isEqualTo(10);
+    }
+
+    @Test
+    void constructor_nonPositiveLimits_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameBufferPool(0));
+        assertThrows(IllegalArgumentException.class, () -> new FrameBufferPool(1, 0, 1L));
+        assertThrows(IllegalArgumentException.class, () -> new FrameBufferPool(1, 1, 0L));
+    }
+}
@@ -0,0 +1,89 @@
+package com.udacity.image.scale;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageScalerTest {
+
+    private static BufferedImage filled(int width, int height, int type, Color color) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, color.getRGB());
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void scale_shrinkingByMoreThanHalf_shouldReturnExactSizeAndKeepColor() {
+        BufferedImage source = filled(1000, 600, BufferedImage.TYPE_INT_RGB, Color.RED);
+
+        BufferedImage scaled = ImageScaler.scale(source, 90, 70);
+
+        assertThat(scaled.getWidth()).isEqualTo(90);
+        assertThat(scaled.getHeight()).isEqualTo(70);
+        assertThat(scaled.getRGB(45, 35)).isEqualTo(Color.RED.getRGB());
+    }
+
+    @Test
+    void scale_enlargingOrSameSize_shouldReturnNewImageOfRequestedSize() {
+        BufferedImage source = filled(10, 10, BufferedImage.TYPE_INT_RGB, Color.BLUE);
+
+        BufferedImage enlarged = ImageScaler.scale(source, 40, 20);
+        BufferedImage same = ImageScaler.scale(source, 10, 10);
+
+        assertThat(enlarged.getWidth()).isEqualTo(40);
+        assertThat(enlarged.getHeight()).isEqualTo(20);
+        assertThat(same).isNotSameInstanceAs(source);
+        assertThat(same.getRGB(5, 5)).isEqualTo(Color.BLUE.getRGB());
+    }
+
+    @Test
+    void scale_imageWithAlpha_shouldKeepAlpha() {
+        BufferedImage source = filled(64, 64, BufferedImage.TYPE_INT_ARGB, new Color(0, 255, 0, 0));
+
+        BufferedImage scaled = ImageScaler.scale(source, 8, 8);
+
+        assertThat(scaled.getType()).isEqualTo(BufferedImage.TYPE_INT_ARGB);
+        assertThat(scaled.getRGB(4, 4) >>> 24).isEqualTo(0);
+    }
+
+    @Test
+    void readScaled_shouldDecodeToRequestedSize() throws IOException {
+        byte[] png = encode(filled(800, 400, BufferedImage.TYPE_INT_RGB, Color.WHITE), "png");
+
+        BufferedImage scaled = ImageScaler.readScaled(png, 100, 60);
+
+        assertThat(scaled.getWidth()).isEqualTo(100);
+        assertThat(scaled.getHeight()).isEqualTo(60);
+        assertThat(scaled.getRGB(50, 30)).isEqualTo(Color.WHITE.getRGB());
+    }
+
+    @Test
+    void readScaled_unreadableBytes_shouldThrowIOException() {
+        assertThrows(IOException.class, () -> ImageScaler.readScaled(new byte[]{1, 2, 3, 4}, 10, 10));
+    }
+
+    @Test
+    void scale_nonPositiveSize_shouldThrow() {
+        BufferedImage source = filled(10, 10, BufferedImage.TYPE_INT_RGB, Color.BLACK);
+
+        assertThrows(IllegalArgumentException.class, () -> ImageScaler.scale(source, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> ImageScaler.scale(source, 10, -1));
+    }
+}
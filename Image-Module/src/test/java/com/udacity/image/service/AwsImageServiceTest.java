@@ -0,0 +1,116 @@
+package com.udacity.image.service;
+
+import com.udacity.image.buffer.FrameBufferPool;
+import com.udacity.image.stub.RekognitionStubServer;
+import com.udacity.image.stub.RekognitionStubServer.Label;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.RekognitionException;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the real SDK client, HTTP transport and JSON protocol against the local RekognitionStubServer.
+ * 使用真实的 SDK 客户端访问本地模拟服务, 覆盖请求编码、传输和响应解析
+ */
+class AwsImageServiceTest {
+    private final BufferedImage frame = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+    private RekognitionStubServer stub;
+    private RekognitionClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    private AwsImageService start(RekognitionStubServer.Builder builder, Duration callTimeout) throws IOException {
+        stub = builder.build().start();
+        // 与 ImageModule 相同的客户端配置, 只是地址指向模拟服务
+        // same client settings as ImageModule, pointed at the stub
+        client = RekognitionClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("stub-id", "stub-secret")))
+                .region(Region.US_EAST_1)
+                .httpClientBuilder(ApacheHttpClient.builder())
+                .overrideConfiguration(c -> c.retryStrategy(AwsRetryStrategy.doNotRetry()))
+                .endpointOverride(stub.getEndpoint())
+                .build();
+        return new AwsImageService(client, callTimeout);
+    }
+
+    private AwsImageService start(RekognitionStubServer.Builder builder) throws IOException {
+        return start(builder, Duration.ofSeconds(5));
+    }
+
+    @Test
+    void imageContainsCat_catThenOtherLabels_shouldFollowStubResponses() throws IOException {
+        AwsImageService service = start(new RekognitionStubServer.Builder()
+                .addResponse(new Label("Cat", 97.5f), new Label("Pet", 95.1f))
+                .addResponse(new Label("Cattle", 93.2f), new Label("Grass", 90.4f)));
+
+        assertThat(service.imageContainsCat(frame, 70.0f)).isTrue();
+        assertThat(service.imageContainsCat(frame, 70.0f)).isFalse();
+        assertThat(stub.getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void imageContainsCat_catBelowThreshold_shouldSendMinConfidenceAndAnswerNoCat() throws IOException {
+        AwsImageService service = start(new RekognitionStubServer.Builder()
+                .addResponse(new Label("Cat", 60.0f)));
+
+        // 模拟服务按请求中的 MinConfidence 过滤标签
+        // the stub filters labels by the MinConfidence sent in the request
+        assertThat(service.imageContainsCat(frame, 70.0f)).isFalse();
+        assertThat(service.imageContainsCat(frame, 50.0f)).isTrue();
+    }
+
+    @Test
+    void encodedImageContainsCat_shouldSendEncodedFrame() throws IOException {
+        AwsImageService service = start(new RekognitionStubServer.Builder()
+                .addResponse(new Label("Cat", 99.0f)));
+        ByteBuffer jpeg = FrameBufferPool.shared().encodeJpeg(frame);
+
+        assertThat(service.encodedImageContainsCat(jpeg, 70.0f)).isTrue();
+        assertThat(stub.getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void imageContainsCat_throttled_shouldThrowServiceError() throws IOException {
+        AwsImageService service = start(new RekognitionStubServer.Builder()
+                .addResponse(new Label("Cat", 99.0f))
+                .setThrottleProbability(1.0));
+
+        RekognitionException e = assertThrows(RekognitionException.class, () -> service.imageContainsCat(frame, 70.0f));
+
+        assertThat(e.awsErrorDetails().errorCode()).isEqualTo("ThrottlingException");
+        assertThat(e.statusCode()).isEqualTo(400);
+        assertThat(stub.getThrottled()).isEqualTo(1);
+    }
+
+    @Test
+    void imageContainsCat_serviceHangs_shouldGiveUpAtCallTimeout() throws IOException {
+        AwsImageService service = start(new RekognitionStubServer.Builder()
+                .addResponse(new Label("Cat", 99.0f))
+                .setTimeoutProbability(1.0, 10_000L), Duration.ofMillis(200));
+
+        assertThrows(ApiCallTimeoutException.class, () -> service.imageContainsCat(frame, 70.0f));
+        assertThat(stub.getTimedOut()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,91 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.awt.image.BufferedImage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CascadingImageServiceTest {
+    private static final float THRESHOLD = 70.0f;
+    private static final float MARGIN = 20.0f;
+
+    @Mock
+    private LocalImageService local;
+    @Mock
+    private ImageService remote;
+    private final BufferedImage frame = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private CascadingImageService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CascadingImageService(local, remote, MARGIN);
+    }
+
+    @Test
+    void imageContainsCat_confidentLocalPositive_shouldAnswerCatWithoutRemoteCall() {
+        when(local.catConfidence(frame)).thenReturn(THRESHOLD + MARGIN);
+
+        assertThat(service.imageContainsCat(frame, THRESHOLD)).isTrue();
+
+        verify(remote, never()).imageContainsCat(any(BufferedImage.class), anyFloat());
+        assertThat(service.getLocalPositives()).isEqualTo(1);
+        assertThat(service.getLocalHitRatio()).isEqualTo(1.0);
+    }
+
+    @Test
+    void imageContainsCat_confidentLocalNegative_shouldAnswerNoCatWithoutRemoteCall() {
+        when(local.catConfidence(frame)).thenReturn(THRESHOLD - MARGIN);
+
+        assertThat(service.imageContainsCat(frame, THRESHOLD)).isFalse();
+
+        verify(remote, never()).imageContainsCat(any(BufferedImage.class), anyFloat());
+        assertThat(service.getLocalNegatives()).isEqualTo(1);
+    }
+
+    @Test
+    void imageContainsCat_confidenceInsideMargin_shouldEscalateToRemote() {
+        // 阈值两侧的不确定区间都交给远程服务
+        // the uncertain band on both sides of the threshold goes to the remote service
+        when(local.catConfidence(frame)).thenReturn(THRESHOLD + MARGIN - 1.0f, THRESHOLD - MARGIN + 1.0f);
+        when(remote.imageContainsCat(frame, THRESHOLD)).thenReturn(false, true);
+
+        assertThat(service.imageContainsCat(frame, THRESHOLD)).isFalse();
+        assertThat(service.imageContainsCat(frame, THRESHOLD)).isTrue();
+
+        assertThat(service.getEscalations()).isEqualTo(2);
+        assertThat(service.getLocalHitRatio()).isEqualTo(0.0);
+        assertThat(service.getRemoteLatency().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void imageContainsCat_remoteFails_shouldPropagateInsteadOfUsingLocalGuess() {
+        // 本地倾向于 "有猫", 但远程失败时不能用本地的猜测作答
+        // the local tier leans towards "cat", but a remote failure must not fall back to that guess
+        when(local.catConfidence(frame)).thenReturn(THRESHOLD + 5.0f);
+        RemoteScanException failure = new RemoteScanException("remote down", new IllegalStateException());
+        when(remote.imageContainsCat(frame, THRESHOLD)).thenThrow(failure);
+
+        RemoteScanException e = assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, THRESHOLD));
+
+        assertThat(e).isSameInstanceAs(failure);
+        assertThat(service.getEscalations()).isEqualTo(1);
+        assertThat(service.getLocalPositives()).isEqualTo(0);
+    }
+
+    @Test
+    void constructor_negativeMargin_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new CascadingImageService(local, remote, -1.0f));
+    }
+}
@@ -0,0 +1,102 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+    // 手动推进的时钟
+    // clock the test moves forward by hand
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 1_000L, now::get);
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertThat(breaker.allowRequest()).isTrue();
+            breaker.recordFailure();
+        }
+    }
+
+    @Test
+    void closed_consecutiveFailuresBelowThreshold_shouldStayClosed() {
+        fail(2);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    void closed_successBetweenFailures_shouldResetCount() {
+        fail(2);
+        breaker.recordSuccess();
+        fail(2);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void closed_failuresReachThreshold_shouldOpenAndRejectUntilOpenTimePassed() {
+        fail(3);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+        advanceMillis(999);
+        assertThat(breaker.allowRequest()).isFalse();
+        advanceMillis(1);
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void halfOpen_shouldAllowSingleTrialAndCloseOnSuccess() {
+        fail(3);
+        advanceMillis(1_000);
+
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.allowRequest()).isFalse();
+        breaker.recordSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    void halfOpen_trialFails_shouldReopenForAnotherOpenPeriod() {
+        fail(3);
+        advanceMillis(1_000);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        advanceMillis(500);
+        assertThat(breaker.allowRequest()).isFalse();
+        advanceMillis(500);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    void halfOpen_trialAbandoned_shouldFreeTrialSlot() {
+        fail(3);
+        advanceMillis(1_000);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordAbandoned();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    void constructor_nonPositiveThreshold_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(0, 1_000L));
+    }
+}
@@ -0,0 +1,123 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocalImageServiceTest {
+    private static final float THRESHOLD = 70.0f;
+
+    private final LocalImageService service = new LocalImageService();
+
+    private static BufferedImage filled(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static BufferedImage noise(long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    // 启发式规则: 暖色平坦画面得分高, 大片绿色或蓝色得分低
+    @Test
+    void imageContainsCat_warmPlainFrame_shouldAnswerCat() {
+        assertThat(service.imageContainsCat(filled(64, 48, new Color(150, 100, 50)), THRESHOLD)).isTrue();
+    }
+
+    @Test
+    void imageContainsCat_greenOrBlueFrame_shouldAnswerNoCat() {
+        assertThat(service.imageContainsCat(filled(64, 48, Color.GREEN), THRESHOLD)).isFalse();
+        assertThat(service.imageContainsCat(filled(64, 48, Color.BLUE), THRESHOLD)).isFalse();
+    }
+
+    @Test
+    void catConfidence_anyFrameSize_shouldReturnPercentage() {
+        for (BufferedImage image : List.of(filled(1, 1, Color.WHITE), filled(2000, 10, Color.RED), noise(1L))) {
+            float confidence = service.catConfidence(image);
+
+            assertThat(confidence).isAtLeast(0f);
+            assertThat(confidence).isAtMost(100f);
+        }
+    }
+
+    @Test
+    void imageContainsCat_shouldCompareConfidenceWithThreshold() {
+        BufferedImage image = noise(2L);
+        float confidence = service.catConfidence(image);
+
+        assertThat(service.imageContainsCat(image, confidence)).isTrue();
+        assertThat(service.imageContainsCat(image, Math.nextUp(confidence))).isFalse();
+    }
+
+    @Test
+    void catConfidence_calledFromManyThreads_shouldMatchSingleThreadedResults() throws Exception {
+        List<BufferedImage> images = new ArrayList<>();
+        List<Float> expected = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            images.add(noise(i));
+            expected.add(service.catConfidence(images.get(i)));
+        }
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Float>>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(callers.submit(() -> {
+                    List<Float> confidences = new ArrayList<>();
+                    for (BufferedImage image : images) {
+                        confidences.add(service.catConfidence(image));
+                    }
+                    return confidences;
+                }));
+            }
+
+            for (Future<List<Float>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).containsExactlyElementsIn(expected).inOrder();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void load_wrongNumberOfWeights_shouldThrow() {
+        String properties = "input.size=4\nconv1.filters=1\nconv1.weights=1,2,3\n";
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> CatClassifierModel.load(new ByteArrayInputStream(properties.getBytes(StandardCharsets.ISO_8859_1))));
+
+        assertThat(e).hasMessageThat().contains("conv1.weights");
+    }
+
+    @Test
+    void load_missingProperty_shouldThrow() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> CatClassifierModel.load(new ByteArrayInputStream(new byte[0])));
+
+        assertThat(e).hasMessageThat().contains("input.size");
+    }
+}
@@ -0,0 +1,82 @@
+package com.udacity.image.service;
+
+import com.udacity.constant.enums.ArmingStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RemoteScanSchedulerTest {
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ImageService countingImageService = (image, confidenceThreshold) -> {
+        calls.incrementAndGet();
+        return true;
+    };
+
+    @Test
+    void imageContainsCat_whenDailyBudgetUsedUp_shouldRejectWithoutCallingClassifier() {
+        RemoteScanScheduler scheduler = new RemoteScanScheduler.Builder(countingImageService, () -> ArmingStatus.ARMED_AWAY)
+                .setDailyBudget(1)
+                .build();
+
+        assertThat(scheduler.imageContainsCat(null, 70.0f)).isTrue();
+        assertThrows(RejectedExecutionException.class, () -> scheduler.imageContainsCat(null, 70.0f));
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(scheduler.getRemainingToday()).isEqualTo(0);
+        assertThat(scheduler.getOverBudget()).isEqualTo(1);
+    }
+
+    @Test
+    void imageContainsCat_whenDisarmedAndSkipPolicy_shouldRejectWithoutCallingClassifier() {
+        RemoteScanScheduler scheduler = new RemoteScanScheduler.Builder(countingImageService, () -> ArmingStatus.DISARMED)
+                .setDisarmedPolicy(RemoteScanScheduler.DisarmedPolicy.SKIP)
+                .build();
+
+        // 跳过不是 "没有猫" 的答案
+        // a skip is not a "no cat" answer
+        assertThrows(RejectedExecutionException.class, () -> scheduler.imageContainsCat(null, 70.0f));
+        assertThrows(RejectedExecutionException.class, () -> scheduler.encodedImageContainsCat(null, 70.0f));
+        assertThat(calls.get()).isEqualTo(0);
+        assertThat(scheduler.getSkipped()).isEqualTo(2);
+    }
+
+    @Test
+    void imageContainsCat_whenTokensRunOut_shouldServeArmedAwayBeforeEarlierArmedHome() throws Exception {
+        List<ArmingStatus> order = new CopyOnWriteArrayList<>();
+        RemoteScanScheduler scheduler = new RemoteScanScheduler.Builder(countingImageService, () -> ArmingStatus.ARMED_HOME)
+                .setRate(2.0, 1)
+                .build();
+        // 用掉唯一的令牌, 后续请求必须排队
+        // take the only token so the next requests have to queue
+        scheduler.imageContainsCat(null, 70.0f, ArmingStatus.ARMED_AWAY);
+
+        CompletableFuture<Void> home = CompletableFuture.runAsync(() -> {
+            scheduler.imageContainsCat(null, 70.0f, ArmingStatus.ARMED_HOME);
+            order.add(ArmingStatus.ARMED_HOME);
+        });
+        awaitQueueLength(scheduler, 1);
+        CompletableFuture<Void> away = CompletableFuture.runAsync(() -> {
+            scheduler.imageContainsCat(null, 70.0f, ArmingStatus.ARMED_AWAY);
+            order.add(ArmingStatus.ARMED_AWAY);
+        });
+
+        CompletableFuture.allOf(home, away).get(5, TimeUnit.SECONDS);
+        assertThat(order).containsExactly(ArmingStatus.ARMED_AWAY, ArmingStatus.ARMED_HOME).inOrder();
+        assertThat(scheduler.getServed(ArmingStatus.ARMED_AWAY)).isEqualTo(2);
+        assertThat(scheduler.getServed(ArmingStatus.ARMED_HOME)).isEqualTo(1);
+    }
+
+    private static void awaitQueueLength(RemoteScanScheduler scheduler, int length) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getQueueLength() < length && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
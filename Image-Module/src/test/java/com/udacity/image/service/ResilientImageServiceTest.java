@@ -0,0 +1,214 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResilientImageServiceTest {
+    private final BufferedImage frame = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    /**
+     * Delegate whose n-th call (starting at 1) is answered by the given function.
+     */
+    private ImageService delegate(IntFunction<Boolean> answer) {
+        return (image, confidenceThreshold) -> answer.apply(calls.incrementAndGet());
+    }
+
+    private static SdkServiceException serviceError(int statusCode) {
+        return (SdkServiceException) SdkServiceException.builder().statusCode(statusCode).message("HTTP " + statusCode).build();
+    }
+
+    private static SdkClientException networkError() {
+        return SdkClientException.builder().message("connection reset").build();
+    }
+
+    private ResilientImageService.Builder builder(ImageService delegate) {
+        // 退避为 0, 测试不等待
+        return new ResilientImageService.Builder(delegate).setBackoff(0L, 0L).setHedging(false);
+    }
+
+    @Test
+    void imageContainsCat_transientFailuresThenSuccess_shouldRetryAndAnswer() {
+        ResilientImageService service = builder(delegate(n -> {
+            if (n < 3) {
+                throw serviceError(503);
+            }
+            return true;
+        })).setMaxAttempts(3).build();
+
+        assertThat(service.imageContainsCat(frame, 70.0f)).isTrue();
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(service.getRetries()).isEqualTo(2);
+        assertThat(service.getFailures()).isEqualTo(0);
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void imageContainsCat_retriesExhausted_shouldThrowInsteadOfGuessing() {
+        ResilientImageService service = builder(delegate(n -> {
+            throw networkError();
+        })).setMaxAttempts(3).build();
+
+        RemoteScanException e = assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, 70.0f));
+
+        assertThat(e).hasCauseThat().isInstanceOf(SdkClientException.class);
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(service.getFailures()).isEqualTo(1);
+    }
+
+    @Test
+    void imageContainsCat_nonRetryableError_shouldThrowWithoutRetryOrOpeningBreaker() {
+        ResilientImageService service = builder(delegate(n -> {
+            throw serviceError(400);
+        })).setMaxAttempts(3).setBreaker(1, 60_000L).build();
+
+        RemoteScanException e = assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, 70.0f));
+
+        assertThat(e).hasCauseThat().isInstanceOf(SdkServiceException.class);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(service.getRetries()).isEqualTo(0);
+        // 请求被拒绝说明服务本身可用
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void imageContainsCat_slowService_shouldGiveUpAtDeadline() {
+        ResilientImageService service = builder((image, confidenceThreshold) -> {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }).setDeadlineMillis(100L).setMaxAttempts(1).build();
+        long start = System.nanoTime();
+
+        RemoteScanException e = assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, 70.0f));
+
+        assertThat(e).hasCauseThat().isInstanceOf(TimeoutException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2_000L);
+    }
+
+    @Test
+    void imageContainsCat_outage_shouldOpenBreakerAndStopCallingService() {
+        ResilientImageService service = builder(delegate(n -> {
+            throw serviceError(503);
+        })).setMaxAttempts(1).setBreaker(2, 60_000L).build();
+
+        assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, 70.0f));
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, 70.0f));
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // 熔断期间不再调用远程服务, 扫描直接失败
+        RemoteScanException e = assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, 70.0f));
+
+        assertThat(e).hasMessageThat().contains("OPEN");
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(service.getShortCircuited()).isEqualTo(1);
+        assertThat(service.getFailures()).isEqualTo(3);
+    }
+
+    @Test
+    void imageContainsCat_serviceRecovers_shouldCloseBreakerAfterHalfOpenTrial() {
+        ResilientImageService service = builder(delegate(n -> {
+            if (n == 1) {
+                throw serviceError(503);
+            }
+            return true;
+        })).setMaxAttempts(1).setBreaker(1, 0L).build();
+
+        assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, 70.0f));
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThat(service.imageContainsCat(frame, 70.0f)).isTrue();
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void imageContainsCat_moreCallsThanLimit_shouldFailFastWithoutOpeningBreaker() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        ResilientImageService service = builder((image, confidenceThreshold) -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }).setMaxConcurrentCalls(1).setBreaker(1, 60_000L).build();
+        Future<Boolean> first = callers.submit(() -> service.imageContainsCat(frame, 70.0f));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        RemoteScanException e = assertThrows(RemoteScanException.class, () -> service.imageContainsCat(frame, 70.0f));
+
+        assertThat(e).hasCauseThat().isInstanceOf(RejectedExecutionException.class);
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void imageContainsCat_slowerThanUsual_shouldSendHedgedRequest() {
+        ResilientImageService service = new ResilientImageService.Builder(delegate(n -> {
+            if (n == 21) {
+                // 第一个请求卡住, 对冲请求先返回
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+            return true;
+        })).setHedging(true).setHedgeMinDelayMillis(20L).build();
+        for (int i = 0; i < 20; i++) {
+            service.imageContainsCat(frame, 70.0f);
+        }
+
+        assertThat(service.imageContainsCat(frame, 70.0f)).isTrue();
+        assertThat(service.getHedges()).isEqualTo(1);
+        assertThat(calls.get()).isEqualTo(22);
+    }
+
+    @Test
+    void build_invalidSettings_shouldThrow() {
+        ImageService delegate = delegate(n -> true);
+
+        assertThrows(IllegalStateException.class,
+                () -> new ResilientImageService.Builder(delegate).setMaxAttempts(0).build());
+        assertThrows(IllegalStateException.class,
+                () -> new ResilientImageService.Builder(delegate).setBackoff(100L, 10L).build());
+        assertThrows(IllegalStateException.class,
+                () -> new ResilientImageService.Builder(delegate).setMaxConcurrentCalls(0).build());
+        assertThrows(IllegalStateException.class,
+                () -> new ResilientImageService.Builder(delegate).setBreaker(0, 1_000L).build());
+    }
+}
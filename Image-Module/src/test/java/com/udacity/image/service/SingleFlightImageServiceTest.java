@@ -0,0 +1,151 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightImageServiceTest {
+    private final BufferedImage frame = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    // 阻塞底层识别, 直到测试放行
+    // Blocks the delegate until the test releases it
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    private ImageService blockingDelegate(RuntimeException failure) {
+        return (image, confidenceThreshold) -> {
+            delegateCalls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return true;
+        };
+    }
+
+    // 等待第二个调用方挂到正在进行的识别上
+    private static void awaitCoalesced(SingleFlightImageService service, long calls) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getCoalescedCalls() < calls && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(service.getCoalescedCalls()).isEqualTo(calls);
+    }
+
+    @Test
+    void imageContainsCat_concurrentCallersForSameFrame_shouldShareOneDelegateCall() throws Exception {
+        SingleFlightImageService service = new SingleFlightImageService(blockingDelegate(null));
+        Future<Boolean> leader = callers.submit(() -> service.imageContainsCat(frame, 70.0f));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Boolean> first = callers.submit(() -> service.imageContainsCat(frame, 70.0f));
+        Future<Boolean> second = callers.submit(() -> service.imageContainsCat(frame, 70.0f));
+        awaitCoalesced(service, 2);
+
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(delegateCalls.get()).isEqualTo(1);
+        assertThat(service.getDelegatedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void imageContainsCat_afterScanCompletes_shouldCallDelegateAgain() {
+        release.countDown();
+        SingleFlightImageService service = new SingleFlightImageService(blockingDelegate(null));
+
+        service.imageContainsCat(frame, 70.0f);
+        service.imageContainsCat(frame, 70.0f);
+
+        // 识别完成后不缓存结果
+        assertThat(delegateCalls.get()).isEqualTo(2);
+        assertThat(service.getCoalescedCalls()).isEqualTo(0);
+    }
+
+    @Test
+    void imageContainsCat_differentThreshold_shouldNotCoalesce() throws Exception {
+        SingleFlightImageService service = new SingleFlightImageService(blockingDelegate(null));
+        Future<Boolean> leader = callers.submit(() -> service.imageContainsCat(frame, 70.0f));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Boolean> other = callers.submit(() -> service.imageContainsCat(frame, 90.0f));
+        release.countDown();
+
+        leader.get(5, TimeUnit.SECONDS);
+        other.get(5, TimeUnit.SECONDS);
+
+        assertThat(delegateCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void imageContainsCat_whenDelegateFails_shouldPropagateToWaiters() throws Exception {
+        IllegalStateException failure = new IllegalStateException("service down");
+        SingleFlightImageService service = new SingleFlightImageService(blockingDelegate(failure));
+        Future<Boolean> leader = callers.submit(() -> service.imageContainsCat(frame, 70.0f));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Boolean> waiter = callers.submit(() -> service.imageContainsCat(frame, 70.0f));
+        awaitCoalesced(service, 1);
+
+        release.countDown();
+
+        ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertThat(leaderFailure).hasCauseThat().isSameInstanceAs(failure);
+        assertThat(waiterFailure).hasCauseThat().isSameInstanceAs(failure);
+        assertThat(delegateCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void imageContainsCat_whenWaiterInterrupted_shouldThrowCancellationAndKeepInterruptFlag() throws Exception {
+        SingleFlightImageService service = new SingleFlightImageService(blockingDelegate(null));
+        Future<Boolean> leader = callers.submit(() -> service.imageContainsCat(frame, 70.0f));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        AtomicBoolean interruptKept = new AtomicBoolean();
+        CountDownLatch waiterDone = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                assertThrows(CancellationException.class, () -> service.imageContainsCat(frame, 70.0f));
+                interruptKept.set(Thread.currentThread().isInterrupted());
+            } finally {
+                waiterDone.countDown();
+            }
+        });
+        waiter.start();
+        awaitCoalesced(service, 1);
+
+        waiter.interrupt();
+
+        assertThat(waiterDone.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(interruptKept.get()).isTrue();
+        // 领头的识别不受影响
+        assertThat(leader.isDone()).isFalse();
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(delegateCalls.get()).isEqualTo(1);
+    }
+}
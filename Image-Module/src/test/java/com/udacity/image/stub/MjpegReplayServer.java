@@ -0,0 +1,196 @@
+package com.udacity.image.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local MJPEG camera that replays a fixed set of JPEG files as a multipart/x-mixed-replace stream,
+ * so camera ingest can be tested and benchmarked without an IP camera.
+ * 本地模拟网络摄像头，循环播放 JPEG 文件作为 MJPEG 流，用于离线测试和压测。
+ *
+ * Every client gets its own stream at the configured frame rate; a frame rate of 0 sends frames
+ * as fast as the client reads them.
+ *
+ * Usage: MjpegReplayServer [port] [fps] [image...]
+ */
+public class MjpegReplayServer implements AutoCloseable {
+    private static final String BOUNDARY = "catpointframe";
+    private static final String[] SAMPLE_IMAGES = {"sample-cat.jpg", "sample-not-cat.jpg", "sample-not-a-cat-fail.jpg"};
+
+    private final Logger log = LoggerFactory.getLogger(MjpegReplayServer.class);
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<byte[]> frames;
+    private final double fps;
+    private volatile boolean closed;
+
+    private final LongAdder clients = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+
+    private MjpegReplayServer(Builder builder) throws IOException {
+        this.frames = Collections.unmodifiableList(new ArrayList<>(builder.frames));
+        this.fps = builder.fps;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "mjpeg-replay-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public MjpegReplayServer start() {
+        server.start();
+        log.info("MJPEG replay of {} frames at {} fps on {}", frames.size(), fps, getStreamUri());
+        return this;
+    }
+
+    public URI getStreamUri() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/video");
+    }
+
+    public long getClients() {
+        return clients.sum();
+    }
+
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            clients.increment();
+            exchange.getResponseHeaders().set("Content-Type", "multipart/x-mixed-replace;boundary=" + BOUNDARY);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            long intervalNanos = fps > 0 ? (long) (1e9 / fps) : 0L;
+            long next = System.nanoTime();
+            for (int i = 0; !closed; i = (i + 1) % frames.size()) {
+                byte[] frame = frames.get(i);
+                byte[] head = ("--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: " + frame.length + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                out.write(head);
+                out.write(frame);
+                out.write('\r');
+                out.write('\n');
+                if (intervalNanos > 0) {
+                    out.flush();
+                    next += intervalNanos;
+                    long sleepNanos = next - System.nanoTime();
+                    if (sleepNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                    }
+                }
+                framesSent.increment();
+                bytesSent.add(head.length + frame.length + 2L);
+            }
+        } catch (IOException e) {
+            // 客户端断开连接
+            // the client went away
+            log.debug("MJPEG replay client disconnected: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Builder builder = new Builder()
+                .setPort(args.length > 0 ? Integer.parseInt(args[0]) : 8081)
+                .setFps(args.length > 1 ? Double.parseDouble(args[1]) : 10.0);
+        if (args.length > 2) {
+            for (int i = 2; i < args.length; i++) {
+                builder.addFrame(Path.of(args[i]));
+            }
+        } else {
+            for (String sample : SAMPLE_IMAGES) {
+                builder.addFrame(Path.of(sample));
+            }
+        }
+        MjpegReplayServer server = builder.build().start();
+        System.out.println("Streaming on " + server.getStreamUri() + ", press Ctrl+C to stop");
+    }
+
+    public static class Builder {
+        private final List<byte[]> frames = new ArrayList<>();
+        private String host = "127.0.0.1";
+        private int port = 0;
+        private double fps = 10.0;
+
+        public Builder setHost(String host) {
+            this.host = Objects.requireNonNull(host, "host must not be null");
+            return this;
+        }
+
+        /**
+         * @param port listening port, 0 picks a free one
+         */
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param fps frames per second per client, 0 for as fast as possible
+         */
+        public Builder setFps(double fps) {
+            this.fps = fps;
+            return this;
+        }
+
+        public Builder addFrame(byte[] jpeg) {
+            frames.add(Objects.requireNonNull(jpeg, "jpeg must not be null"));
+            return this;
+        }
+
+        public Builder addFrame(Path jpegFile) throws IOException {
+            return addFrame(Files.readAllBytes(jpegFile));
+        }
+
+        public MjpegReplayServer build() throws IOException {
+            if (frames.isEmpty()) {
+                throw new IllegalStateException("At least one frame is required");
+            }
+            if (fps < 0) {
+                throw new IllegalStateException("fps must not be negative");
+            }
+            return new MjpegReplayServer(this);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.udacity.image.stub;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Local HTTP stand-in for the Rekognition DetectLabels API, so the AWS scan path can be
+ * benchmarked and resilience-tested on a disconnected machine.
+ * 本地模拟 Rekognition DetectLabels 接口的 HTTP 服务，用于离线压测和容错测试。
+ *
+ * Point the client at it with {@code ImageModule(AWS_CONTROL, server.getEndpoint())} or the
+ * {@code aws.endpoint} property. Responses cycle through the scripted label sets; every request
+ * waits for a sample of the latency model, and may be answered with a ThrottlingException or
+ * held long enough to trip client timeouts.
+ */
+public class RekognitionStubServer implements AutoCloseable {
+    private static final String DETECT_LABELS_TARGET = "RekognitionService.DetectLabels";
+    private static final String CONTENT_TYPE = "application/x-amz-json-1.1";
+
+    private final Logger log = LoggerFactory.getLogger(RekognitionStubServer.class);
+    private final Gson gson = new Gson();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<List<Label>> scriptedLabels;
+    private final LatencyModel latency;
+    private final double throttleProbability;
+    private final double timeoutProbability;
+    private final long timeoutHoldMillis;
+    private final AtomicInteger nextScript = new AtomicInteger();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    private RekognitionStubServer(Builder builder) throws IOException {
+        this.scriptedLabels = Collections.unmodifiableList(new ArrayList<>(builder.scriptedLabels));
+        this.latency = builder.latency;
+        this.throttleProbability = builder.throttleProbability;
+        this.timeoutProbability = builder.timeoutProbability;
+        this.timeoutHoldMillis = builder.timeoutHoldMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(builder.workerThreads, r -> {
+            Thread t = new Thread(r, "rekognition-stub-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public RekognitionStubServer start() {
+        server.start();
+        log.info("Rekognition stub listening on {}", getEndpoint());
+        return this;
+    }
+
+    public URI getEndpoint() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.increment();
+            String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+            if (!"POST".equals(exchange.getRequestMethod()) || !DETECT_LABELS_TARGET.equals(target)) {
+                sendError(exchange, 400, "UnknownOperationException", "Only DetectLabels is supported by the stub");
+                return;
+            }
+            float minConfidence = readMinConfidence(exchange.getRequestBody());
+
+            sleep(latency.sampleMillis());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < timeoutProbability) {
+                // 模拟服务无响应，直到客户端超时
+                // hold the connection so the client's deadline expires first
+                timedOut.increment();
+                sleep(timeoutHoldMillis);
+                sendError(exchange, 500, "InternalServerError", "Stub request held past the client timeout");
+                return;
+            }
+            if (random.nextDouble() < throttleProbability) {
+                throttled.increment();
+                sendError(exchange, 400, "ThrottlingException", "Rate exceeded");
+                return;
+            }
+
+            List<Label> labels = scriptedLabels.isEmpty()
+                    ? Collections.emptyList()
+                    : scriptedLabels.get(Math.floorMod(nextScript.getAndIncrement(), scriptedLabels.size()));
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("Labels", labels.stream()
+                    .filter(l -> l.confidence >= minConfidence)
+                    .map(Label::toJson)
+                    .collect(Collectors.toList()));
+            body.put("LabelModelVersion", "3.0");
+            send(exchange, 200, gson.toJson(body), null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private float readMinConfidence(InputStream body) {
+        try (InputStreamReader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+            JsonObject request = gson.fromJson(reader, JsonObject.class);
+            if (request != null && request.has("MinConfidence")) {
+                return request.get("MinConfidence").getAsFloat();
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            log.debug("Could not read MinConfidence from stub request", e);
+        }
+        return 0f;
+    }
+
+    private void sendError(HttpExchange exchange, int status, String type, String message) throws IOException {
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("__type", type);
+        body.put("message", message);
+        send(exchange, status, gson.toJson(body), type);
+    }
+
+    private void send(HttpExchange exchange, int status, String json, String errorType) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        if (errorType != null) {
+            exchange.getResponseHeaders().set("x-amzn-ErrorType", errorType);
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Label returned by the stub.
+     */
+    public static final class Label {
+        private final String name;
+        private final float confidence;
+
+        public Label(String name, float confidence) {
+            this.name = Objects.requireNonNull(name, "name must not be null");
+            this.confidence = confidence;
+        }
+
+        private Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("Name", name);
+            json.put("Confidence", confidence);
+            json.put("Instances", Collections.emptyList());
+            json.put("Parents", Collections.emptyList());
+            return json;
+        }
+    }
+
+    /**
+     * Distribution of the artificial service time added to every request.
+     */
+    public interface LatencyModel {
+        long sampleMillis();
+
+        static LatencyModel fixed(long millis) {
+            return () -> millis;
+        }
+
+        static LatencyModel uniform(long minMillis, long maxMillis) {
+            return () -> ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+        }
+
+        /**
+         * Log-normal service time, the usual shape of remote API latency (long right tail).
+         * @param medianMillis median latency
+         * @param sigma spread of the underlying normal distribution, 0.5 gives p99 of about 3.2x the median
+         */
+        static LatencyModel logNormal(double medianMillis, double sigma) {
+            return () -> Math.round(medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+    }
+
+    public static class Builder {
+        private String host = "127.0.0.1";
+        private int port = 0;
+        private int workerThreads = 16;
+        private final List<List<Label>> scriptedLabels = new ArrayList<>();
+        private LatencyModel latency = LatencyModel.fixed(0);
+        private double throttleProbability = 0.0;
+        private double timeoutProbability = 0.0;
+        private long timeoutHoldMillis = 30_000L;
+
+        public Builder setHost(String host) {
+            this.host = Objects.requireNonNull(host, "host must not be null");
+            return this;
+        }
+
+        // 0 picks a free port
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        /**
+         * Add one scripted response; responses are returned in order and then repeat.
+         */
+        public Builder addResponse(Label... labels) {
+            scriptedLabels.add(List.of(labels));
+            return this;
+        }
+
+        public Builder setLatency(LatencyModel latency) {
+            this.latency = Objects.requireNonNull(latency, "latency must not be null");
+            return this;
+        }
+
+        public Builder setThrottleProbability(double throttleProbability) {
+            this.throttleProbability = throttleProbability;
+            return this;
+        }
+
+        public Builder setTimeoutProbability(double timeoutProbability, long holdMillis) {
+            this.timeoutProbability = timeoutProbability;
+            this.timeoutHoldMillis = holdMillis;
+            return this;
+        }
+
+        public RekognitionStubServer build() throws IOException {
+            if (workerThreads <= 0) {
+                throw new IllegalStateException("workerThreads must be positive");
+            }
+            if (throttleProbability < 0 || throttleProbability > 1 || timeoutProbability < 0 || timeoutProbability > 1) {
+                throw new IllegalStateException("Probabilities must be between 0 and 1");
+            }
+            return new RekognitionStubServer(this);
+        }
+    }
+
+    /**
+     * Standalone stand-in: RekognitionStubServer [port] [medianLatencyMillis] [throttleProbability]
+     * Alternates between a cat and a non-cat response.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8899;
+        double median = args.length > 1 ? Double.parseDouble(args[1]) : 150.0;
+        double throttle = args.length > 2 ? Double.parseDouble(args[2]) : 0.0;
+        new Builder()
+                .setPort(port)
+                .setLatency(LatencyModel.logNormal(median, 0.5))
+                .setThrottleProbability(throttle)
+                .addResponse(new Label("Cat", 97.5f), new Label("Pet", 95.1f), new Label("Animal", 99.0f))
+                .addResponse(new Label("Cattle", 93.2f), new Label("Grass", 90.4f))
+                .build()
+                .start();
+    }
+}
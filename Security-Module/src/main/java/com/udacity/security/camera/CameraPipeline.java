@@ -0,0 +1,79 @@
+package com.udacity.security.camera;
+
+import com.google.inject.Inject;
+import com.udacity.security.service.LatestFrameScanMailbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connects camera sources to the scan pipeline.
+ * 将摄像头来源接入扫描流水线
+ *
+ * Every source feeds the per-camera LatestFrameScanMailbox, which keeps at most one frame waiting
+ * and one scan in flight per camera, so the buffering from camera to classifier stays bounded
+ * however fast the cameras produce frames.
+ */
+public class CameraPipeline implements AutoCloseable {
+    private final Logger log = LoggerFactory.getLogger(CameraPipeline.class);
+    private final LatestFrameScanMailbox mailbox;
+    private final Map<String, CameraSource> sources = new ConcurrentHashMap<>();
+
+    @Inject
+    public CameraPipeline(LatestFrameScanMailbox mailbox) {
+        this.mailbox = Objects.requireNonNull(mailbox, "LatestFrameScanMailbox must not be null");
+    }
+
+    /**
+     * Start a source and route its frames to the scan mailbox.
+     */
+    public void addSource(CameraSource source) {
+        Objects.requireNonNull(source, "source must not be null");
+        if (sources.putIfAbsent(source.getCameraId(), source) != null) {
+            throw new IllegalArgumentException("Camera " + source.getCameraId() + " is already connected");
+        }
+        source.start(new FrameSink() {
+            @Override
+            public void onFrame(String cameraId, BufferedImage frame, long captureNanos) {
+                mailbox.offer(cameraId, frame, captureNanos);
+            }
+
+            @Override
+            public void onEncodedFrame(String cameraId, ByteBuffer encodedJpeg, long captureNanos) {
+                mailbox.offerEncoded(cameraId, encodedJpeg, captureNanos);
+            }
+        });
+    }
+
+    public void removeSource(String cameraId) {
+        CameraSource source = sources.remove(cameraId);
+        if (source != null) {
+            source.close();
+            mailbox.removeCamera(cameraId);
+        }
+    }
+
+    public List<CameraSource> getSources() {
+        return Collections.unmodifiableList(new ArrayList<>(sources.values()));
+    }
+
+    public LatestFrameScanMailbox getMailbox() {
+        return mailbox;
+    }
+
+    @Override
+    public void close() {
+        for (String cameraId : new ArrayList<>(sources.keySet())) {
+            removeSource(cameraId);
+        }
+        log.info("Camera pipeline closed: {}", mailbox);
+    }
+}
@@ -0,0 +1,23 @@
+package com.udacity.security.camera;
+
+/**
+ * A camera that produces frames continuously, e.g. a directory of snapshots or an MJPEG stream.
+ * 持续产生图像帧的摄像头来源
+ *
+ * Sources deliver frames on their own threads and must never block on the scan pipeline.
+ */
+public interface CameraSource extends AutoCloseable {
+
+    String getCameraId();
+
+    /**
+     * Start producing frames into {@code sink}. A source can be started once.
+     */
+    void start(FrameSink sink);
+
+    /**
+     * Stop producing frames and release threads and files.
+     */
+    @Override
+    void close();
+}
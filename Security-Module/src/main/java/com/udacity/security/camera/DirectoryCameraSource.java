@@ -0,0 +1,286 @@
+package com.udacity.security.camera;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Camera source that watches a directory where a camera drops JPEG snapshots.
+ * 监视摄像头写入 JPEG 快照的目录，并在后台线程解码新帧。
+ *
+ * A watcher thread turns WatchService events into paths on a bounded queue; a decoder thread
+ * decodes them with one reused ImageReader and hands the frames to the sink. When frames arrive
+ * faster than they can be decoded, the oldest waiting path is dropped, the scan pipeline only
+ * cares about the newest frames anyway.
+ * 解码队列有界，满时丢弃最旧的帧。
+ *
+ * A camera that writes snapshots in place produces MODIFY events while the file is still being
+ * written. The JPEG reader only warns about such a truncated file and returns a partial image,
+ * so a frame whose decode reports a warning is skipped; the MODIFY event of the last write queues
+ * the complete file again. A frame the sink fails on is logged and the next one is decoded.
+ * 解码有警告的帧视为尚未写完而跳过；处理某一帧出错只记录日志，不会停止解码线程。
+ */
+public class DirectoryCameraSource implements CameraSource {
+    private final Logger log = LoggerFactory.getLogger(DirectoryCameraSource.class);
+
+    private final String cameraId;
+    private final Path directory;
+    private final BlockingQueue<PendingFile> decodeQueue;
+    // 已在队列中的文件, 同一文件的 CREATE 和 MODIFY 事件只解码一次
+    // files already queued, CREATE and MODIFY events of the same file are decoded once
+    private final Set<Path> queued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService threads;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile WatchService watchService;
+    private volatile boolean closed;
+    // 最近一次解码的警告, 只由解码线程访问
+    // warning of the current decode, only used by the decoder thread
+    private String readWarning;
+
+    private final LongAdder filesSeen = new LongAdder();
+    private final LongAdder framesDecoded = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final LongAdder decodeFailures = new LongAdder();
+    private final LongAdder incompleteFrames = new LongAdder();
+    private final LongAdder sinkFailures = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LatencyHistogram decodeLatency = new LatencyHistogram();
+
+    public DirectoryCameraSource(String cameraId, Path directory) {
+        this(cameraId, directory, Constants.CAMERA_DECODE_QUEUE_CAPACITY);
+    }
+
+    public DirectoryCameraSource(String cameraId, Path directory, int queueCapacity) {
+        this.cameraId = Objects.requireNonNull(cameraId, "cameraId must not be null");
+        this.directory = Objects.requireNonNull(directory, "directory must not be null");
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.decodeQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.threads = Executors.newFixedThreadPool(2, new ThreadFactoryBuilder()
+                .setNameFormat("camera-" + cameraId + "-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    @Override
+    public void start(FrameSink sink) {
+        Objects.requireNonNull(sink, "sink must not be null");
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Camera source " + cameraId + " already started");
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot watch camera directory " + directory, e);
+        }
+        threads.execute(this::watch);
+        threads.execute(() -> decode(sink));
+        log.info("Camera {} watching {}", cameraId, directory);
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflows.increment();
+                        continue;
+                    }
+                    Path file = directory.resolve((Path) event.context());
+                    if (isJpeg(file) && queued.add(file)) {
+                        filesSeen.increment();
+                        enqueue(new PendingFile(file, System.nanoTime()));
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("Camera {} directory {} is no longer accessible", cameraId, directory);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void enqueue(PendingFile pending) {
+        while (!decodeQueue.offer(pending)) {
+            PendingFile oldest = decodeQueue.poll();
+            if (oldest != null) {
+                queued.remove(oldest.path);
+                framesDropped.increment();
+            }
+        }
+    }
+
+    private void decode(FrameSink sink) {
+        Iterator<ImageReader> readers = ImageIO.getImageReadersBySuffix("jpg");
+        if (!readers.hasNext()) {
+            log.error("No JPEG ImageReader available, camera {} cannot decode frames", cameraId);
+            return;
+        }
+        // 复用同一个 ImageReader, 避免每帧查找和创建解码器
+        // one reader for the life of the source instead of a lookup and allocation per frame
+        ImageReader reader = readers.next();
+        reader.addIIOReadWarningListener((source, warning) -> readWarning = warning);
+        try {
+            while (!closed) {
+                PendingFile pending = decodeQueue.take();
+                queued.remove(pending.path);
+                BufferedImage frame = read(reader, pending.path);
+                if (frame == null) {
+                    continue;
+                }
+                try {
+                    sink.onFrame(cameraId, frame, pending.captureNanos);
+                } catch (RuntimeException e) {
+                    // 一帧出错不能停止这个摄像头
+                    // one bad frame must not stop the camera
+                    sinkFailures.increment();
+                    log.warn("Camera {} failed to process frame {}", cameraId, pending.path, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private BufferedImage read(ImageReader reader, Path file) {
+        long start = System.nanoTime();
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                decodeFailures.increment();
+                return null;
+            }
+            reader.setInput(in, true, true);
+            readWarning = null;
+            BufferedImage frame = reader.read(0);
+            if (readWarning != null) {
+                // 文件还没写完, 之后的 MODIFY 事件会再次入队
+                // the file is not fully written yet; its next MODIFY event queues it again
+                incompleteFrames.increment();
+                log.debug("Camera {} skipped incomplete frame {}: {}", cameraId, file, readWarning);
+                return null;
+            }
+            framesDecoded.increment();
+            decodeLatency.record(System.nanoTime() - start);
+            return frame;
+        } catch (IOException | RuntimeException e) {
+            // 摄像头可能还在写入文件, 之后的 MODIFY 事件会再次入队
+            // the camera may still be writing the file; its next MODIFY event queues it again
+            decodeFailures.increment();
+            log.debug("Camera {} could not decode {}", cameraId, file, e);
+            return null;
+        } finally {
+            reader.setInput(null);
+        }
+    }
+
+    private static boolean isJpeg(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            log.warn("Error closing watch service of camera {}", cameraId, e);
+        }
+        threads.shutdownNow();
+    }
+
+    public long getFilesSeen() {
+        return filesSeen.sum();
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded.sum();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    public long getDecodeFailures() {
+        return decodeFailures.sum();
+    }
+
+    /**
+     * @return frames skipped because the decoder warned about them, usually files still being written
+     */
+    public long getIncompleteFrames() {
+        return incompleteFrames.sum();
+    }
+
+    /**
+     * @return decoded frames the sink threw on
+     */
+    public long getSinkFailures() {
+        return sinkFailures.sum();
+    }
+
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+    public LatencyHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DirectoryCameraSource{camera=%s, dir=%s, seen=%d, decoded=%d, dropped=%d, failed=%d, incomplete=%d, sinkFailed=%d, overflows=%d, decode=[%s]}",
+                cameraId, directory, getFilesSeen(), getFramesDecoded(), getFramesDropped(), getDecodeFailures(),
+                getIncompleteFrames(), getSinkFailures(), getOverflows(), decodeLatency);
+    }
+
+    private static final class PendingFile {
+        private final Path path;
+        private final long captureNanos;
+
+        private PendingFile(Path path, long captureNanos) {
+            this.path = path;
+            this.captureNanos = captureNanos;
+        }
+    }
+}
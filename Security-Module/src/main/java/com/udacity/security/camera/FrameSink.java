@@ -0,0 +1,30 @@
+package com.udacity.security.camera;
+
+import com.udacity.image.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives decoded frames from a {@link CameraSource}. Implementations must not block,
+ * {@code LatestFrameScanMailbox::offer} is the usual sink.
+ * 接收摄像头帧的回调，不能阻塞
+ */
+@FunctionalInterface
+public interface FrameSink {
+    /**
+     * @param cameraId camera the frame comes from
+     * @param frame decoded image
+     * @param captureNanos System.nanoTime() when the frame arrived
+     */
+    void onFrame(String cameraId, BufferedImage frame, long captureNanos);
+
+    /**
+     * Receive an encoded JPEG frame. Sinks that can scan encoded bytes override this,
+     * the default decodes the frame.
+     * @param encodedJpeg JPEG bytes between position and limit, owned by the sink from now on
+     */
+    default void onEncodedFrame(String cameraId, ByteBuffer encodedJpeg, long captureNanos) {
+        onFrame(cameraId, ImageService.decode(encodedJpeg), captureNanos);
+    }
+}
@@ -0,0 +1,221 @@
+package com.udacity.security.camera;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.udacity.constant.common.Constants;
+import com.udacity.image.service.ImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Camera source for IP cameras that serve multipart MJPEG over HTTP.
+ * 通过 HTTP 读取 MJPEG 流的网络摄像头来源
+ *
+ * A reader thread reads the socket with NIO into the {@link MjpegFramer} buffer and hands every
+ * JPEG to the sink as an encoded slice of that buffer, the scan pipeline decides whether it needs
+ * to decode. Frames are decoded here only while a viewer is set, on a separate display thread and
+ * latest frame first. The connection is re-established after a failure until the source is closed.
+ * 只有设置了显示回调时才解码用于显示，扫描流水线直接接收编码后的帧。
+ */
+public class MjpegCameraSource implements CameraSource {
+    private final Logger log = LoggerFactory.getLogger(MjpegCameraSource.class);
+
+    private final String cameraId;
+    private final URI uri;
+    private final int bufferCapacity;
+    private final ExecutorService threads;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile SocketChannel channel;
+    private volatile boolean closed;
+
+    private volatile Consumer<BufferedImage> viewer;
+    private final AtomicReference<ByteBuffer> displayFrame = new AtomicReference<>();
+    private final AtomicBoolean displayScheduled = new AtomicBoolean(false);
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder displayed = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public MjpegCameraSource(String cameraId, URI uri) {
+        this(cameraId, uri, Constants.MJPEG_BUFFER_BYTES);
+    }
+
+    public MjpegCameraSource(String cameraId, URI uri, int bufferCapacity) {
+        this.cameraId = Objects.requireNonNull(cameraId, "cameraId must not be null");
+        this.uri = Objects.requireNonNull(uri, "uri must not be null");
+        if (!"http".equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Only http MJPEG streams are supported: " + uri);
+        }
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("bufferCapacity must be positive");
+        }
+        this.bufferCapacity = bufferCapacity;
+        this.threads = Executors.newFixedThreadPool(2, new ThreadFactoryBuilder()
+                .setNameFormat("mjpeg-" + cameraId + "-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    @Override
+    public void start(FrameSink sink) {
+        Objects.requireNonNull(sink, "sink must not be null");
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Camera source " + cameraId + " already started");
+        }
+        threads.execute(() -> run(sink));
+    }
+
+    /**
+     * Show decoded frames to {@code viewer}, or stop decoding for display with null.
+     * 设置显示回调，为 null 时不再为显示解码
+     */
+    public void setViewer(Consumer<BufferedImage> viewer) {
+        this.viewer = viewer;
+    }
+
+    private void run(FrameSink sink) {
+        while (!closed) {
+            try {
+                stream(sink);
+            } catch (IOException | RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                log.warn("MJPEG camera {} stream failed, reconnecting", cameraId, e);
+            }
+            if (closed) {
+                return;
+            }
+            reconnects.increment();
+            try {
+                TimeUnit.MILLISECONDS.sleep(Constants.CAMERA_RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void stream(FrameSink sink) throws IOException {
+        int port = uri.getPort() < 0 ? 80 : uri.getPort();
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        try (SocketChannel ch = SocketChannel.open(new InetSocketAddress(uri.getHost(), port))) {
+            channel = ch;
+            // HTTP/1.0 请求使服务器不使用分块传输编码
+            // an HTTP/1.0 request keeps servers from using chunked transfer encoding
+            String request = "GET " + path + " HTTP/1.0\r\nHost: " + uri.getHost() + ":" + port
+                    + "\r\nAccept: multipart/x-mixed-replace\r\nConnection: close\r\n\r\n";
+            ByteBuffer out = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+            MjpegFramer framer = new MjpegFramer(bufferCapacity);
+            while (!closed) {
+                int n = ch.read(framer.buffer());
+                if (n < 0) {
+                    log.info("MJPEG camera {} closed the stream", cameraId);
+                    return;
+                }
+                bytes.add(n);
+                if (!framer.readResponseHead()) {
+                    continue;
+                }
+                long captureNanos = System.nanoTime();
+                framer.drain(frame -> onFrame(sink, frame, captureNanos));
+            }
+        }
+    }
+
+    private void onFrame(FrameSink sink, ByteBuffer frame, long captureNanos) {
+        frames.increment();
+        if (viewer != null) {
+            // 显示只关心最新帧, 解码在显示线程上进行
+            // the display only wants the newest frame, decode it on the display thread
+            displayFrame.set(frame.duplicate());
+            if (displayScheduled.compareAndSet(false, true)) {
+                threads.execute(this::display);
+            }
+        }
+        try {
+            sink.onEncodedFrame(cameraId, frame, captureNanos);
+        } catch (RuntimeException e) {
+            // 一帧处理失败不影响后续帧
+            // a frame the sink cannot handle must not drop the stream
+            log.warn("MJPEG camera {} frame was rejected by the sink", cameraId, e);
+        }
+    }
+
+    private void display() {
+        displayScheduled.set(false);
+        ByteBuffer frame = displayFrame.getAndSet(null);
+        Consumer<BufferedImage> current = viewer;
+        if (frame == null || current == null) {
+            return;
+        }
+        try {
+            current.accept(ImageService.decode(frame));
+            displayed.increment();
+        } catch (RuntimeException e) {
+            log.debug("MJPEG camera {} frame could not be displayed", cameraId, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        SocketChannel ch = channel;
+        if (ch != null) {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                log.debug("Error closing MJPEG camera {}", cameraId, e);
+            }
+        }
+        threads.shutdownNow();
+    }
+
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getDisplayed() {
+        return displayed.sum();
+    }
+
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MjpegCameraSource{camera=%s, uri=%s, frames=%d, bytes=%d, displayed=%d, reconnects=%d}",
+                cameraId, uri, getFrames(), getBytes(), getDisplayed(), getReconnects());
+    }
+}
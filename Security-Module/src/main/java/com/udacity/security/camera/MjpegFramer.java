@@ -0,0 +1,195 @@
+package com.udacity.security.camera;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Splits a multipart/x-mixed-replace (MJPEG) byte stream into JPEG frames.
+ * 在 ByteBuffer 中直接切分 MJPEG 流的帧边界
+ *
+ * The socket reads straight into {@link #buffer()} and every frame is handed out as a slice of
+ * that buffer, so frame bytes are never copied. A buffer that has handed out slices is never
+ * written again below its fill mark; when it runs out of space a new one is allocated and only the
+ * incomplete tail (the start of the next frame) is carried over. With a buffer several frames
+ * large, that tail copy happens once every few frames and is a fraction of a frame.
+ * 帧以切片形式交出，不复制帧数据；缓冲区写满时只复制尚未完整的下一帧开头。
+ *
+ * Not thread safe, used by the single reader thread of a camera.
+ */
+final class MjpegFramer {
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_END = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final int minCapacity;
+    // 写模式: position 之前是已读取的数据
+    // write mode: bytes before position have been read from the socket
+    private ByteBuffer buf;
+    private int parsePos;
+    // 无 Content-Length 时下一次查找边界的起点, 避免重复扫描
+    // where to resume the delimiter search in a frame without Content-Length
+    private int searchFrom;
+    // 当前缓冲区是否已交出切片, 交出后不能原地压缩
+    // whether slices of the current buffer are in use, which forbids compacting it in place
+    private boolean sliced;
+    private byte[] delimiter;
+    private byte[] lineDelimiter;
+    private int largestFrame;
+
+    MjpegFramer(int initialCapacity) {
+        this.minCapacity = initialCapacity;
+        this.buf = ByteBuffer.allocate(initialCapacity);
+    }
+
+    /**
+     * @return buffer to read the next bytes into, always with space remaining
+     */
+    ByteBuffer buffer() {
+        if (buf.hasRemaining()) {
+            return buf;
+        }
+        int pending = buf.position() - parsePos;
+        if (!sliced && parsePos > 0) {
+            // 没有切片引用此缓冲区, 可以原地压缩
+            // no slice refers to this buffer, compact in place
+            buf.flip().position(parsePos);
+            buf.compact();
+        } else {
+            int capacity = Math.max(minCapacity, Math.max(pending * 2, largestFrame * 4));
+            ByteBuffer next = ByteBuffer.allocate(capacity);
+            next.put(buf.array(), buf.arrayOffset() + parsePos, pending);
+            buf = next;
+            sliced = false;
+        }
+        searchFrom = Math.max(0, searchFrom - parsePos);
+        parsePos = 0;
+        return buf;
+    }
+
+    /**
+     * Parse the HTTP response head and read the multipart boundary.
+     * @return true once the head is complete
+     * @throws IllegalStateException if the response is not a multipart stream
+     */
+    boolean readResponseHead() {
+        if (delimiter != null) {
+            return true;
+        }
+        int end = indexOf(HEADER_END, parsePos, buf.position());
+        if (end < 0) {
+            return false;
+        }
+        String head = new String(buf.array(), buf.arrayOffset() + parsePos, end - parsePos, StandardCharsets.ISO_8859_1);
+        String statusLine = head.substring(0, Math.max(0, head.indexOf("\r\n")));
+        if (!statusLine.contains(" 200")) {
+            throw new IllegalStateException("Camera answered " + statusLine);
+        }
+        String boundary = null;
+        for (String line : head.split("\r\n")) {
+            String lower = line.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                throw new IllegalStateException("Chunked MJPEG streams are not supported");
+            }
+            int at = lower.indexOf("boundary=");
+            if (lower.startsWith("content-type:") && at >= 0) {
+                boundary = line.substring(at + "boundary=".length()).trim();
+                int semicolon = boundary.indexOf(';');
+                if (semicolon >= 0) {
+                    boundary = boundary.substring(0, semicolon).trim();
+                }
+                boundary = boundary.replace("\"", "");
+            }
+        }
+        if (boundary == null || boundary.isEmpty()) {
+            throw new IllegalStateException("Not an MJPEG stream, no multipart boundary in: " + head);
+        }
+        // 有些摄像头在 boundary 参数里已经带了 "--"
+        // some cameras already include the leading dashes in the boundary parameter
+        delimiter = (boundary.startsWith("--") ? boundary : "--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        lineDelimiter = new byte[LINE_END.length + delimiter.length];
+        System.arraycopy(LINE_END, 0, lineDelimiter, 0, LINE_END.length);
+        System.arraycopy(delimiter, 0, lineDelimiter, LINE_END.length, delimiter.length);
+        parsePos = end + HEADER_END.length;
+        return true;
+    }
+
+    /**
+     * Hand out every complete frame read so far.
+     * @param frames receives each JPEG as a read-position slice of the stream buffer
+     * @return number of frames handed out
+     */
+    int drain(Consumer<ByteBuffer> frames) {
+        int count = 0;
+        int limit = buf.position();
+        while (true) {
+            int partStart = indexOf(delimiter, parsePos, limit);
+            if (partStart < 0) {
+                return count;
+            }
+            int headersEnd = indexOf(HEADER_END, partStart, limit);
+            if (headersEnd < 0) {
+                return count;
+            }
+            int bodyStart = headersEnd + HEADER_END.length;
+            int contentLength = contentLength(partStart, headersEnd);
+            int bodyEnd;
+            if (contentLength >= 0) {
+                bodyEnd = bodyStart + contentLength;
+                if (bodyEnd > limit) {
+                    return count;
+                }
+            } else {
+                // 没有 Content-Length 时扫描下一个以换行开头的边界
+                // without Content-Length the frame ends at the next CRLF and delimiter
+                int next = indexOf(lineDelimiter, Math.max(bodyStart, searchFrom), limit);
+                if (next < 0) {
+                    searchFrom = Math.max(bodyStart, limit - lineDelimiter.length + 1);
+                    return count;
+                }
+                bodyEnd = next;
+            }
+            ByteBuffer frame = buf.duplicate();
+            frame.limit(bodyEnd).position(bodyStart);
+            frames.accept(frame.slice());
+            sliced = true;
+            largestFrame = Math.max(largestFrame, bodyEnd - bodyStart);
+            parsePos = bodyEnd;
+            searchFrom = 0;
+            count++;
+        }
+    }
+
+    private int contentLength(int from, int to) {
+        String headers = new String(buf.array(), buf.arrayOffset() + from, to - from, StandardCharsets.ISO_8859_1);
+        for (String line : headers.split("\r\n")) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, "Content-Length:".length())) {
+                try {
+                    return Integer.parseInt(line.substring("Content-Length:".length()).trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(byte[] pattern, int from, int to) {
+        byte[] a = buf.array();
+        int o = buf.arrayOffset();
+        byte first = pattern[0];
+        for (int i = from; i <= to - pattern.length; i++) {
+            if (a[o + i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < pattern.length && a[o + i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,454 @@
+package com.udacity.security.data;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.constant.enums.SensorType;
+import com.udacity.security.model.Sensor;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository for very large sensor fleets that loads only a compact index at startup.
+ * 面向海量传感器的仓库：启动时只加载紧凑索引，名称等细节按需读取
+ *
+ * Sensors live in two files in a directory: {@code sensors.idx} holds one fixed-width record
+ * per sensor (id, offset of the name, active and type bits) and is read into primitive arrays
+ * with an open-addressing id index at startup; {@code sensors.dat} holds the names and is only
+ * read when a name is asked for. The sensor count and the number of active sensors are kept up
+ * to date, so the alarm logic never walks the fleet. Sensor objects are created when
+ * {@link #getSensors()} is iterated and kept only through weak references, so memory is paid
+ * for the sensors someone actually holds; while held, the same object is returned every time.
+ * 每个传感器约占 30 字节索引内存，只有被使用的传感器才会创建对象和读取名称。
+ *
+ * Active flags are written in place, new sensors are appended and removed sensors are replaced
+ * by the last record. Names are fixed per sensor id (Sensor has no setter), so an update only
+ * rewrites the flags. The id index, the import of legacy sensors and the sensor view are shared
+ * with OffHeapSecurityRepositoryImpl through SlotSecurityRepository.
+ */
+public class IndexedSecurityRepositoryImpl extends SlotSecurityRepository {
+    static final String INDEX_FILE = "sensors.idx";
+    static final String NAMES_FILE = "sensors.dat";
+    private static final int MAGIC = 0x43505349;
+    private static final int VERSION = 1;
+    // magic, version, sensor count
+    private static final int HEADER_BYTES = 12;
+    // most / least significant id bits, name offset, flags
+    private static final int RECORD_BYTES = 25;
+    private static final int FLAGS_OFFSET = 24;
+    private static final int ACTIVE_FLAG = 1;
+    private static final int BATCH_RECORDS = 8192;
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private final FileChannel index;
+    private final FileChannel names;
+
+    private int count;
+    private int activeCount;
+    private long[] mostBits;
+    private long[] leastBits;
+    private long[] nameOffsets;
+    private byte[] flags;
+    private WeakReference<Sensor>[] materialized;
+
+    @Inject
+    public IndexedSecurityRepositoryImpl(
+            @Named("sensorIndexDirectory") Path directory,
+            AlarmStatus alarmStatus,
+            ArmingStatus armingStatus,
+            Storage storage,
+            Provider<Set<Sensor>> legacySensors) {
+        super(alarmStatus, armingStatus, storage, false);
+        Objects.requireNonNull(directory, "directory must not be null");
+        try {
+            boolean fresh = prepareDirectory(directory, INDEX_FILE);
+            index = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            names = FileChannel.open(directory.resolve(NAMES_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            createOrOpen(fresh, legacySensors);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open sensor index in " + directory, e);
+        }
+    }
+
+    @Override
+    void create() throws IOException {
+        allocate(16);
+        names.truncate(0);
+        writeHeader();
+    }
+
+    @Override
+    void open() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(index, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a sensor index file");
+        }
+        int stored = header.getInt();
+        if (stored < 0 || index.size() < HEADER_BYTES + (long) stored * RECORD_BYTES) {
+            throw new IOException("Sensor index is truncated");
+        }
+        allocate(Math.max(16, stored));
+        ByteBuffer chunk = ByteBuffer.allocate(RECORD_BYTES * BATCH_RECORDS);
+        long position = HEADER_BYTES;
+        for (int slot = 0; slot < stored; ) {
+            int records = Math.min(BATCH_RECORDS, stored - slot);
+            chunk.clear().limit(records * RECORD_BYTES);
+            readFully(index, chunk, position);
+            chunk.flip();
+            position += (long) records * RECORD_BYTES;
+            for (int i = 0; i < records; i++, slot++) {
+                mostBits[slot] = chunk.getLong();
+                leastBits[slot] = chunk.getLong();
+                nameOffsets[slot] = chunk.getLong();
+                flags[slot] = chunk.get();
+                if ((flags[slot] & ACTIVE_FLAG) != 0) {
+                    activeCount++;
+                }
+                insert(slot);
+            }
+            count = slot;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        mostBits = new long[capacity];
+        leastBits = new long[capacity];
+        nameOffsets = new long[capacity];
+        flags = new byte[capacity];
+        materialized = (WeakReference<Sensor>[]) new WeakReference<?>[capacity];
+        rebuildIndex(capacity);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= mostBits.length) {
+            return;
+        }
+        int capacity = Math.max(needed, mostBits.length * 2);
+        mostBits = Arrays.copyOf(mostBits, capacity);
+        leastBits = Arrays.copyOf(leastBits, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        materialized = Arrays.copyOf(materialized, capacity);
+        rebuildIndex(capacity);
+    }
+
+    @Override
+    int sensorCount() {
+        return count;
+    }
+
+    @Override
+    long mostBits(int slot) {
+        return mostBits[slot];
+    }
+
+    @Override
+    long leastBits(int slot) {
+        return leastBits[slot];
+    }
+
+    private static byte encodeFlags(Sensor sensor) {
+        int active = Boolean.TRUE.equals(sensor.getActive()) ? ACTIVE_FLAG : 0;
+        return (byte) (active | sensor.getSensorType().ordinal() << 1);
+    }
+
+    @Override
+    void appendAll(Collection<Sensor> sensors) throws IOException {
+        List<Sensor> added = new ArrayList<>();
+        for (Sensor sensor : sensors) {
+            Objects.requireNonNull(sensor, "sensor must not be null");
+            if (slotOf(sensor.getSensorId()) < 0) {
+                added.add(sensor);
+            }
+        }
+        ensureCapacity(count + added.size());
+        // 分批写入名称和索引记录, 避免每个传感器一次系统调用
+        // names and records are written in batches instead of one system call per sensor
+        for (int from = 0; from < added.size(); from += BATCH_RECORDS) {
+            List<Sensor> batch = added.subList(from, Math.min(added.size(), from + BATCH_RECORDS));
+            List<byte[]> encodedNames = new ArrayList<>(batch.size());
+            int nameBytes = 0;
+            for (Sensor sensor : batch) {
+                String name = sensor.getName();
+                byte[] encoded = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+                encodedNames.add(encoded);
+                nameBytes += Integer.BYTES + (encoded == null ? 0 : encoded.length);
+            }
+            ByteBuffer nameBuffer = ByteBuffer.allocate(nameBytes);
+            ByteBuffer records = ByteBuffer.allocate(batch.size() * RECORD_BYTES);
+            long nameOffset = names.size();
+            int firstSlot = count;
+            for (int i = 0; i < batch.size(); i++) {
+                Sensor sensor = batch.get(i);
+                byte[] encoded = encodedNames.get(i);
+                int slot = count;
+                mostBits[slot] = sensor.getSensorId().getMostSignificantBits();
+                leastBits[slot] = sensor.getSensorId().getLeastSignificantBits();
+                nameOffsets[slot] = nameOffset + nameBuffer.position();
+                flags[slot] = encodeFlags(sensor);
+                materialized[slot] = new WeakReference<>(sensor);
+                if ((flags[slot] & ACTIVE_FLAG) != 0) {
+                    activeCount++;
+                }
+                nameBuffer.putInt(encoded == null ? -1 : encoded.length);
+                if (encoded != null) {
+                    nameBuffer.put(encoded);
+                }
+                records.putLong(mostBits[slot]).putLong(leastBits[slot]).putLong(nameOffsets[slot]).put(flags[slot]);
+                insert(slot);
+                count++;
+            }
+            writeFully(names, nameBuffer.flip(), nameOffset);
+            writeFully(index, records.flip(), HEADER_BYTES + (long) firstSlot * RECORD_BYTES);
+        }
+        writeHeader();
+    }
+
+    private void removeSlot(int tablePosition) throws IOException {
+        int slot = slotAt(tablePosition);
+        if ((flags[slot] & ACTIVE_FLAG) != 0) {
+            activeCount--;
+        }
+        deleteAt(tablePosition);
+        int last = count - 1;
+        if (slot != last) {
+            // 用最后一条记录填补空位
+            // the last record fills the hole
+            moved(last, slot);
+            mostBits[slot] = mostBits[last];
+            leastBits[slot] = leastBits[last];
+            nameOffsets[slot] = nameOffsets[last];
+            flags[slot] = flags[last];
+            materialized[slot] = materialized[last];
+            writeRecord(slot);
+        }
+        materialized[last] = null;
+        count--;
+        writeHeader();
+        index.truncate(HEADER_BYTES + (long) count * RECORD_BYTES);
+    }
+
+    private void setActive(int slot, boolean active) throws IOException {
+        boolean wasActive = (flags[slot] & ACTIVE_FLAG) != 0;
+        if (wasActive == active) {
+            return;
+        }
+        flags[slot] = (byte) (active ? flags[slot] | ACTIVE_FLAG : flags[slot] & ~ACTIVE_FLAG);
+        activeCount += active ? 1 : -1;
+        writeFully(index, ByteBuffer.wrap(new byte[]{flags[slot]}), HEADER_BYTES + (long) slot * RECORD_BYTES + FLAGS_OFFSET);
+    }
+
+    private void writeRecord(int slot) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES)
+                .putLong(mostBits[slot]).putLong(leastBits[slot]).putLong(nameOffsets[slot]).put(flags[slot]);
+        writeFully(index, record.flip(), HEADER_BYTES + (long) slot * RECORD_BYTES);
+    }
+
+    private void writeHeader() throws IOException {
+        writeFully(index, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putInt(count).flip(), 0);
+    }
+
+    private Sensor live(int slot) {
+        WeakReference<Sensor> reference = materialized[slot];
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * Sensor object of a slot, created with a lazily loaded name if nobody holds it.
+     */
+    @Override
+    synchronized Sensor sensorAt(int slot) {
+        Sensor sensor = live(slot);
+        if (sensor == null) {
+            long nameOffset = nameOffsets[slot];
+            sensor = new Sensor.Builder(new UUID(mostBits[slot], leastBits[slot]))
+                    .setNameLoader(() -> readName(nameOffset))
+                    .setSensorType(SENSOR_TYPES[flags[slot] >> 1])
+                    .build();
+            sensor.setActive((flags[slot] & ACTIVE_FLAG) != 0);
+            materialized[slot] = new WeakReference<>(sensor);
+        }
+        return sensor;
+    }
+
+    private String readName(long offset) {
+        try {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            readFully(names, length, offset);
+            int bytes = length.flip().getInt();
+            if (bytes < 0) {
+                return null;
+            }
+            ByteBuffer name = ByteBuffer.allocate(bytes);
+            readFully(names, name, offset + Integer.BYTES);
+            return new String(name.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read sensor name", e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of sensor file");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "sensor must not be null");
+        try {
+            appendAll(List.of(sensor));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to add sensor " + sensor.getSensorId(), e);
+        }
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "sensor must not be null");
+        int position = find(sensor.getSensorId());
+        if (position < 0) {
+            return;
+        }
+        try {
+            removeSlot(position);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to remove sensor " + sensor.getSensorId(), e);
+        }
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "sensor must not be null");
+        int slot = slotOf(sensor.getSensorId());
+        if (slot < 0) {
+            addSensor(sensor);
+            return;
+        }
+        try {
+            boolean active = Boolean.TRUE.equals(sensor.getActive());
+            setActive(slot, active);
+            // 保持已创建的对象与存储一致
+            // keep the object handed out for this sensor in line with the store
+            Sensor held = live(slot);
+            if (held == null) {
+                materialized[slot] = new WeakReference<>(sensor);
+            } else if (held != sensor) {
+                held.setActive(active);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to update sensor " + sensor.getSensorId(), e);
+        }
+    }
+
+    @Override
+    public synchronized void reloadSensorsAll(Set<Sensor> sensorSet) {
+        Objects.requireNonNull(sensorSet, "sensorSet must not be null");
+        Set<UUID> kept = new HashSet<>();
+        for (Sensor sensor : sensorSet) {
+            kept.add(sensor.getSensorId());
+        }
+        try {
+            for (int slot = count - 1; slot >= 0; slot--) {
+                UUID sensorId = new UUID(mostBits[slot], leastBits[slot]);
+                if (!kept.contains(sensorId)) {
+                    removeSlot(find(sensorId));
+                }
+            }
+            List<Sensor> added = new ArrayList<>();
+            for (Sensor sensor : sensorSet) {
+                if (slotOf(sensor.getSensorId()) < 0) {
+                    added.add(sensor);
+                } else {
+                    updateSensor(sensor);
+                }
+            }
+            appendAll(added);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to reload sensors", e);
+        }
+    }
+
+    @Override
+    public synchronized boolean deactivateAllSensors() {
+        try {
+            for (int slot = 0; slot < count && activeCount > 0; slot++) {
+                setActive(slot, false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to deactivate sensors", e);
+        }
+        for (int slot = 0; slot < count; slot++) {
+            Sensor held = live(slot);
+            if (held != null) {
+                held.setActive(false);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized OptionalInt getActiveSensorCount(UUID excludedSensorId) {
+        int active = activeCount;
+        if (excludedSensorId != null) {
+            int slot = slotOf(excludedSensorId);
+            if (slot >= 0 && (flags[slot] & ACTIVE_FLAG) != 0) {
+                active--;
+            }
+        }
+        return OptionalInt.of(active);
+    }
+
+    /**
+     * @return sensor objects currently held by someone, the rest exist only in the index
+     */
+    public synchronized int getMaterializedSensors() {
+        int held = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (live(slot) != null) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            index.close();
+            names.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close sensor index", e);
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package com.udacity.security.data;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.constant.enums.SensorType;
+import com.udacity.security.model.Sensor;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository for the largest sites that keeps all sensor state outside the Java heap.
+ * 面向超大规模站点的仓库：传感器状态全部存放在堆外内存，堆占用和 GC 停顿与传感器数量无关
+ *
+ * Sensors are fixed-width records (id, name reference, active and type bits) in one direct or
+ * memory-mapped buffer, their names are length-prefixed UTF-8 in a second buffer, and the
+ * id -> slot lookup is an open-addressing table in a third. With a directory the first two are
+ * mapped from {@code sensors.tab} and {@code sensors.names}, so the OS page cache persists every
+ * change and {@link #close()} forces it to disk; without one the store lives in direct memory
+ * only. Direct memory is limited by -XX:MaxDirectMemorySize.
+ *
+ * {@link #getSensors()} creates a Sensor per row while it is iterated and changes go back
+ * through {@link #updateSensor(Sensor)}. Sensors handed out by getSensors or passed to
+ * {@link #addSensor(Sensor)} are tracked through weak references only: while someone holds one, the same object is returned and every change of
+ * the store (deactivateAllSensors, updates through another object, reloads) is applied to it,
+ * so the heap pays only for the sensors in use. Code that only needs ids and flags can use
+ * {@link #forEachRecord(RecordVisitor)}, which allocates nothing per row. Names are fixed per
+ * sensor id; bytes of removed names are reclaimed when the names buffer would otherwise grow.
+ * The id index, the import of legacy sensors and the sensor view are shared with
+ * IndexedSecurityRepositoryImpl through SlotSecurityRepository.
+ */
+public class OffHeapSecurityRepositoryImpl extends SlotSecurityRepository {
+    static final String RECORDS_FILE = "sensors.tab";
+    static final String NAMES_FILE = "sensors.names";
+    private static final int RECORDS_MAGIC = 0x43505354;
+    private static final int NAMES_MAGIC = 0x4350534E;
+    private static final int VERSION = 1;
+    // magic, version, sensor count (records) or end of the used bytes (names), reserved
+    private static final int HEADER_BYTES = 16;
+    private static final int USED_OFFSET = 8;
+    // most / least significant id bits, name reference, flags, padding
+    private static final int RECORD_BYTES = 24;
+    private static final int NAME_OFFSET = 16;
+    private static final int FLAGS_OFFSET = 20;
+    private static final int ACTIVE_FLAG = 1;
+    private static final int NO_NAME = -1;
+    private static final int INITIAL_SENSORS = 1024;
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private final FileChannel recordsFile;
+    private final FileChannel namesFile;
+
+    private ByteBuffer records;
+    private ByteBuffer names;
+    private int count;
+    private int activeCount;
+    private int namesEnd;
+    private long deadNameBytes;
+    // 已交出的传感器对象, 只弱引用, 存储变化时同步更新
+    // sensors handed out or added, weakly held and kept in line with the store
+    private final Map<UUID, HeldSensor> held = new HashMap<>();
+    private final ReferenceQueue<Sensor> released = new ReferenceQueue<>();
+
+    /**
+     * Visitor of the stored records, called with the lock of the repository held.
+     */
+    public interface RecordVisitor {
+        void visit(long idMostBits, long idLeastBits, SensorType sensorType, boolean active);
+    }
+
+    /**
+     * Store backed by files in a directory; a fresh directory imports the legacy sensors.
+     */
+    @Inject
+    public OffHeapSecurityRepositoryImpl(
+            @Named("sensorStoreDirectory") Path directory,
+            AlarmStatus alarmStatus,
+            ArmingStatus armingStatus,
+            Storage storage,
+            Provider<Set<Sensor>> legacySensors) {
+        super(alarmStatus, armingStatus, storage, true);
+        Objects.requireNonNull(directory, "directory must not be null");
+        try {
+            boolean fresh = prepareDirectory(directory, RECORDS_FILE);
+            recordsFile = FileChannel.open(directory.resolve(RECORDS_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            namesFile = FileChannel.open(directory.resolve(NAMES_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            createOrOpen(fresh, legacySensors);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open sensor store in " + directory, e);
+        }
+    }
+
+    /**
+     * Store in direct memory only, starting with the given sensors; nothing is persisted but the statuses.
+     */
+    public OffHeapSecurityRepositoryImpl(Set<Sensor> sensors, AlarmStatus alarmStatus, ArmingStatus armingStatus, Storage storage) {
+        super(alarmStatus, armingStatus, storage, true);
+        Objects.requireNonNull(sensors, "sensors must not be null");
+        recordsFile = null;
+        namesFile = null;
+        try {
+            initialize(Math.max(INITIAL_SENSORS, sensors.size()));
+            appendAll(sensors);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create sensor store", e);
+        }
+    }
+
+    @Override
+    void create() throws IOException {
+        initialize(INITIAL_SENSORS);
+    }
+
+    private void initialize(int sensors) throws IOException {
+        records = region(recordsFile, HEADER_BYTES + (long) sensors * RECORD_BYTES);
+        names = region(namesFile, HEADER_BYTES + (long) sensors * 16);
+        records.putInt(0, RECORDS_MAGIC).putInt(4, VERSION).putInt(USED_OFFSET, 0);
+        namesEnd = HEADER_BYTES;
+        names.putInt(0, NAMES_MAGIC).putInt(4, VERSION).putInt(USED_OFFSET, namesEnd);
+        rebuildIndex(capacity());
+    }
+
+    @Override
+    void open() throws IOException {
+        records = region(recordsFile, recordsFile.size());
+        names = region(namesFile, namesFile.size());
+        if (records.capacity() < HEADER_BYTES || names.capacity() < HEADER_BYTES
+                || records.getInt(0) != RECORDS_MAGIC || records.getInt(4) != VERSION
+                || names.getInt(0) != NAMES_MAGIC || names.getInt(4) != VERSION) {
+            throw new IOException("Not a sensor store");
+        }
+        count = records.getInt(USED_OFFSET);
+        namesEnd = names.getInt(USED_OFFSET);
+        if (count < 0 || records.capacity() < HEADER_BYTES + (long) count * RECORD_BYTES
+                || namesEnd < HEADER_BYTES || namesEnd > names.capacity()) {
+            throw new IOException("Sensor store is truncated");
+        }
+        long liveNameBytes = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (isActive(slot)) {
+                activeCount++;
+            }
+            int name = nameOf(slot);
+            if (name != NO_NAME) {
+                liveNameBytes += Integer.BYTES + names.getInt(name);
+            }
+        }
+        deadNameBytes = namesEnd - HEADER_BYTES - liveNameBytes;
+        rebuildIndex(capacity());
+    }
+
+    /**
+     * A direct buffer, or the file mapped with this size; mapping a larger size extends the file.
+     */
+    private static ByteBuffer region(FileChannel file, long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Sensor store cannot grow beyond 2 GB per buffer");
+        }
+        return file == null ? ByteBuffer.allocateDirect((int) bytes) : file.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+    }
+
+    private static ByteBuffer grow(FileChannel file, ByteBuffer buffer, long bytes) throws IOException {
+        ByteBuffer grown = region(file, bytes);
+        if (file == null) {
+            grown.put(buffer.duplicate().clear()).clear();
+        }
+        return grown;
+    }
+
+    private int capacity() {
+        return (records.capacity() - HEADER_BYTES) / RECORD_BYTES;
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (needed <= capacity()) {
+            return;
+        }
+        int sensors = Math.max(needed, capacity() * 2);
+        records = grow(recordsFile, records, HEADER_BYTES + (long) sensors * RECORD_BYTES);
+        rebuildIndex(capacity());
+    }
+
+    private void ensureNameCapacity(int needed) throws IOException {
+        if ((long) namesEnd + needed <= names.capacity()) {
+            return;
+        }
+        // 已删除名称占用过半时先原地压缩, 否则扩容
+        // compact in place when removed names take half of the used bytes, grow otherwise
+        if (deadNameBytes * 2 >= namesEnd - HEADER_BYTES) {
+            compactNames();
+        }
+        if ((long) namesEnd + needed > names.capacity()) {
+            names = grow(namesFile, names, Math.max((long) namesEnd + needed, names.capacity() * 2L));
+        }
+    }
+
+    /**
+     * Move the live names to the front in the order they are stored, so no name overwrites one not yet moved.
+     */
+    private void compactNames() {
+        long[] order = new long[count];
+        int named = 0;
+        for (int slot = 0; slot < count; slot++) {
+            int name = nameOf(slot);
+            if (name != NO_NAME) {
+                order[named++] = (long) name << 32 | slot;
+            }
+        }
+        Arrays.sort(order, 0, named);
+        byte[] scratch = new byte[256];
+        int end = HEADER_BYTES;
+        for (int i = 0; i < named; i++) {
+            int from = (int) (order[i] >>> 32);
+            int slot = (int) order[i];
+            int bytes = Integer.BYTES + names.getInt(from);
+            if (from != end) {
+                if (scratch.length < bytes) {
+                    scratch = new byte[bytes];
+                }
+                names.get(from, scratch, 0, bytes);
+                names.put(end, scratch, 0, bytes);
+                records.putInt(recordAt(slot) + NAME_OFFSET, end);
+            }
+            end += bytes;
+        }
+        namesEnd = end;
+        deadNameBytes = 0;
+        names.putInt(USED_OFFSET, namesEnd);
+    }
+
+    private static int recordAt(int slot) {
+        return HEADER_BYTES + slot * RECORD_BYTES;
+    }
+
+    @Override
+    int sensorCount() {
+        return count;
+    }
+
+    @Override
+    long mostBits(int slot) {
+        return records.getLong(recordAt(slot));
+    }
+
+    @Override
+    long leastBits(int slot) {
+        return records.getLong(recordAt(slot) + Long.BYTES);
+    }
+
+    private int nameOf(int slot) {
+        return records.getInt(recordAt(slot) + NAME_OFFSET);
+    }
+
+    private byte flags(int slot) {
+        return records.get(recordAt(slot) + FLAGS_OFFSET);
+    }
+
+    private boolean isActive(int slot) {
+        return (flags(slot) & ACTIVE_FLAG) != 0;
+    }
+
+    @Override
+    void appendAll(Collection<Sensor> sensors) throws IOException {
+        List<Sensor> added = new ArrayList<>();
+        for (Sensor sensor : sensors) {
+            Objects.requireNonNull(sensor, "sensor must not be null");
+            if (slotOf(sensor.getSensorId()) < 0) {
+                added.add(sensor);
+            }
+        }
+        ensureCapacity(count + added.size());
+        for (Sensor sensor : added) {
+            String name = sensor.getName();
+            int nameRef = NO_NAME;
+            if (name != null) {
+                byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+                ensureNameCapacity(Integer.BYTES + encoded.length);
+                nameRef = namesEnd;
+                names.putInt(nameRef, encoded.length).put(nameRef + Integer.BYTES, encoded);
+                namesEnd += Integer.BYTES + encoded.length;
+            }
+            UUID sensorId = sensor.getSensorId();
+            boolean active = Boolean.TRUE.equals(sensor.getActive());
+            int record = recordAt(count);
+            records.putLong(record, sensorId.getMostSignificantBits())
+                    .putLong(record + Long.BYTES, sensorId.getLeastSignificantBits())
+                    .putInt(record + NAME_OFFSET, nameRef)
+                    .put(record + FLAGS_OFFSET, (byte) ((active ? ACTIVE_FLAG : 0) | sensor.getSensorType().ordinal() << 1));
+            if (active) {
+                activeCount++;
+            }
+            insert(count);
+            count++;
+        }
+        names.putInt(USED_OFFSET, namesEnd);
+        records.putInt(USED_OFFSET, count);
+    }
+
+    private void removeAt(int tablePosition) {
+        int slot = slotAt(tablePosition);
+        if (isActive(slot)) {
+            activeCount--;
+        }
+        int name = nameOf(slot);
+        if (name != NO_NAME) {
+            deadNameBytes += Integer.BYTES + names.getInt(name);
+        }
+        held.remove(new UUID(mostBits(slot), leastBits(slot)));
+        deleteAt(tablePosition);
+        int last = count - 1;
+        if (slot != last) {
+            // 用最后一条记录填补空位
+            // the last record fills the hole
+            moved(last, slot);
+            int from = recordAt(last);
+            int to = recordAt(slot);
+            records.putLong(to, records.getLong(from))
+                    .putLong(to + Long.BYTES, records.getLong(from + Long.BYTES))
+                    .putLong(to + NAME_OFFSET, records.getLong(from + NAME_OFFSET));
+        }
+        count--;
+        records.putInt(USED_OFFSET, count);
+    }
+
+    private void setActive(int slot, boolean active) {
+        if (isActive(slot) == active) {
+            return;
+        }
+        byte flags = flags(slot);
+        records.put(recordAt(slot) + FLAGS_OFFSET, (byte) (active ? flags | ACTIVE_FLAG : flags & ~ACTIVE_FLAG));
+        activeCount += active ? 1 : -1;
+    }
+
+    /**
+     * Store the active flag of a sensor and apply it to the object handed out for it, if any.
+     */
+    private void update(int slot, Sensor sensor) {
+        boolean active = Boolean.TRUE.equals(sensor.getActive());
+        setActive(slot, active);
+        Sensor live = live(sensor.getSensorId());
+        if (live != null && live != sensor) {
+            live.setActive(active);
+        }
+    }
+
+    private void expungeReleased() {
+        for (Reference<? extends Sensor> reference; (reference = released.poll()) != null; ) {
+            held.remove(((HeldSensor) reference).sensorId, reference);
+        }
+    }
+
+    private Sensor live(UUID sensorId) {
+        expungeReleased();
+        HeldSensor reference = held.get(sensorId);
+        return reference == null ? null : reference.get();
+    }
+
+    private void hold(Sensor sensor) {
+        expungeReleased();
+        held.put(sensor.getSensorId(), new HeldSensor(sensor, released));
+    }
+
+    private String readName(int slot) {
+        int name = nameOf(slot);
+        if (name == NO_NAME) {
+            return null;
+        }
+        byte[] encoded = new byte[names.getInt(name)];
+        names.get(name + Integer.BYTES, encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sensor object of a slot, created from the record if nobody holds it.
+     */
+    @Override
+    synchronized Sensor sensorAt(int slot) {
+        UUID sensorId = new UUID(mostBits(slot), leastBits(slot));
+        Sensor sensor = live(sensorId);
+        if (sensor == null) {
+            sensor = new Sensor.Builder(sensorId)
+                    .setName(readName(slot))
+                    .setSensorType(SENSOR_TYPES[flags(slot) >> 1])
+                    .build();
+            sensor.setActive(isActive(slot));
+            hold(sensor);
+        }
+        return sensor;
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "sensor must not be null");
+        try {
+            appendAll(List.of(sensor));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to add sensor " + sensor.getSensorId(), e);
+        }
+        if (live(sensor.getSensorId()) == null) {
+            hold(sensor);
+        }
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "sensor must not be null");
+        int position = find(sensor.getSensorId());
+        if (position >= 0) {
+            removeAt(position);
+        }
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "sensor must not be null");
+        int slot = slotOf(sensor.getSensorId());
+        if (slot < 0) {
+            addSensor(sensor);
+            return;
+        }
+        update(slot, sensor);
+    }
+
+    @Override
+    public synchronized void reloadSensorsAll(Set<Sensor> sensorSet) {
+        Objects.requireNonNull(sensorSet, "sensorSet must not be null");
+        Set<UUID> kept = new HashSet<>();
+        for (Sensor sensor : sensorSet) {
+            kept.add(sensor.getSensorId());
+        }
+        for (int slot = count - 1; slot >= 0; slot--) {
+            long most = mostBits(slot);
+            long least = leastBits(slot);
+            if (!kept.contains(new UUID(most, least))) {
+                removeAt(find(most, least));
+            }
+        }
+        List<Sensor> added = new ArrayList<>();
+        for (Sensor sensor : sensorSet) {
+            int slot = slotOf(sensor.getSensorId());
+            if (slot < 0) {
+                added.add(sensor);
+            } else {
+                update(slot, sensor);
+            }
+        }
+        try {
+            appendAll(added);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to reload sensors", e);
+        }
+    }
+
+    @Override
+    public synchronized boolean deactivateAllSensors() {
+        for (int slot = 0; slot < count && activeCount > 0; slot++) {
+            setActive(slot, false);
+        }
+        expungeReleased();
+        for (HeldSensor reference : held.values()) {
+            Sensor sensor = reference.get();
+            if (sensor != null) {
+                sensor.setActive(false);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized OptionalInt getActiveSensorCount(UUID excludedSensorId) {
+        int active = activeCount;
+        if (excludedSensorId != null) {
+            int slot = slotOf(excludedSensorId);
+            if (slot >= 0 && isActive(slot)) {
+                active--;
+            }
+        }
+        return OptionalInt.of(active);
+    }
+
+    /**
+     * Visit every stored record without creating Sensor objects or reading names.
+     */
+    public synchronized void forEachRecord(RecordVisitor visitor) {
+        Objects.requireNonNull(visitor, "visitor must not be null");
+        for (int slot = 0; slot < count; slot++) {
+            byte flags = flags(slot);
+            visitor.visit(mostBits(slot), leastBits(slot), SENSOR_TYPES[flags >> 1], (flags & ACTIVE_FLAG) != 0);
+        }
+    }
+
+    /**
+     * @return sensor objects currently held by someone, the rest exist only in the store
+     */
+    public synchronized int getHeldSensors() {
+        expungeReleased();
+        int live = 0;
+        for (HeldSensor reference : held.values()) {
+            if (reference.get() != null) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    /**
+     * @return bytes of direct or mapped memory held by the records, names and id table
+     */
+    public synchronized long getOffHeapBytes() {
+        return (long) records.capacity() + names.capacity() + indexBytes();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (recordsFile == null) {
+            return;
+        }
+        try {
+            ((MappedByteBuffer) records).force();
+            ((MappedByteBuffer) names).force();
+            recordsFile.close();
+            namesFile.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close sensor store", e);
+        }
+    }
+
+    private static final class HeldSensor extends WeakReference<Sensor> {
+        private final UUID sensorId;
+
+        HeldSensor(Sensor sensor, ReferenceQueue<Sensor> queue) {
+            super(sensor, queue);
+            this.sensorId = sensor.getSensorId();
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
 import java.util.Objects;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 /**
@@ -70,4 +71,13 @@ public class PreferencesStorage implements Storage{
         }
     }
 
+    @Override
+    public void flush() {
+        try {
+            prefs.flush();
+        } catch (BackingStoreException e) {
+            throw new RuntimeException("Failed to flush preferences", e);
+        }
+    }
+
 }
@@ -5,20 +5,33 @@ import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.inject.AbstractModule;
+import com.google.inject.Key;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.OptionalBinder;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
 import com.udacity.constant.enums.AlarmStatus;
 import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.image.service.ImageModule;
+import com.udacity.image.service.ImageService;
+import com.udacity.security.camera.CameraPipeline;
 import com.udacity.security.model.Sensor;
+import com.udacity.security.service.ImageScanExecutor;
+import com.udacity.security.service.LatestFrameScanMailbox;
+import com.udacity.security.service.ScanGatingPolicy;
 import com.udacity.security.service.SecurityService;
 import com.udacity.security.service.StatusListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Supplier;
 import java.util.prefs.Preferences;
 
 import static com.udacity.constant.common.Constants.*;
@@ -29,7 +42,8 @@ import static com.udacity.constant.common.Constants.*;
  *
  * 主要用于实现  Preferences -> Preferences.userNodeForPackage
  *             Gson ->  new Gson()
-*              SecurityRepository -> PretendDatabaseSecurityRepositoryImpl
+*              SecurityRepository -> PretendDatabaseSecurityRepositoryImpl, or IndexedSecurityRepositoryImpl for large fleets,
+*                                    or OffHeapSecurityRepositoryImpl for the largest sites
 *              Storage -> PreferencesStorage
  *
  */
@@ -43,14 +57,35 @@ public class SecurityModule extends AbstractModule {
         bind(Preferences.class).toInstance(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
         bind(Gson.class).toInstance(gsonBuilder());
 
-        bind(SecurityRepository.class).to(PretendDatabaseSecurityRepositoryImpl.class).in(Singleton.class);
+        // 大规模部署: -Dcatpoint.sensor.index=/var/lib/catpoint 启动时只加载传感器索引
+        // Large fleets: -Dcatpoint.sensor.index=/var/lib/catpoint loads only the sensor index at startup
+        // 最大规模站点: -Dcatpoint.sensor.offheap=/var/lib/catpoint 传感器状态保存在堆外内存映射文件中
+        // Largest sites: -Dcatpoint.sensor.offheap=/var/lib/catpoint keeps sensor state in memory-mapped files off the heap
+        String sensorIndex = System.getProperty(SENSOR_INDEX_DIRECTORY_PROPERTY);
+        String sensorStore = System.getProperty(SENSOR_STORE_DIRECTORY_PROPERTY);
+        if (sensorStore != null && !sensorStore.trim().isEmpty()) {
+            bind(Path.class).annotatedWith(Names.named("sensorStoreDirectory")).toInstance(Path.of(sensorStore.trim()));
+            bind(SecurityRepository.class).to(OffHeapSecurityRepositoryImpl.class).in(Singleton.class);
+        } else if (sensorIndex != null && !sensorIndex.trim().isEmpty()) {
+            bind(Path.class).annotatedWith(Names.named("sensorIndexDirectory")).toInstance(Path.of(sensorIndex.trim()));
+            bind(SecurityRepository.class).to(IndexedSecurityRepositoryImpl.class).in(Singleton.class);
+        } else {
+            bind(SecurityRepository.class).to(PretendDatabaseSecurityRepositoryImpl.class).in(Singleton.class);
+        }
         bind(SecurityService.class).in(Singleton.class);
+        bind(LatestFrameScanMailbox.class).in(Singleton.class);
+        bind(CameraPipeline.class).in(Singleton.class);
+        // 远程识别调用按当前布防状态排优先级
+        // Remote classifier calls are prioritized by the current arming status
+        OptionalBinder.newOptionalBinder(binder(), ImageModule.ARMING_STATUS).setBinding()
+                .to(Key.get(new TypeLiteral<Supplier<ArmingStatus>>() { }, Names.named("repositoryArmingStatus")));
 
     }
 
     private Gson gsonBuilder(){
+        // Sensor 通过 @JsonAdapter 自带序列化方式, 不再需要 InstanceCreator
+        // Sensor brings its own adapter through @JsonAdapter, no InstanceCreator is needed
         return new GsonBuilder()
-                .registerTypeAdapter(Sensor.class, new SensorInstanceCreator()) // 注册自定义的 InstanceCreator
                 .create();
     }
 
@@ -99,4 +134,29 @@ public class SecurityModule extends AbstractModule {
     Set<StatusListener> statusListeners() {
         return new HashSet<>();
     }
+
+    // 按布防状态决定扫描比例, 默认撤防不扫描, 在家布防扫描一半, 外出布防全部扫描
+    // Scan sampling per arming status: none when disarmed, half at home, every frame when away
+    @Provides
+    @Singleton
+    ScanGatingPolicy scanGatingPolicy() {
+        return new ScanGatingPolicy.Builder().build();
+    }
+
+    // 当前布防状态, 供 ImageModule 中远程识别的预算调度使用
+    // Current arming status for the call budget scheduler of the remote tier in ImageModule
+    @Provides
+    @Singleton
+    @Named("repositoryArmingStatus")
+    Supplier<ArmingStatus> repositoryArmingStatus(SecurityRepository securityRepository) {
+        return securityRepository::getArmingStatus;
+    }
+
+    // 初始化 SecurityService 类中的异步扫描线程池
+    // Initialize the bounded image scan pool used by SecurityService.processImageAsync
+    @Provides
+    @Singleton
+    ImageScanExecutor imageScanExecutor(ImageService imageService) {
+        return new ImageScanExecutor(imageService, SCAN_MAX_IN_FLIGHT, SCAN_TIMEOUT_MILLIS);
+    }
 }
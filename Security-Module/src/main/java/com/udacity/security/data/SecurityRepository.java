@@ -4,7 +4,9 @@ import com.udacity.constant.enums.AlarmStatus;
 import com.udacity.constant.enums.ArmingStatus;
 import com.udacity.security.model.Sensor;
 
+import java.util.OptionalInt;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -30,5 +32,22 @@ public interface SecurityRepository {
     // 获取当前系统的布防状态
     ArmingStatus getArmingStatus();
 
+    /**
+     * 已激活的传感器数量, 无需遍历 getSensors(); 仓库不维护该统计时返回空, 调用方遍历 getSensors()
+     * Number of active sensors without walking getSensors(); empty when the repository does not
+     * keep the count, callers then walk getSensors()
+     * @param excludedSensorId sensor left out of the count, null for none
+     */
+    default OptionalInt getActiveSensorCount(UUID excludedSensorId) {
+        return OptionalInt.empty();
+    }
+
+    /**
+     * 将所有传感器置为未激活; 返回 false 表示仓库不支持, 调用方改用 reloadSensorsAll
+     * Set every sensor inactive in place; false when unsupported, callers then use reloadSensorsAll
+     */
+    default boolean deactivateAllSensors() {
+        return false;
+    }
 
 }
@@ -0,0 +1,270 @@
+package com.udacity.security.data;
+
+import com.google.inject.Provider;
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.security.model.Sensor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Base of the repositories that keep sensors as numbered slots 0 .. count - 1 in their own store.
+ * 以槽位存储传感器的仓库的公共部分：id 索引、旧数据导入、传感器视图和报警/布防状态
+ *
+ * Subclasses own the slot storage; this class keeps the open-addressing id -> slot index on top
+ * of it, imports the sensors PretendDatabaseSecurityRepositoryImpl kept in Storage when a store
+ * is created, and exposes the slots as a read-only Set. Alarm and arming status are kept in
+ * Storage. Slot numbers must stay dense: a removed slot is filled by the last one, see
+ * {@link #moved(int, int)}.
+ */
+abstract class SlotSecurityRepository implements SecurityRepository, AutoCloseable {
+    private final Storage storage;
+    private AlarmStatus alarmStatus;
+    private ArmingStatus armingStatus;
+    private final boolean directIndex;
+    // 开放寻址 (线性探测) 的 id -> 槽位索引, 存储 槽位 + 1, 0 表示空
+    // open-addressing id -> slot index with linear probing, holds slot + 1 and 0 for empty
+    private IntBuffer table;
+    private int tableMask;
+    private final Set<Sensor> sensorView = new SensorView();
+
+    /**
+     * @param directIndex keep the id index in direct memory instead of on the heap
+     */
+    SlotSecurityRepository(AlarmStatus alarmStatus, ArmingStatus armingStatus, Storage storage, boolean directIndex) {
+        this.alarmStatus = Objects.requireNonNull(alarmStatus, "AlarmStatus must not be null");
+        this.armingStatus = Objects.requireNonNull(armingStatus, "ArmingStatus must not be null");
+        this.storage = Objects.requireNonNull(storage, "Storage must not be null");
+        this.directIndex = directIndex;
+    }
+
+    /**
+     * @return number of used slots
+     */
+    abstract int sensorCount();
+
+    abstract long mostBits(int slot);
+
+    abstract long leastBits(int slot);
+
+    /**
+     * Sensor object of a slot, called with the lock of the repository held.
+     */
+    abstract Sensor sensorAt(int slot);
+
+    /**
+     * Set up an empty store.
+     */
+    abstract void create() throws IOException;
+
+    /**
+     * Load an existing store.
+     */
+    abstract void open() throws IOException;
+
+    /**
+     * Append the sensors not stored yet.
+     */
+    abstract void appendAll(Collection<Sensor> sensors) throws IOException;
+
+    /**
+     * Create the directory if needed.
+     * @return whether the store file is missing, i.e. the store still has to be created
+     */
+    static boolean prepareDirectory(Path directory, String storeFile) throws IOException {
+        Files.createDirectories(directory);
+        return !Files.exists(directory.resolve(storeFile));
+    }
+
+    /**
+     * Open the existing store, or create it and import the legacy sensors.
+     */
+    final void createOrOpen(boolean created, Provider<Set<Sensor>> legacySensors) throws IOException {
+        Objects.requireNonNull(legacySensors, "legacySensors must not be null");
+        if (created) {
+            create();
+            appendAll(legacySensors.get());
+        } else {
+            open();
+        }
+    }
+
+    /**
+     * Replace the id index with one sized for the given number of slots, holding the used ones.
+     */
+    final void rebuildIndex(int capacity) {
+        // 负载因子不超过 0.5
+        // keeps the load factor at or below 0.5
+        int size = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) * 2;
+        table = directIndex
+                ? ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer()
+                : IntBuffer.allocate(size);
+        tableMask = size - 1;
+        for (int slot = 0; slot < sensorCount(); slot++) {
+            insert(slot);
+        }
+    }
+
+    /**
+     * @return bytes held by the id index
+     */
+    final long indexBytes() {
+        return (long) table.capacity() * Integer.BYTES;
+    }
+
+    private int home(long most, long least) {
+        int h = Long.hashCode(most ^ least);
+        return (h ^ (h >>> 16)) & tableMask;
+    }
+
+    /**
+     * Index a slot whose id is already stored.
+     */
+    final void insert(int slot) {
+        int i = home(mostBits(slot), leastBits(slot));
+        while (table.get(i) != 0) {
+            i = (i + 1) & tableMask;
+        }
+        table.put(i, slot + 1);
+    }
+
+    /**
+     * @return position in the index of the sensor with this id, -1 if there is none
+     */
+    final int find(long most, long least) {
+        for (int i = home(most, least); table.get(i) != 0; i = (i + 1) & tableMask) {
+            int slot = table.get(i) - 1;
+            if (mostBits(slot) == most && leastBits(slot) == least) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    final int find(UUID sensorId) {
+        return find(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+    }
+
+    final int slotAt(int position) {
+        return table.get(position) - 1;
+    }
+
+    /**
+     * @return slot of the sensor with this id, -1 if there is none
+     */
+    final int slotOf(UUID sensorId) {
+        int i = find(sensorId);
+        return i < 0 ? -1 : slotAt(i);
+    }
+
+    // 删除后把同一探测链上的后续条目前移, 不留墓碑
+    // backward-shift deletion: later entries of the probe chain move up, no tombstones
+    final void deleteAt(int i) {
+        table.put(i, 0);
+        for (int j = (i + 1) & tableMask; table.get(j) != 0; j = (j + 1) & tableMask) {
+            int slot = table.get(j) - 1;
+            int k = home(mostBits(slot), leastBits(slot));
+            boolean stays = j > i ? (k > i && k <= j) : (k > i || k <= j);
+            if (!stays) {
+                table.put(i, table.get(j));
+                table.put(j, 0);
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * Point the index entry of the sensor in slot {@code from} at slot {@code to}; call before
+     * the record is copied, while {@code from} still holds its id.
+     */
+    final void moved(int from, int to) {
+        table.put(find(mostBits(from), leastBits(from)), to + 1);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = Objects.requireNonNull(alarmStatus, "alarmStatus must not be null");
+        storage.put(Constants.ALARM_STATUS, alarmStatus.toString());
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = Objects.requireNonNull(armingStatus, "armingStatus must not be null");
+        storage.put(Constants.ARMING_STATUS, armingStatus.toString());
+    }
+
+    /**
+     * @return read-only view of all sensors; iterating it creates the sensors nobody holds yet
+     */
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensorView;
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Read-only, weakly consistent view: size and contains use the index, iteration creates sensors on demand.
+     */
+    private class SensorView extends AbstractSet<Sensor> {
+        @Override
+        public int size() {
+            synchronized (SlotSecurityRepository.this) {
+                return sensorCount();
+            }
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Sensor)) {
+                return false;
+            }
+            synchronized (SlotSecurityRepository.this) {
+                return find(((Sensor) o).getSensorId()) >= 0;
+            }
+        }
+
+        @Override
+        public Iterator<Sensor> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size();
+                }
+
+                @Override
+                public Sensor next() {
+                    synchronized (SlotSecurityRepository.this) {
+                        if (next >= sensorCount()) {
+                            throw new NoSuchElementException();
+                        }
+                        return sensorAt(next++);
+                    }
+                }
+            };
+        }
+    }
+}
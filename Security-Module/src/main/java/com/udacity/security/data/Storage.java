@@ -44,4 +44,10 @@ public interface Storage {
      */
     String get(String key, String defaultValue);
 
+    /**
+     * 将已写入的数据持久化到底层存储
+     * Force the stored data out to the backing store
+     */
+    void flush();
+
 }
@@ -0,0 +1,161 @@
+package com.udacity.security.model;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A camera of the site with its own cat detection state, scan schedule and last frame.
+ * 摄像头实体：各自的猫检测状态、扫描间隔和最新一帧
+ *
+ * The detection state is owned by SecurityService, which combines all cameras into the alarm
+ * decision. Cameras are runtime state and are not persisted.
+ * 检测状态由 SecurityService 维护并汇总为警报判断，摄像头不做持久化。
+ */
+public class Camera {
+    private final String cameraId;
+    // 两次扫描之间的最小间隔, 0 表示每帧都可以扫描
+    // minimum time between two scans of this camera, 0 scans every frame offered
+    private volatile long scanIntervalNanos;
+    private long lastScanStartNanos;
+    private boolean hasScanned;
+    // 视频流采样额度, 由 ScanGatingPolicy 在本对象的锁内读写
+    // sampling credit of this camera's feed, read and written by ScanGatingPolicy under this camera's lock
+    private double sampleCredit;
+
+    private boolean catDetected;
+    private boolean hasDecision;
+    private long lastDecisionCaptureNanos;
+
+    private volatile BufferedImage lastFrame;
+    private volatile ByteBuffer lastEncodedFrame;
+    private volatile long lastFrameCaptureNanos;
+
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder scheduleSkips = new LongAdder();
+
+    public Camera(String cameraId) {
+        this.cameraId = Objects.requireNonNull(cameraId, "cameraId must not be null");
+    }
+
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    public long getScanIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(scanIntervalNanos);
+    }
+
+    public void setScanIntervalMillis(long scanIntervalMillis) {
+        if (scanIntervalMillis < 0) {
+            throw new IllegalArgumentException("scanIntervalMillis must not be negative");
+        }
+        this.scanIntervalNanos = TimeUnit.MILLISECONDS.toNanos(scanIntervalMillis);
+    }
+
+    /**
+     * Claim a scan slot of the schedule.
+     * @param nowNanos System.nanoTime()
+     * @return false if the previous scan started less than the scan interval ago
+     */
+    public synchronized boolean tryStartScan(long nowNanos) {
+        if (scanIntervalNanos > 0 && hasScanned && nowNanos - lastScanStartNanos < scanIntervalNanos) {
+            scheduleSkips.increment();
+            return false;
+        }
+        hasScanned = true;
+        lastScanStartNanos = nowNanos;
+        scans.increment();
+        return true;
+    }
+
+    public synchronized double getSampleCredit() {
+        return sampleCredit;
+    }
+
+    public synchronized void setSampleCredit(double sampleCredit) {
+        this.sampleCredit = sampleCredit;
+    }
+
+    /**
+     * Record the frame most recently captured by this camera.
+     */
+    public void setLastFrame(BufferedImage frame, long captureNanos) {
+        this.lastFrame = frame;
+        this.lastEncodedFrame = null;
+        this.lastFrameCaptureNanos = captureNanos;
+    }
+
+    /**
+     * Record the encoded JPEG most recently captured by this camera.
+     */
+    public void setLastEncodedFrame(ByteBuffer encodedJpeg, long captureNanos) {
+        this.lastEncodedFrame = encodedJpeg;
+        this.lastFrame = null;
+        this.lastFrameCaptureNanos = captureNanos;
+    }
+
+    /**
+     * @return last decoded frame, null if none or the last frame is only available encoded
+     */
+    public BufferedImage getLastFrame() {
+        return lastFrame;
+    }
+
+    /**
+     * @return read-only view of the last encoded frame, null if the last frame was not encoded
+     */
+    public ByteBuffer getLastEncodedFrame() {
+        ByteBuffer encoded = lastEncodedFrame;
+        return encoded == null ? null : encoded.asReadOnlyBuffer();
+    }
+
+    public long getLastFrameCaptureNanos() {
+        return lastFrameCaptureNanos;
+    }
+
+    public synchronized boolean isCatDetected() {
+        return catDetected;
+    }
+
+    /**
+     * Apply a classifier answer for a frame of this camera unless a newer frame already decided.
+     * 应用识别结果，较旧帧的结果会被丢弃
+     * @return false if the answer is stale and was discarded
+     */
+    public synchronized boolean decide(boolean cat, long captureNanos) {
+        if (hasDecision && captureNanos - lastDecisionCaptureNanos < 0) {
+            return false;
+        }
+        hasDecision = true;
+        lastDecisionCaptureNanos = captureNanos;
+        catDetected = cat;
+        return true;
+    }
+
+    /**
+     * Set the cat state directly, without a frame behind it.
+     * @return the previous state
+     */
+    public synchronized boolean setCatDetected(boolean catDetected) {
+        boolean previous = this.catDetected;
+        this.catDetected = catDetected;
+        return previous;
+    }
+
+    public long getScans() {
+        return scans.sum();
+    }
+
+    public long getScheduleSkips() {
+        return scheduleSkips.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Camera{id=%s, catDetected=%s, scanIntervalMillis=%d, scans=%d, scheduleSkips=%d}",
+                cameraId, isCatDetected(), getScanIntervalMillis(), getScans(), getScheduleSkips());
+    }
+}
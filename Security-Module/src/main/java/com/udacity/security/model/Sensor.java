@@ -2,25 +2,58 @@ package com.udacity.security.model;
 
 
 import com.google.common.collect.ComparisonChain;
+import com.google.gson.annotations.JsonAdapter;
 import com.udacity.constant.enums.SensorType;
 
 import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * Sensor POJO. Needs to know how to sort itself for display purposes.
+ *
+ * Kept compact for large fleets: the id is held as two longs, the active flag and the type
+ * share one byte, and repeated names share one String. The JSON form is unchanged, see
+ * {@link SensorJsonAdapter}.
+ * 为大量传感器压缩内存: id 拆成两个 long, 激活状态和类型共用一个字节, 重复的名称共用同一个 String
  */
+@JsonAdapter(SensorJsonAdapter.class)
 public class Sensor implements Comparable<Sensor> {
-    private final UUID sensorId; // 传感器唯一标识
-    private final String name; // 传感器名称
-    private Boolean active; // 表示传感器是否处于激活状态
-    private final SensorType sensorType; // 传感器类型
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final int ACTIVE_FLAG = 1;
+    // 最近使用的名称缓存, 相同名称只保留一个 String; 按哈希覆盖, 不随传感器数量增长
+    // recently seen names, so equal names share one String; slots are overwritten by hash, it never grows
+    private static final String[] NAME_CACHE = new String[16384];
+
+    private final long idMostBits; // 传感器唯一标识的高 64 位
+    private final long idLeastBits; // 传感器唯一标识的低 64 位
+    private String name; // 传感器名称
+    // 按需加载名称, 例如从传感器索引仓库的名称文件读取; 不参与 JSON 序列化
+    // loads the name on first use, e.g. from the names file of an indexed repository; not serialized
+    private transient Supplier<String> nameLoader;
+    // 第 0 位表示是否激活, 其余位是传感器类型的序号
+    // bit 0 is the active flag, the bits above it hold the ordinal of the sensor type
+    private byte flags;
 
     private Sensor(Builder builder) {
-        this.name = builder.name;
-        this.sensorType = builder.sensorType;
-        this.sensorId = builder.sensorId;
-        this.active = Boolean.FALSE;
+        this.name = dedupe(builder.name);
+        this.nameLoader = builder.nameLoader;
+        this.flags = (byte) (builder.sensorType.ordinal() << 1);
+        this.idMostBits = builder.sensorId.getMostSignificantBits();
+        this.idLeastBits = builder.sensorId.getLeastSignificantBits();
+    }
+
+    private static String dedupe(String name) {
+        if (name == null) {
+            return null;
+        }
+        int slot = name.hashCode() & (NAME_CACHE.length - 1);
+        String cached = NAME_CACHE[slot];
+        if (name.equals(cached)) {
+            return cached;
+        }
+        NAME_CACHE[slot] = name;
+        return name;
     }
 
     // equals方法中只根据 sensorId来判断相等
@@ -29,61 +62,96 @@ public class Sensor implements Comparable<Sensor> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Sensor sensor = (Sensor) o;
-        return sensorId.equals(sensor.sensorId);
+        return idMostBits == sensor.idMostBits && idLeastBits == sensor.idLeastBits;
     }
 
-    // 只根据 sensorId 来计算 hashCode
+    // 只根据 sensorId 来计算 hashCode, 与 Objects.hash(sensorId) 结果相同
     @Override
     public int hashCode() {
-        return Objects.hash(sensorId);
+        return 31 + Long.hashCode(idMostBits ^ idLeastBits);
     }
 
     public String getName() {
-        return name;
+        String loaded = name;
+        if (loaded == null && nameLoader != null) {
+            loaded = dedupe(nameLoader.get());
+            name = loaded;
+            nameLoader = null;
+        }
+        return loaded;
     }
 
 
     public Boolean getActive() {
-        return active;
+        return (flags & ACTIVE_FLAG) != 0;
     }
 
+    /**
+     * @param active null is stored as inactive
+     */
     public void setActive(Boolean active) {
-        this.active = active;
+        if (Boolean.TRUE.equals(active)) {
+            flags |= ACTIVE_FLAG;
+        } else {
+            flags &= ~ACTIVE_FLAG;
+        }
     }
 
     public SensorType getSensorType() {
-        return sensorType;
+        return SENSOR_TYPES[flags >>> 1];
     }
 
+    /**
+     * @return the id; a new UUID object is created on every call
+     */
     public UUID getSensorId() {
-        return sensorId;
+        return new UUID(idMostBits, idLeastBits);
     }
 
 
     @Override
     public int compareTo(Sensor o) {
         // ComparisonChain 是 Guava 提供的一个工具类，简化了多属性的比较逻辑
+        // id 的比较与 UUID.compareTo 一致
         return ComparisonChain.start()
-                .compare(this.name, o.name)
-                .compare(this.sensorType.ordinal(), o.sensorType.ordinal()) // 按枚举的 enum常量的声明顺序
-                .compare(this.sensorId, o.sensorId)
+                .compare(this.getName(), o.getName())
+                .compare(this.flags >>> 1, o.flags >>> 1) // 按枚举的 enum常量的声明顺序
+                .compare(this.idMostBits, o.idMostBits)
+                .compare(this.idLeastBits, o.idLeastBits)
                 .result();
     }
 
     public static class Builder{
         private final UUID sensorId; // 传感器唯一标识
         private String name; // 传感器名称
+        private Supplier<String> nameLoader;
         private SensorType sensorType; // 传感器类型
 
         public Builder(){
             this.sensorId = UUID.randomUUID();
         }
 
+        /**
+         * Rebuild a stored sensor with its existing id.
+         * 使用已有的 id 重建存储的传感器
+         */
+        public Builder(UUID sensorId){
+            this.sensorId = Objects.requireNonNull(sensorId, "sensorId must not be null");
+        }
+
         public Builder setName(String name){
             this.name = name;
             return this;
         }
 
+        /**
+         * Load the name when it is first read instead of now.
+         */
+        public Builder setNameLoader(Supplier<String> nameLoader){
+            this.nameLoader = nameLoader;
+            return this;
+        }
+
         public Builder setSensorType(SensorType sensorType){
             this.sensorType = sensorType;
             return this;
@@ -0,0 +1,67 @@
+package com.udacity.security.model;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.udacity.constant.enums.SensorType;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Reads and writes a Sensor in the JSON form stored before it was made compact:
+ * {"sensorId":"…","name":"…","active":false,"sensorType":"DOOR"}.
+ * 保持传感器原有的 JSON 格式, 已保存的数据无需迁移; 也不再需要 Gson 通过 Unsafe 实例化对象
+ */
+final class SensorJsonAdapter extends TypeAdapter<Sensor> {
+    @Override
+    public void write(JsonWriter out, Sensor sensor) throws IOException {
+        out.beginObject();
+        out.name("sensorId").value(sensor.getSensorId().toString());
+        out.name("name").value(sensor.getName());
+        out.name("active").value(sensor.getActive());
+        out.name("sensorType").value(sensor.getSensorType().name());
+        out.endObject();
+    }
+
+    @Override
+    public Sensor read(JsonReader in) throws IOException {
+        UUID sensorId = null;
+        String name = null;
+        boolean active = false;
+        SensorType sensorType = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "sensorId":
+                    sensorId = UUID.fromString(in.nextString());
+                    break;
+                case "name":
+                    name = in.nextString();
+                    break;
+                case "active":
+                    active = in.nextBoolean();
+                    break;
+                case "sensorType":
+                    sensorType = SensorType.valueOf(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        if (sensorId == null || sensorType == null) {
+            throw new JsonParseException("Sensor needs a sensorId and a sensorType");
+        }
+        Sensor sensor = new Sensor.Builder(sensorId).setName(name).setSensorType(sensorType).build();
+        sensor.setActive(active);
+        return sensor;
+    }
+}
@@ -0,0 +1,173 @@
+package com.udacity.security.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.udacity.constant.common.Constants;
+import com.udacity.image.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs ImageService calls on a bounded worker pool so callers (the Swing EDT, ingest threads)
+ * never block on the classifier round trip.
+ * 在有界线程池中执行 ImageService 调用，调用方（Swing EDT、采集线程）不会因为识别请求而阻塞。
+ *
+ * At most {@code maxInFlight} scans are outstanding at once; further submissions fail fast with a
+ * RejectedExecutionException. Every scan has a deadline, and cancelling or timing out the returned
+ * future interrupts the worker that is running it; the scan counts as in flight until that worker
+ * has actually left the ImageService.
+ */
+public class ImageScanExecutor implements AutoCloseable {
+    private final ImageService imageService;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+
+    public ImageScanExecutor(ImageService imageService) {
+        this(imageService, Constants.SCAN_MAX_IN_FLIGHT, Constants.SCAN_TIMEOUT_MILLIS);
+    }
+
+    public ImageScanExecutor(ImageService imageService, int maxInFlight, long timeoutMillis) {
+        this(imageService,
+                Executors.newFixedThreadPool(maxInFlight, new ThreadFactoryBuilder()
+                        .setNameFormat("image-scan-%d")
+                        .setDaemon(true)
+                        .build()),
+                maxInFlight,
+                timeoutMillis);
+    }
+
+    public ImageScanExecutor(ImageService imageService, ExecutorService executor, int maxInFlight, long timeoutMillis) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+        this.imageService = Objects.requireNonNull(imageService, "ImageService must not be null");
+        this.executor = Objects.requireNonNull(executor, "ExecutorService must not be null");
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Submit an image to the ImageService without blocking the caller.
+     * 提交图像进行异步识别，不会阻塞调用线程
+     * @param image Image to scan
+     * @param confidenceThreshold Minimum confidence for the cat label
+     * @return future that completes with the classifier answer, or exceptionally on
+     *         rejection, timeout or failure
+     */
+    public CompletableFuture<Boolean> submit(BufferedImage image, float confidenceThreshold) {
+        return submit(() -> imageService.imageContainsCat(image, confidenceThreshold));
+    }
+
+    /**
+     * Submit an encoded JPEG frame, see {@link ImageService#encodedImageContainsCat(ByteBuffer, float)}.
+     * 提交已编码的 JPEG 帧进行异步识别
+     */
+    public CompletableFuture<Boolean> submitEncoded(ByteBuffer encodedJpeg, float confidenceThreshold) {
+        return submit(() -> imageService.encodedImageContainsCat(encodedJpeg, confidenceThreshold));
+    }
+
+    private CompletableFuture<Boolean> submit(Supplier<Boolean> scan) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many image scans in flight, limit is " + maxInFlight));
+        }
+        // scanned 由工作线程或超时结束; 调用方只看到 result
+        // scanned is completed by the worker or the timeout; callers only see result
+        CompletableFuture<Boolean> scanned = new CompletableFuture<>();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // 许可在工作线程真正退出时才归还: 超时或取消后仍卡在 ImageService 中的任务继续占用许可,
+        // 新的扫描被拒绝, 而不是排在卡住的线程后面无限堆积
+        // The permit is returned when the worker actually leaves the scan. A worker still stuck in
+        // the ImageService after a timeout or cancel keeps its permit, so new scans are rejected
+        // instead of queueing without bound behind it
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        final Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    // 开始前已被取消, 许可已归还
+                    // cancelled before it started, the permit is already back
+                    return;
+                }
+                Boolean cat = null;
+                Throwable failure = null;
+                try {
+                    cat = scan.get();
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    // 在完成结果之前归还许可, 使调用方在回调中立即提交下一次扫描时不会被拒绝
+                    // Release before completing, so a caller that submits the next scan from its
+                    // completion callback is not rejected
+                    inFlight.release();
+                }
+                if (failure == null) {
+                    scanned.complete(cat);
+                } else {
+                    scanned.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        Runnable abandon = () -> {
+            if (claimed.compareAndSet(false, true)) {
+                // 任务还未开始, 以后也不会运行
+                // the task has not started and never will
+                inFlight.release();
+            }
+            // 中断正在执行的识别任务, 它退出时归还许可
+            // interrupt a running worker, it returns the permit when it leaves
+            task.cancel(true);
+        };
+        scanned.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((cat, t) -> {
+            if (t != null) {
+                abandon.run();
+                result.completeExceptionally(t);
+            } else {
+                result.complete(cat);
+            }
+        });
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) {
+                abandon.run();
+                scanned.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return number of scans holding a permit: waiting on the ImageService, including workers
+     *         still stuck in it after their scan timed out or was cancelled
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
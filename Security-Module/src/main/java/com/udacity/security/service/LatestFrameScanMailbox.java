@@ -0,0 +1,238 @@
+package com.udacity.security.service;
+
+import com.google.inject.Inject;
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-camera single-slot mailbox in front of {@link SecurityService#processCameraFrameAsync(String, BufferedImage, long)}.
+ * 每个摄像头一个单槽邮箱，位于 SecurityService 扫描之前。
+ *
+ * Each camera has at most one scan in flight and at most one frame waiting. A new frame replaces
+ * any frame that has not been scanned yet, so when frames arrive faster than the classifier can
+ * answer the alarm always follows the freshest frame instead of working through a backlog.
+ * 新的帧会替换尚未扫描的帧，警报状态始终基于最新的帧，而不会积压。
+ *
+ * Cameras share the scan workers round robin: a camera with a waiting frame joins the back of a
+ * ready queue, and a camera whose scan completes goes to the back again if it has another frame.
+ * A camera producing 30 frames a second gets no more scans than one producing 1 while both have
+ * frames waiting, and the cost per frame does not depend on the number of cameras.
+ * 摄像头之间轮流使用扫描线程，高帧率摄像头不会挤占其他摄像头。
+ *
+ * The mailbox uses {@link SecurityService#getMaxCameraScans()} workers, leaving
+ * {@link Constants#SCAN_RESERVED_FOR_MANUAL} of the ImageScanExecutor free for manual scans.
+ */
+public class LatestFrameScanMailbox {
+    private final Logger log = LoggerFactory.getLogger(LatestFrameScanMailbox.class);
+    private final SecurityService securityService;
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>();
+    // 有待扫描帧、等待扫描线程的摄像头, 每个摄像头最多出现一次
+    // cameras with a waiting frame in line for a scan worker, each at most once
+    private final ConcurrentLinkedQueue<Slot> ready = new ConcurrentLinkedQueue<>();
+    private final Semaphore scanPermits;
+
+    private final LongAdder framesOffered = new LongAdder();
+    // frames replaced in the mailbox before they were scanned
+    private final LongAdder framesDropped = new LongAdder();
+    // frames scanned, but a newer frame had already decided the alarm
+    private final LongAdder staleResults = new LongAdder();
+    // frames the ScanGatingPolicy did not sample
+    private final LongAdder gatedFrames = new LongAdder();
+    private final LongAdder scanFailures = new LongAdder();
+    // capture -> alarm decision, only for results that were applied
+    private final LatencyHistogram captureToDecision = new LatencyHistogram();
+
+    @Inject
+    public LatestFrameScanMailbox(SecurityService securityService) {
+        this.securityService = Objects.requireNonNull(securityService, "SecurityService must not be null");
+        int cameraScans = securityService.getMaxCameraScans();
+        if (cameraScans <= 0) {
+            throw new IllegalArgumentException("ImageScanExecutor needs more than "
+                    + Constants.SCAN_RESERVED_FOR_MANUAL + " workers to scan camera feeds");
+        }
+        // 摄像头扫描少占用执行器的工作线程, 手动扫描不会因摄像头繁忙被拒绝
+        // fewer permits than executor workers, so a manual scan is never rejected while the feeds are busy
+        this.scanPermits = new Semaphore(cameraScans);
+    }
+
+    /**
+     * Offer a freshly captured frame. Never blocks.
+     * 提交一帧新图像，不会阻塞
+     * @param cameraId camera the frame comes from
+     * @param frame captured image
+     */
+    public void offer(String cameraId, BufferedImage frame) {
+        offer(cameraId, frame, System.nanoTime());
+    }
+
+    public void offer(String cameraId, BufferedImage frame, long captureNanos) {
+        offer(cameraId, new PendingFrame(frame, null, captureNanos));
+    }
+
+    /**
+     * Offer an encoded JPEG frame, it is scanned without being decoded here.
+     * 提交已编码的 JPEG 帧
+     */
+    public void offerEncoded(String cameraId, ByteBuffer encodedJpeg, long captureNanos) {
+        offer(cameraId, new PendingFrame(null, encodedJpeg, captureNanos));
+    }
+
+    private void offer(String cameraId, PendingFrame frame) {
+        Objects.requireNonNull(cameraId, "cameraId must not be null");
+        framesOffered.increment();
+        Slot slot = slots.computeIfAbsent(cameraId, Slot::new);
+        if (slot.pending.getAndSet(frame) != null) {
+            framesDropped.increment();
+        }
+        enqueueIfIdle(slot);
+        dispatch();
+    }
+
+    /**
+     * Put the camera in line unless it is already in line or scanning.
+     */
+    private void enqueueIfIdle(Slot slot) {
+        if (slot.pending.get() != null && slot.active.compareAndSet(false, true)) {
+            ready.add(slot);
+        }
+    }
+
+    /**
+     * Start scans for cameras at the front of the line while scan workers are free.
+     * The completion of each scan calls back in here.
+     */
+    private void dispatch() {
+        while (scanPermits.tryAcquire()) {
+            Slot slot = ready.poll();
+            PendingFrame next = slot == null ? null : slot.pending.getAndSet(null);
+            if (next == null) {
+                scanPermits.release();
+                if (slot != null) {
+                    slot.active.set(false);
+                    enqueueIfIdle(slot);
+                }
+                // 另一个线程可能在我们持有许可时放入了摄像头
+                // another thread may have queued a camera while this one held the permit
+                if (ready.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            CompletableFuture<ScanResult> scan = next.encoded != null
+                    ? securityService.processEncodedCameraFrameAsync(slot.cameraId, next.encoded, next.captureNanos)
+                    : securityService.processCameraFrameAsync(slot.cameraId, next.frame, next.captureNanos);
+            scan.whenComplete((result, t) -> onScanComplete(slot, result, t));
+        }
+    }
+
+    private void onScanComplete(Slot slot, ScanResult result, Throwable t) {
+        if (t != null) {
+            scanFailures.increment();
+            log.warn("Camera frame scan failed", t);
+        } else if (!result.isScanned()) {
+            gatedFrames.increment();
+        } else if (result.isApplied()) {
+            captureToDecision.record(result.getCompletedNanos() - result.getCaptureNanos());
+        } else {
+            staleResults.increment();
+        }
+        scanPermits.release();
+        // 还有新帧的摄像头排到队尾, 让其他摄像头先扫描
+        // a camera with another frame goes to the back of the line, behind the other cameras
+        if (slot.pending.get() != null) {
+            ready.add(slot);
+        } else {
+            slot.active.set(false);
+            enqueueIfIdle(slot);
+        }
+        dispatch();
+    }
+
+    /**
+     * Drop the camera's waiting frame and forget the camera.
+     */
+    public void removeCamera(String cameraId) {
+        Slot slot = slots.remove(cameraId);
+        if (slot != null) {
+            slot.pending.set(null);
+        }
+        securityService.removeCamera(cameraId);
+    }
+
+    /**
+     * @return cameras with a frame waiting for a scan worker
+     */
+    public int getReadyCameras() {
+        return ready.size();
+    }
+
+    public long getFramesOffered() {
+        return framesOffered.sum();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    public long getStaleResults() {
+        return staleResults.sum();
+    }
+
+    public long getGatedFrames() {
+        return gatedFrames.sum();
+    }
+
+    public long getScanFailures() {
+        return scanFailures.sum();
+    }
+
+    public LatencyHistogram getCaptureToDecision() {
+        return captureToDecision;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatestFrameScanMailbox{offered=%d, dropped=%d, stale=%d, gated=%d, failed=%d, captureToDecision=[%s]}",
+                getFramesOffered(), getFramesDropped(), getStaleResults(), getGatedFrames(), getScanFailures(), captureToDecision);
+    }
+
+    private static final class Slot {
+        private final String cameraId;
+        private final AtomicReference<PendingFrame> pending = new AtomicReference<>();
+        // 在就绪队列中或正在扫描
+        // in the ready queue or scanning
+        private final AtomicBoolean active = new AtomicBoolean(false);
+
+        private Slot(String cameraId) {
+            this.cameraId = cameraId;
+        }
+    }
+
+    private static final class PendingFrame {
+        // 二者只有一个非空
+        // exactly one of frame / encoded is set
+        private final BufferedImage frame;
+        private final ByteBuffer encoded;
+        private final long captureNanos;
+
+        private PendingFrame(BufferedImage frame, ByteBuffer encoded, long captureNanos) {
+            this.frame = frame;
+            this.encoded = encoded;
+            this.captureNanos = captureNanos;
+        }
+    }
+}
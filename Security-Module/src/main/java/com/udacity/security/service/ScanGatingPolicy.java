@@ -0,0 +1,128 @@
+package com.udacity.security.service;
+
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.security.model.Camera;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a camera frame is worth a classifier call in the current arming status.
+ * 根据布防状态决定是否扫描图像以及采样比例
+ *
+ * Each ArmingStatus has a sampling rate between 0 (never scan) and 1 (scan every frame).
+ * Sampling is deterministic and per camera: with rate 0.25 exactly every fourth frame of each
+ * camera's feed is scanned, however the feeds interleave. A sampled frame that the camera's scan
+ * interval turns away keeps its credit for the camera's next frame.
+ * A cat only raises the alarm while armed, so scanning while DISARMED is mostly wasted work.
+ * Only continuous camera feeds are gated; a scan the user asks for always runs.
+ */
+public class ScanGatingPolicy {
+    private final Map<ArmingStatus, Double> sampleRates;
+    private final Map<ArmingStatus, LongAdder> scanned = new EnumMap<>(ArmingStatus.class);
+    private final Map<ArmingStatus, LongAdder> skipped = new EnumMap<>(ArmingStatus.class);
+
+    private ScanGatingPolicy(Map<ArmingStatus, Double> sampleRates) {
+        this.sampleRates = new EnumMap<>(sampleRates);
+        for (ArmingStatus status : ArmingStatus.values()) {
+            scanned.put(status, new LongAdder());
+            skipped.put(status, new LongAdder());
+        }
+    }
+
+    /**
+     * Scan every frame in every state, the behaviour before gating existed.
+     */
+    public static ScanGatingPolicy alwaysScan() {
+        return new Builder()
+                .setSampleRate(ArmingStatus.DISARMED, 1.0)
+                .setSampleRate(ArmingStatus.ARMED_HOME, 1.0)
+                .setSampleRate(ArmingStatus.ARMED_AWAY, 1.0)
+                .build();
+    }
+
+    /**
+     * Gate a frame of a camera feed and, if it is sampled, claim the camera's scan slot.
+     * 每个摄像头各自累计采样额度, 额度达到 1 且扫描间隔已到时才扫描
+     * @param camera camera the frame comes from; its sampling credit is kept on the camera
+     * @param armingStatus current arming status, an unknown (null) status is never gated
+     * @param nowNanos System.nanoTime()
+     * @return true if the frame should be sent to the classifier
+     */
+    public boolean shouldScan(Camera camera, ArmingStatus armingStatus, long nowNanos) {
+        Objects.requireNonNull(camera, "camera must not be null");
+        if (armingStatus == null) {
+            return camera.tryStartScan(nowNanos);
+        }
+        double rate = sampleRates.get(armingStatus);
+        synchronized (camera) {
+            double next = camera.getSampleCredit() + rate;
+            if (rate <= 0.0 || next < 1.0) {
+                camera.setSampleCredit(Math.min(next, 1.0));
+                skipped.get(armingStatus).increment();
+                return false;
+            }
+            if (!camera.tryStartScan(nowNanos)) {
+                // 扫描间隔未到: 额度保留给该摄像头的下一帧, 但不累积超过一帧
+                // turned away by the scan interval: the credit waits for this camera's next frame,
+                // without piling up beyond one frame
+                camera.setSampleCredit(1.0);
+                return false;
+            }
+            camera.setSampleCredit(next - 1.0);
+            scanned.get(armingStatus).increment();
+            return true;
+        }
+    }
+
+    public double getSampleRate(ArmingStatus armingStatus) {
+        return sampleRates.get(armingStatus);
+    }
+
+    public long getScanned(ArmingStatus armingStatus) {
+        return scanned.get(armingStatus).sum();
+    }
+
+    public long getSkipped(ArmingStatus armingStatus) {
+        return skipped.get(armingStatus).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ScanGatingPolicy{");
+        for (ArmingStatus status : ArmingStatus.values()) {
+            if (sb.length() > "ScanGatingPolicy{".length()) {
+                sb.append(", ");
+            }
+            sb.append(String.format("%s=[rate=%.2f, scanned=%d, skipped=%d]",
+                    status, getSampleRate(status), getScanned(status), getSkipped(status)));
+        }
+        return sb.append('}').toString();
+    }
+
+    public static class Builder {
+        private final Map<ArmingStatus, Double> sampleRates = new EnumMap<>(ArmingStatus.class);
+
+        public Builder() {
+            sampleRates.put(ArmingStatus.DISARMED, Constants.SCAN_RATE_DISARMED);
+            sampleRates.put(ArmingStatus.ARMED_HOME, Constants.SCAN_RATE_ARMED_HOME);
+            sampleRates.put(ArmingStatus.ARMED_AWAY, Constants.SCAN_RATE_ARMED_AWAY);
+        }
+
+        public Builder setSampleRate(ArmingStatus armingStatus, double rate) {
+            Objects.requireNonNull(armingStatus, "ArmingStatus must not be null");
+            if (rate < 0.0 || rate > 1.0) {
+                throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+            }
+            sampleRates.put(armingStatus, rate);
+            return this;
+        }
+
+        public ScanGatingPolicy build() {
+            return new ScanGatingPolicy(sampleRates);
+        }
+    }
+}
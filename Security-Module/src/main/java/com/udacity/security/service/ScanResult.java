@@ -0,0 +1,67 @@
+package com.udacity.security.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a single asynchronous image scan.
+ * 一次异步图像扫描的结果
+ */
+public final class ScanResult {
+    private final boolean catDetected;
+    // false if a newer frame had already decided the cat status, so this result was discarded
+    private final boolean applied;
+    // false if the ScanGatingPolicy skipped the frame without calling the classifier
+    private final boolean scanned;
+    // System.nanoTime() when the frame was handed to the SecurityService
+    private final long captureNanos;
+    // System.nanoTime() when the result was applied (or discarded)
+    private final long completedNanos;
+
+    public ScanResult(boolean catDetected, boolean applied, long captureNanos, long completedNanos) {
+        this(catDetected, applied, true, captureNanos, completedNanos);
+    }
+
+    private ScanResult(boolean catDetected, boolean applied, boolean scanned, long captureNanos, long completedNanos) {
+        this.catDetected = catDetected;
+        this.applied = applied;
+        this.scanned = scanned;
+        this.captureNanos = captureNanos;
+        this.completedNanos = completedNanos;
+    }
+
+    public boolean isCatDetected() {
+        return catDetected;
+    }
+
+    /**
+     * Result of a frame that was not scanned, the cat status is left unchanged.
+     */
+    public static ScanResult skipped(long captureNanos, long completedNanos) {
+        return new ScanResult(false, false, false, captureNanos, completedNanos);
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public boolean isScanned() {
+        return scanned;
+    }
+
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    public long getCompletedNanos() {
+        return completedNanos;
+    }
+
+    public long getLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(completedNanos - captureNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "ScanResult{catDetected=" + catDetected + ", applied=" + applied + ", scanned=" + scanned + ", latencyMillis=" + getLatencyMillis() + '}';
+    }
+}
@@ -2,17 +2,27 @@ package com.udacity.security.service;
 
 
 import com.google.inject.Inject;
+import com.udacity.constant.common.Constants;
 import com.udacity.constant.enums.AlarmStatus;
 import com.udacity.constant.enums.ArmingStatus;
 import com.udacity.image.service.ImageService;
 import com.udacity.security.data.SecurityRepository;
+import com.udacity.security.model.Camera;
 import com.udacity.security.model.Sensor;
 
 
 import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -22,22 +32,75 @@ import java.util.stream.Collectors;
  * class you will be writing unit tests for.
  * 接收有关安全系统更改的信息的服务。负责将更新转发到存储库并做出有关更改系统状态的任何决定。
  * 这个类应该包含我们系统的大部分业务逻辑，它是您将为其编写单元测试的课程。
+ *
+ * Scan results are applied on the scan threads while the UI changes the same state on the EDT, so
+ * every state transition and every read of the sensors runs under the monitor of this service.
+ * Listeners are notified with the monitor held and must not block on another thread.
+ * 扫描结果在扫描线程上应用, 界面在 EDT 上修改同一状态, 所有状态变化都在本服务的锁内串行执行。
  */
-public class SecurityService {
+public class SecurityService implements AutoCloseable {
 
     private final ImageService imageService;
     // 数据存储层，负责持久化存储和读取系统状态（如警报状态、布防状态、传感器信息等）
     private final SecurityRepository securityRepository;
     // 状态监听器的集合，用于在警报状态或猫检测结果改变时通知外部组件
     private final Set<StatusListener> statusListeners;
-    // Is a cat detected
-    private boolean catDetected=false;
+    // 异步扫描图像的有界线程池
+    // Bounded worker pool used by processImageAsync
+    private final ImageScanExecutor imageScanExecutor;
+    // 根据布防状态决定摄像头视频流的帧是否扫描, 手动扫描不受影响
+    // Decides per arming status whether a frame of a camera feed is scanned at all; manual scans always run
+    private final ScanGatingPolicy scanGatingPolicy;
+    // 每个摄像头各自的检测状态, 未指定摄像头的调用使用默认摄像头
+    // Cameras by id, each with its own cat state; calls without a camera id use the default camera
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+    // 当前看到猫的摄像头数量, 随每个结果增量更新, "任一摄像头看到猫" 无需遍历所有摄像头
+    // Number of cameras currently seeing a cat, kept up to date per result so that
+    // "any camera sees a cat" never walks the cameras
+    private int camerasSeeingCat;
+    // 由本服务创建的线程池在 close() 时关闭, 注入的线程池由创建者关闭
+    // an executor created here is shut down by close(), an injected one belongs to whoever created it
+    private final boolean ownsImageScanExecutor;
 
-    @Inject
+    /**
+     * Service with its own scan executor; call {@link #close()} to stop its threads.
+     */
     public SecurityService(SecurityRepository securityRepository, ImageService imageService, Set<StatusListener> statusListeners) {
+        this(securityRepository, imageService, statusListeners, new ImageScanExecutor(imageService),
+                ScanGatingPolicy.alwaysScan(), true);
+    }
+
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService,
+                           Set<StatusListener> statusListeners, ImageScanExecutor imageScanExecutor) {
+        this(securityRepository, imageService, statusListeners, imageScanExecutor, ScanGatingPolicy.alwaysScan());
+    }
+
+    @Inject
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService,
+                           Set<StatusListener> statusListeners, ImageScanExecutor imageScanExecutor,
+                           ScanGatingPolicy scanGatingPolicy) {
+        this(securityRepository, imageService, statusListeners, imageScanExecutor, scanGatingPolicy, false);
+    }
+
+    private SecurityService(SecurityRepository securityRepository, ImageService imageService,
+                            Set<StatusListener> statusListeners, ImageScanExecutor imageScanExecutor,
+                            ScanGatingPolicy scanGatingPolicy, boolean ownsImageScanExecutor) {
         this.securityRepository = Objects.requireNonNull(securityRepository,"SecurityRepository must not be null");
         this.imageService = Objects.requireNonNull(imageService,"ImageService must not be null");
-        this.statusListeners = Objects.requireNonNull(statusListeners,"Set<StatusListener> must not be null");;
+        this.statusListeners = Objects.requireNonNull(statusListeners,"Set<StatusListener> must not be null");
+        this.imageScanExecutor = Objects.requireNonNull(imageScanExecutor,"ImageScanExecutor must not be null");
+        this.scanGatingPolicy = Objects.requireNonNull(scanGatingPolicy,"ScanGatingPolicy must not be null");
+        this.ownsImageScanExecutor = ownsImageScanExecutor;
+    }
+
+    /**
+     * Stop the scan executor if this service created it.
+     */
+    @Override
+    public void close() {
+        if (ownsImageScanExecutor) {
+            imageScanExecutor.close();
+        }
     }
 
     /**
@@ -47,11 +110,11 @@ public class SecurityService {
      * 可更新两者的警报状态。
      * @param armingStatus
      */
-    public void setArmingStatus(ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
         // 如果状态变为撤防（DISARMED），直接将警报状态设为无警报（NO_ALARM）
         if(armingStatus == ArmingStatus.DISARMED) {
             setAlarmStatus(AlarmStatus.NO_ALARM); // 撤防时取消警报
-            setCatDetected(false);
+            clearCatDetections();
         }else if (armingStatus == ArmingStatus.ARMED_HOME){
             if (isCatDetected()){
                 // 如果图片有猫, 直接警报
@@ -74,21 +137,25 @@ public class SecurityService {
      *  根据是否处理报警状态变化的内部方法
      * the camera currently shows a cat.
      *  相机当前显示一只猫
+     * @param camera Camera whose frame was scanned
      * @param cat True if a cat is detected, otherwise false.
      *             如果检测到猫则为 true，否则为 false。
      */
-    private void catDetected(Boolean cat) {
-        Objects.requireNonNull(cat, "cat must not be null");
+    private synchronized void catDetected(Camera camera, boolean cat) {
         // 布防状态下检测到猫，触发警报
         if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
             setAlarmStatus(AlarmStatus.ALARM);
-        } else if (!cat && isEverySensorInactive()) {
-            // 无猫 且 没有传感器激活
-            // No cats and no all sensors activated
+        } else if (!isCatDetected() && isEverySensorInactive()) {
+            // 所有摄像头都没有猫 且 没有传感器激活
+            // No camera sees a cat and no sensor is active
             setAlarmStatus(AlarmStatus.NO_ALARM);
         }
         // 通知监听器猫检测结果
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+        boolean anyCat = isCatDetected();
+        statusListeners.forEach(sl -> {
+            sl.cameraCatDetected(camera.getCameraId(), cat);
+            sl.catDetected(anyCat);
+        });
     }
 
     /**
@@ -112,7 +179,7 @@ public class SecurityService {
      * 改变系统的报警状态并通知DisplayPanel 的监听者。
      * @param status
      */
-    public void setAlarmStatus(AlarmStatus status) {
+    public synchronized void setAlarmStatus(AlarmStatus status) {
         // 更新存储库中的警报状态
         securityRepository.setAlarmStatus(status);
         // notify listeners
@@ -150,7 +217,7 @@ public class SecurityService {
      * @param sensor
      * @param active
      */
-    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+    public synchronized void changeSensorActivationStatus(Sensor sensor, Boolean active) {
         // 如果当前状态是 ALARM，传感器状态仍需更新，但警报状态不改变
         // If the current status is ALARM, the sensor status still needs to be updated,
         // but the alarm status does not change
@@ -196,26 +263,195 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 70.0f));
+        long captureNanos = System.nanoTime();
+        Camera camera = addCamera(Constants.DEFAULT_CAMERA_ID);
+        camera.setLastFrame(currentCameraImage, captureNanos);
+        applyScanResult(camera, imageService.imageContainsCat(currentCameraImage, Constants.CAT_CONFIDENCE_THRESHOLD), captureNanos);
+    }
+
+    /**
+     * Asynchronous variant of {@link #processImage(BufferedImage)}. The scan runs on the
+     * ImageScanExecutor and the alarm status is updated when it completes, so the caller is never
+     * blocked by the classifier round trip.
+     * processImage 的异步版本，识别完成后才更新警报状态，调用方不会被阻塞。
+     * Cancelling the returned future cancels the underlying scan.
+     * @param frame Image to scan
+     * @return future completing with the ScanResult once the alarm status has been updated
+     */
+    public CompletableFuture<ScanResult> processImageAsync(BufferedImage frame) {
+        return processImageAsync(Constants.DEFAULT_CAMERA_ID, frame, System.nanoTime());
+    }
+
+    /**
+     * Scan a frame captured at {@code captureNanos}. If a newer frame has already decided the cat
+     * status by the time this scan completes, the result is discarded and
+     * {@link ScanResult#isApplied()} is false.
+     * 如果在本次扫描完成前，更新的帧已经决定了猫检测状态，则丢弃本次结果。
+     * @param frame Image to scan
+     * @param captureNanos System.nanoTime() at which the frame was captured
+     */
+    public CompletableFuture<ScanResult> processImageAsync(BufferedImage frame, long captureNanos) {
+        return processImageAsync(Constants.DEFAULT_CAMERA_ID, frame, captureNanos);
+    }
+
+    /**
+     * Scan a frame of the given camera, registering the camera on its first frame. Only the
+     * camera's own cat state is replaced; the alarm follows whether any camera sees a cat.
+     * This is a manual scan: it runs in every arming status, so a cat seen while disarmed is
+     * already known when the system is armed.
+     * 扫描指定摄像头的一帧，只更新该摄像头的猫检测状态，警报取决于是否有任一摄像头看到猫。
+     * 手动扫描在任何布防状态下都会执行。
+     * @param cameraId camera the frame comes from
+     * @param frame Image to scan
+     * @param captureNanos System.nanoTime() at which the frame was captured
+     */
+    public CompletableFuture<ScanResult> processImageAsync(String cameraId, BufferedImage frame, long captureNanos) {
+        Camera camera = addCamera(cameraId);
+        camera.setLastFrame(frame, captureNanos);
+        return applyWhenScanned(camera, imageScanExecutor.submit(frame, Constants.CAT_CONFIDENCE_THRESHOLD), captureNanos);
+    }
+
+    /**
+     * Scan a frame of a continuous camera feed. The frame is only scanned if the
+     * ScanGatingPolicy samples it and the camera's scan interval has passed; otherwise the future
+     * completes immediately with {@link ScanResult#isScanned()} false.
+     * 扫描摄像头视频流中的一帧，受布防状态采样和摄像头扫描间隔限制。
+     * @param cameraId camera the frame comes from
+     * @param frame Image to scan
+     * @param captureNanos System.nanoTime() at which the frame was captured
+     */
+    public CompletableFuture<ScanResult> processCameraFrameAsync(String cameraId, BufferedImage frame, long captureNanos) {
+        Camera camera = addCamera(cameraId);
+        camera.setLastFrame(frame, captureNanos);
+        if (!shouldScanFeed(camera)) {
+            return CompletableFuture.completedFuture(ScanResult.skipped(captureNanos, System.nanoTime()));
+        }
+        return applyWhenScanned(camera, imageScanExecutor.submit(frame, Constants.CAT_CONFIDENCE_THRESHOLD), captureNanos);
+    }
+
+    /**
+     * Scan an encoded JPEG frame (e.g. from an MJPEG stream) without decoding it first; the
+     * ImageService decides whether it needs to decode. Same staleness rules as
+     * {@link #processImageAsync(BufferedImage, long)}.
+     * 扫描已编码的 JPEG 帧，是否需要解码由 ImageService 决定
+     * @param encodedJpeg JPEG bytes between position and limit, must not be modified afterwards
+     * @param captureNanos System.nanoTime() at which the frame was captured
+     */
+    public CompletableFuture<ScanResult> processEncodedImageAsync(ByteBuffer encodedJpeg, long captureNanos) {
+        return processEncodedImageAsync(Constants.DEFAULT_CAMERA_ID, encodedJpeg, captureNanos);
     }
 
-    public AlarmStatus getAlarmStatus() {
+    /**
+     * Encoded variant of {@link #processImageAsync(String, BufferedImage, long)}.
+     */
+    public CompletableFuture<ScanResult> processEncodedImageAsync(String cameraId, ByteBuffer encodedJpeg, long captureNanos) {
+        Camera camera = addCamera(cameraId);
+        camera.setLastEncodedFrame(encodedJpeg, captureNanos);
+        return applyWhenScanned(camera, imageScanExecutor.submitEncoded(encodedJpeg, Constants.CAT_CONFIDENCE_THRESHOLD), captureNanos);
+    }
+
+    /**
+     * Encoded variant of {@link #processCameraFrameAsync(String, BufferedImage, long)}.
+     */
+    public CompletableFuture<ScanResult> processEncodedCameraFrameAsync(String cameraId, ByteBuffer encodedJpeg, long captureNanos) {
+        Camera camera = addCamera(cameraId);
+        camera.setLastEncodedFrame(encodedJpeg, captureNanos);
+        if (!shouldScanFeed(camera)) {
+            return CompletableFuture.completedFuture(ScanResult.skipped(captureNanos, System.nanoTime()));
+        }
+        return applyWhenScanned(camera, imageScanExecutor.submitEncoded(encodedJpeg, Constants.CAT_CONFIDENCE_THRESHOLD), captureNanos);
+    }
+
+    /**
+     * For camera feeds only: the ScanGatingPolicy samples the camera's frames by arming status and
+     * claims the camera's own scan schedule.
+     */
+    private boolean shouldScanFeed(Camera camera) {
+        return scanGatingPolicy.shouldScan(camera, getArmingStatus(), System.nanoTime());
+    }
+
+    private CompletableFuture<ScanResult> applyWhenScanned(Camera camera, CompletableFuture<Boolean> scan, long captureNanos) {
+        CompletableFuture<ScanResult> result = scan.thenApply(cat -> {
+            boolean applied = applyScanResult(camera, cat, captureNanos);
+            return new ScanResult(cat, applied, captureNanos, System.nanoTime());
+        });
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) {
+                scan.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Apply a classifier answer unless a newer frame of the same camera has already been applied.
+     * @return true if the result changed the cat decision, false if it was stale
+     */
+    private synchronized boolean applyScanResult(Camera camera, boolean cat, long captureNanos) {
+        boolean before = camera.isCatDetected();
+        if (!camera.decide(cat, captureNanos)) {
+            return false;
+        }
+        updateCamerasSeeingCat(before, cat);
+        catDetected(camera, cat);
+        return true;
+    }
+
+    private void updateCamerasSeeingCat(boolean before, boolean after) {
+        if (before != after) {
+            camerasSeeingCat += after ? 1 : -1;
+        }
+    }
+
+    /**
+     * Register a camera, or return the one already registered under this id.
+     * 注册摄像头，已存在则返回已有的摄像头
+     */
+    public Camera addCamera(String cameraId) {
+        Objects.requireNonNull(cameraId, "cameraId must not be null");
+        return cameras.computeIfAbsent(cameraId, Camera::new);
+    }
+
+    /**
+     * Forget a camera; a cat it was seeing no longer counts.
+     */
+    public synchronized void removeCamera(String cameraId) {
+        Camera camera = cameras.remove(cameraId);
+        if (camera != null && camera.isCatDetected()) {
+            updateCamerasSeeingCat(true, false);
+            boolean anyCat = isCatDetected();
+            statusListeners.forEach(sl -> sl.catDetected(anyCat));
+        }
+    }
+
+    public Camera getCamera(String cameraId) {
+        return cameras.get(cameraId);
+    }
+
+    public List<Camera> getCameras() {
+        return Collections.unmodifiableList(new ArrayList<>(cameras.values()));
+    }
+
+    public synchronized AlarmStatus getAlarmStatus() {
         return securityRepository.getAlarmStatus();
     }
 
-    public ArmingStatus getArmingStatus() {
+    public synchronized ArmingStatus getArmingStatus() {
         return securityRepository.getArmingStatus();
     }
 
-    public Set<Sensor> getSensors() {
-        return securityRepository.getSensors();
+    /**
+     * @return copy of the sensors taken under the lock, so callers can iterate it while scans complete
+     */
+    public synchronized Set<Sensor> getSensors() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(securityRepository.getSensors()));
     }
 
-    public void addSensor(Sensor sensor) {
+    public synchronized void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
     }
 
-    public void removeSensor(Sensor sensor) {
+    public synchronized void removeSensor(Sensor sensor) {
         securityRepository.removeSensor(sensor);
     }
 
@@ -225,7 +461,11 @@ public class SecurityService {
      *  @return All sensors are inactive return true
      */
     private boolean isEverySensorInactive(){
-        return getSensors().stream().noneMatch(Sensor::getActive);
+        OptionalInt active = securityRepository.getActiveSensorCount(null);
+        if (active.isPresent()) {
+            return active.getAsInt() == 0;
+        }
+        return securityRepository.getSensors().stream().noneMatch(Sensor::getActive);
     }
 
     /**
@@ -235,7 +475,11 @@ public class SecurityService {
      * @return
      */
     private boolean isEveryOtherSensorInactive(Sensor sensor){
-         return getSensors().stream()
+         OptionalInt active = securityRepository.getActiveSensorCount(sensor.getSensorId());
+         if (active.isPresent()) {
+             return active.getAsInt() == 0;
+         }
+         return securityRepository.getSensors().stream()
                  .filter(s -> !s.getSensorId().equals(sensor.getSensorId()))
                  .noneMatch(Sensor::getActive);
     }
@@ -243,20 +487,57 @@ public class SecurityService {
     /**
      * All sensors are set to inactive
      */
-    public void resetSensorToInactive(){
-        Set<Sensor> sensorSet = getSensors().stream()
-                .peek(sensor -> sensor.setActive(false)).collect(Collectors.toSet());
-        securityRepository.reloadSensorsAll(sensorSet);
+    public synchronized void resetSensorToInactive(){
+        // 仓库能原地清除激活状态时不必遍历并重写全部传感器
+        // a repository that clears the active flags in place saves walking and rewriting every sensor
+        if (!securityRepository.deactivateAllSensors()) {
+            Set<Sensor> sensorSet = securityRepository.getSensors().stream()
+                    .peek(sensor -> sensor.setActive(false)).collect(Collectors.toSet());
+            securityRepository.reloadSensorsAll(sensorSet);
+        }
 
         // 通知监听者, 传感器的状态已经更改
         statusListeners.forEach(StatusListener::sensorStatusChanged);
     }
 
-    public boolean isCatDetected() {
-        return catDetected;
+    /**
+     * @return number of scans the shared worker pool runs at once
+     */
+    public int getMaxConcurrentScans() {
+        return imageScanExecutor.getMaxInFlight();
+    }
+
+    /**
+     * @return scans camera feeds may run at once; the remaining workers stay free for manual scans
+     */
+    public int getMaxCameraScans() {
+        return getMaxConcurrentScans() - Constants.SCAN_RESERVED_FOR_MANUAL;
     }
 
-    public void setCatDetected(boolean catDetected) {
-        this.catDetected = catDetected;
+    public ScanGatingPolicy getScanGatingPolicy() {
+        return scanGatingPolicy;
+    }
+
+    /**
+     * @return true if any camera currently sees a cat
+     */
+    public synchronized boolean isCatDetected() {
+        return camerasSeeingCat > 0;
+    }
+
+    /**
+     * Set the cat state of the default camera.
+     */
+    public synchronized void setCatDetected(boolean catDetected) {
+        boolean before = addCamera(Constants.DEFAULT_CAMERA_ID).setCatDetected(catDetected);
+        updateCamerasSeeingCat(before, catDetected);
+    }
+
+    /**
+     * No camera sees a cat any more, e.g. after disarming.
+     */
+    public synchronized void clearCatDetections() {
+        cameras.values().forEach(camera -> camera.setCatDetected(false));
+        camerasSeeingCat = 0;
     }
 }
@@ -29,6 +29,18 @@ public interface StatusListener {
 
     }
 
+    /**
+     * Notifies the listener of a new cat decision of one camera. {@link #catDetected(boolean)}
+     * follows with whether any camera sees a cat.
+     * 通知单个摄像头的猫检测结果
+     *
+     * @param cameraId camera whose frame was scanned
+     * @param catDetected true if this camera sees a cat
+     */
+    default void cameraCatDetected(String cameraId, boolean catDetected) {
+
+    }
+
     /**
      * Notifies the listener that a sensor status has changed.
      * 通知监听者传感器状态已更改。
@@ -11,8 +11,10 @@ module com.udacity.security {
     exports com.udacity.security.service;
     exports com.udacity.security.model;
     exports com.udacity.security.data;
+    exports com.udacity.security.camera;
     opens com.udacity.security.model;
     opens com.udacity.security.data;
     opens com.udacity.security.service to com.google.guice;
+    opens com.udacity.security.camera to com.google.guice;
 
 }
\ No newline at end of file
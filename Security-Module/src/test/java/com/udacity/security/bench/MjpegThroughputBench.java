@@ -0,0 +1,93 @@
+package com.udacity.security.bench;
+
+import com.udacity.image.service.ImageService;
+import com.udacity.image.stub.MjpegReplayServer;
+import com.udacity.security.camera.FrameSink;
+import com.udacity.security.camera.MjpegCameraSource;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures MJPEG ingest throughput against a local replay server.
+ * 测量 MJPEG 摄像头读取吞吐量以及读取线程的 CPU 开销
+ *
+ * Reports frames and megabytes per second and frames per CPU second of the reader thread, once
+ * with the encoded frames only (what the scan path sees) and once decoding every frame as the
+ * old per-frame decode did.
+ *
+ * Usage: MjpegThroughputBench [seconds] [image...]
+ */
+public class MjpegThroughputBench {
+    private static final String[] SAMPLE_IMAGES = {"sample-cat.jpg", "sample-not-cat.jpg", "sample-not-a-cat-fail.jpg"};
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        MjpegReplayServer.Builder builder = new MjpegReplayServer.Builder().setFps(0);
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                builder.addFrame(Path.of(args[i]));
+            }
+        } else {
+            for (String sample : SAMPLE_IMAGES) {
+                builder.addFrame(Path.of(sample));
+            }
+        }
+        try (MjpegReplayServer server = builder.build().start()) {
+            run(server, seconds, false);
+            run(server, seconds, true);
+        }
+    }
+
+    private static void run(MjpegReplayServer server, int seconds, boolean decode) throws IOException, InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        LongAdder frames = new LongAdder();
+        AtomicLong cpuStart = new AtomicLong(-1);
+        AtomicLong cpuNow = new AtomicLong();
+        FrameSink sink = new FrameSink() {
+            @Override
+            public void onFrame(String cameraId, BufferedImage frame, long captureNanos) {
+                frames.increment();
+            }
+
+            @Override
+            public void onEncodedFrame(String cameraId, ByteBuffer encodedJpeg, long captureNanos) {
+                if (decode) {
+                    ImageService.decode(encodedJpeg);
+                }
+                // 在读取线程上取 CPU 时间
+                // sample the CPU time of the reader thread on the reader thread itself
+                long cpu = threads.getCurrentThreadCpuTime();
+                cpuStart.compareAndSet(-1, cpu);
+                cpuNow.set(cpu);
+                frames.increment();
+            }
+        };
+
+        MjpegCameraSource source = new MjpegCameraSource("bench", server.getStreamUri());
+        source.start(sink);
+        // warm up the JIT before measuring
+        TimeUnit.SECONDS.sleep(1);
+        long frames0 = frames.sum();
+        long bytes0 = source.getBytes();
+        long cpu0 = cpuNow.get();
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(seconds);
+        long elapsed = System.nanoTime() - start;
+        long n = frames.sum() - frames0;
+        long bytes = source.getBytes() - bytes0;
+        long cpu = cpuNow.get() - cpu0;
+        source.close();
+
+        System.out.printf("%-14s %8.0f frames/s  %7.1f MB/s  %8.0f frames/cpu-s%n",
+                decode ? "decode frames" : "encoded only",
+                n / (elapsed / 1e9), bytes / (elapsed / 1e9) / (1 << 20), cpu > 0 ? n / (cpu / 1e9) : 0.0);
+    }
+}
@@ -0,0 +1,148 @@
+package com.udacity.security.bench;
+
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.constant.enums.SensorType;
+import com.udacity.security.data.OffHeapSecurityRepositoryImpl;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.SecurityRepository;
+import com.udacity.security.data.Storage;
+import com.udacity.security.model.Sensor;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Compares the TreeSet repository with the off-heap store, in direct memory and file-backed, for one large fleet.
+ * 对比 TreeSet 仓库与堆外存储 (直接内存 / 内存映射文件) 的堆占用、GC 停顿和更新耗时
+ *
+ * For each store reports the time to load the fleet, the heap it retains, the off-heap bytes,
+ * the pause of a full GC while it is held, the cost of one sensor update and of the
+ * "is every sensor inactive" check the alarm logic runs. Run with e.g. -Xmx4g.
+ *
+ * Usage: OffHeapSensorStoreBench [sensors] [updates]
+ */
+public class OffHeapSensorStoreBench {
+    private static final long ID_BITS = 0x5E45_0000_0000_0000L;
+    private static final SensorType[] TYPES = SensorType.values();
+
+    public static void main(String[] args) throws Exception {
+        int sensors = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Path directory = Files.createTempDirectory("sensor-store-bench");
+        try {
+            measure("TreeSet (Pretend)", sensors, updates, () -> new PretendDatabaseSecurityRepositoryImpl(
+                    fleet(sensors), AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, new NoStorage()));
+            measure("off-heap, direct", sensors, updates, () -> new OffHeapSecurityRepositoryImpl(
+                    fleet(sensors), AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, new NoStorage()));
+            measure("off-heap, mapped", sensors, updates, () -> new OffHeapSecurityRepositoryImpl(
+                    directory, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, new NoStorage(), () -> fleet(sensors)));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static Sensor sensor(int i) {
+        return new Sensor.Builder(new UUID(ID_BITS, i)).setName("Sensor " + i).setSensorType(TYPES[i % TYPES.length]).build();
+    }
+
+    private static Set<Sensor> fleet(int sensors) {
+        Set<Sensor> fleet = new TreeSet<>();
+        for (int i = 0; i < sensors; i++) {
+            fleet.add(sensor(i));
+        }
+        return fleet;
+    }
+
+    private static void measure(String store, int sensors, int updates, Supplier<SecurityRepository> open) throws Exception {
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        SecurityRepository repository = open.get();
+        long loadNanos = System.nanoTime() - start;
+        long retained = usedHeap() - heap;
+        long offHeap = repository instanceof OffHeapSecurityRepositoryImpl
+                ? ((OffHeapSecurityRepositoryImpl) repository).getOffHeapBytes() : 0;
+
+        long gcBefore = gcMillis();
+        start = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Random random = new Random(7);
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            Sensor sensor = sensor(random.nextInt(sensors));
+            sensor.setActive(random.nextBoolean());
+            repository.updateSensor(sensor);
+        }
+        double updateMicros = (System.nanoTime() - start) / 1e3 / updates;
+
+        // SecurityService 的判断方式: 有聚合时直接使用, 否则遍历
+        // the way SecurityService decides: the aggregate when there is one, a walk otherwise
+        start = System.nanoTime();
+        OptionalInt active = repository.getActiveSensorCount(null);
+        boolean inactive = active.isPresent() ? active.getAsInt() == 0
+                : repository.getSensors().stream().noneMatch(Sensor::getActive);
+        double checkMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("%s, %,d sensors: load %,d ms, heap %.1f MB, off-heap %.1f MB, full GC %d ms "
+                        + "(%d ms GC total), update %.1f us, inactive check %.3f ms (%s)%n",
+                store, repository.getSensors().size(), loadNanos / 1_000_000, retained / 1e6, offHeap / 1e6,
+                fullGcMillis, gcMillis() - gcBefore, updateMicros, checkMillis, inactive);
+        if (repository instanceof AutoCloseable) {
+            ((AutoCloseable) repository).close();
+        }
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static class NoStorage implements Storage {
+        @Override
+        public <T> void saveToJSON(String key, T value) {
+        }
+
+        @Override
+        public void put(String key, String value) {
+        }
+
+        @Override
+        public <T> T load(String key, Type typeOfT, T defaultValueObject) {
+            return defaultValueObject;
+        }
+
+        @Override
+        public String get(String key, String defaultValue) {
+            return defaultValue;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.udacity.security.bench;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.udacity.constant.enums.SensorType;
+import com.udacity.security.model.Sensor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Measures the retained heap per sensor after reading a fleet from its stored JSON.
+ * 测量从 JSON 读取传感器后每个传感器占用的堆内存
+ *
+ * Two fleets are read: one where every sensor has its own name and one where the names repeat
+ * (as in many homes with a "Front Door"). Each is held once in a list and once in the TreeSet
+ * the repository uses. Run with enough heap for the JSON, e.g. -Xmx4g.
+ *
+ * Usage: SensorFootprintBench [sensors] [distinctNames]
+ */
+public class SensorFootprintBench {
+    public static void main(String[] args) {
+        int sensors = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int distinctNames = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        Gson gson = new Gson();
+        // 先生成两份 JSON, 避免生成时的垃圾影响测量基线
+        // both JSON documents are generated first so their garbage does not skew the baseline
+        String unique = json(gson, sensors, sensors);
+        String repeated = json(gson, sensors, distinctNames);
+        measure(gson, "unique names", unique);
+        measure(gson, distinctNames + " distinct names", repeated);
+    }
+
+    private static String json(Gson gson, int sensors, int distinctNames) {
+        List<Sensor> fleet = new ArrayList<>(sensors);
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensors; i++) {
+            Sensor sensor = new Sensor.Builder().setName("Sensor " + (i % distinctNames)).setSensorType(types[i % types.length]).build();
+            sensor.setActive(i % 1000 == 0);
+            fleet.add(sensor);
+        }
+        return gson.toJson(fleet);
+    }
+
+    private static void measure(Gson gson, String fleet, String json) {
+        Type listType = new TypeToken<List<Sensor>>() {
+        }.getType();
+        long heap = usedHeap();
+        List<Sensor> loaded = gson.fromJson(json, listType);
+        long listBytes = usedHeap() - heap;
+        Set<Sensor> sorted = new TreeSet<>(loaded);
+        long setBytes = usedHeap() - heap - listBytes;
+        System.out.printf("%,d sensors, %s: %.1f bytes per sensor in a list, %.1f more in a TreeSet%n",
+                loaded.size(), fleet, (double) listBytes / loaded.size(), (double) setBytes / sorted.size());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
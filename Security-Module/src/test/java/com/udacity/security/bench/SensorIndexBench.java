@@ -0,0 +1,135 @@
+package com.udacity.security.bench;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.constant.enums.SensorType;
+import com.udacity.security.data.IndexedSecurityRepositoryImpl;
+import com.udacity.security.data.Storage;
+import com.udacity.security.model.Sensor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Compares loading a large sensor fleet the way SecurityModule does (Gson into a TreeSet) with
+ * opening the same fleet in IndexedSecurityRepositoryImpl.
+ * 对比 Gson 反序列化全部传感器与只加载传感器索引的启动耗时和内存
+ *
+ * Reports load time and retained heap of both, then the cost of the aggregates and of touching
+ * a few sensors of the indexed store. Run with enough heap for the JSON, e.g. -Xmx4g.
+ *
+ * Usage: SensorIndexBench [sensors] [touched]
+ */
+public class SensorIndexBench {
+    public static void main(String[] args) throws Exception {
+        int sensors = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int touched = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        Path directory = Files.createTempDirectory("sensor-index-bench");
+        Gson gson = new Gson();
+        Type setType = new TypeToken<Set<Sensor>>() {
+        }.getType();
+        try {
+            String json = generate(sensors, directory, gson);
+            System.out.printf("%d sensors, %.1f MB JSON, %.1f MB index%n", sensors, json.length() / 1e6,
+                    Files.size(directory.resolve("sensors.idx")) / 1e6);
+
+            long heap = usedHeap();
+            long start = System.nanoTime();
+            Set<Sensor> loaded = gson.fromJson(json, setType);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("  Gson into TreeSet:   %7.0f ms, %7.1f MB retained%n", elapsed / 1e6,
+                    (usedHeap() - heap) / 1e6);
+            System.out.printf("  (%d sensors loaded)%n", loaded.size());
+            loaded = null;
+            json = null;
+
+            heap = usedHeap();
+            start = System.nanoTime();
+            try (IndexedSecurityRepositoryImpl repository = new IndexedSecurityRepositoryImpl(directory,
+                    AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, new NoStorage(), () -> {
+                        throw new IllegalStateException("index exists");
+                    })) {
+                elapsed = System.nanoTime() - start;
+                System.out.printf("  sensor index open:   %7.0f ms, %7.1f MB retained%n", elapsed / 1e6, (usedHeap() - heap) / 1e6);
+
+                start = System.nanoTime();
+                int active = repository.getActiveSensorCount(null).getAsInt();
+                int total = repository.getSensors().size();
+                System.out.printf("  aggregates:          %7.3f ms (%d of %d active)%n", (System.nanoTime() - start) / 1e6, active, total);
+
+                heap = usedHeap();
+                start = System.nanoTime();
+                Sensor[] held = new Sensor[touched];
+                Iterator<Sensor> iterator = repository.getSensors().iterator();
+                long nameChars = 0;
+                for (int i = 0; i < touched && iterator.hasNext(); i++) {
+                    held[i] = iterator.next();
+                    nameChars += held[i].getName().length();
+                }
+                elapsed = System.nanoTime() - start;
+                System.out.printf("  touch %d sensors:  %7.1f ms, %7.2f MB retained, %d materialized (%d name chars)%n",
+                        touched, elapsed / 1e6, (usedHeap() - heap) / 1e6, repository.getMaterializedSensors(), nameChars);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Write the fleet into a fresh index and return its JSON; the sensors themselves are not retained.
+     */
+    private static String generate(int sensors, Path directory, Gson gson) {
+        Set<Sensor> fleet = new TreeSet<>();
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensors; i++) {
+            Sensor sensor = new Sensor.Builder().setName("Sensor " + i).setSensorType(types[i % types.length]).build();
+            sensor.setActive(i % 1000 == 0);
+            fleet.add(sensor);
+        }
+        new IndexedSecurityRepositoryImpl(directory, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED,
+                new NoStorage(), () -> fleet).close();
+        return gson.toJson(fleet);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static class NoStorage implements Storage {
+        @Override
+        public <T> void saveToJSON(String key, T value) {
+        }
+
+        @Override
+        public void put(String key, String value) {
+        }
+
+        @Override
+        public <T> T load(String key, Type typeOfT, T defaultValueObject) {
+            return defaultValueObject;
+        }
+
+        @Override
+        public String get(String key, String defaultValue) {
+            return defaultValue;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.udacity.security.camera;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class DirectoryCameraSourceTest {
+    @TempDir
+    Path cameraDir;
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillOval(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    // 写临时文件再原子移动
+    private void publish(String name, byte[] bytes) throws IOException {
+        Path partial = cameraDir.resolve(name + ".part");
+        Files.write(partial, bytes);
+        Files.move(partial, cameraDir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void awaitAtLeast(LongSupplier counter, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (counter.getAsLong() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(counter.getAsLong()).isAtLeast(expected);
+    }
+
+    @Test
+    void start_whenCameraDropsJpeg_shouldDeliverDecodedFrame() throws Exception {
+        BlockingQueue<BufferedImage> frames = new ArrayBlockingQueue<>(4);
+        try (DirectoryCameraSource source = new DirectoryCameraSource("front-door", cameraDir)) {
+            source.start((cameraId, frame, captureNanos) -> frames.offer(frame));
+
+            // 先写临时文件再原子移动, 和真实摄像头的写法一致
+            // write then atomically move, the way cameras publish snapshots
+            Path partial = cameraDir.resolve("snapshot.part");
+            ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "jpg", partial.toFile());
+            Files.writeString(cameraDir.resolve("notes.txt"), "not a frame");
+            Files.move(partial, cameraDir.resolve("snapshot.jpg"), StandardCopyOption.ATOMIC_MOVE);
+
+            // 部分平台的 WatchService 是轮询实现, 超时留足余量
+            // some platforms poll for WatchService events, so allow a generous timeout
+            BufferedImage frame = frames.poll(15, TimeUnit.SECONDS);
+            assertThat(frame).isNotNull();
+            assertThat(frame.getWidth()).isEqualTo(64);
+            assertThat(source.getFilesSeen()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void start_whenSinkThrowsOnFrame_shouldKeepDecodingLaterFrames() throws Exception {
+        BlockingQueue<BufferedImage> frames = new ArrayBlockingQueue<>(4);
+        AtomicInteger calls = new AtomicInteger();
+        try (DirectoryCameraSource source = new DirectoryCameraSource("front-door", cameraDir)) {
+            source.start((cameraId, frame, captureNanos) -> {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("scan pipeline rejected the frame");
+                }
+                frames.offer(frame);
+            });
+
+            publish("first.jpg", jpeg(32, 24));
+            awaitAtLeast(source::getSinkFailures, 1);
+            publish("second.jpg", jpeg(64, 48));
+
+            BufferedImage frame = frames.poll(15, TimeUnit.SECONDS);
+            assertThat(frame).isNotNull();
+            assertThat(frame.getWidth()).isEqualTo(64);
+            assertThat(source.getSinkFailures()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void start_whenFileIsStillBeingWritten_shouldSkipItUntilComplete() throws Exception {
+        BlockingQueue<BufferedImage> frames = new ArrayBlockingQueue<>(4);
+        byte[] complete = jpeg(64, 48);
+        try (DirectoryCameraSource source = new DirectoryCameraSource("front-door", cameraDir)) {
+            source.start((cameraId, frame, captureNanos) -> frames.offer(frame));
+
+            // 摄像头原地写入, 先只写出一半
+            // a camera writing in place, only half of the file is there yet
+            Path snapshot = cameraDir.resolve("snapshot.jpg");
+            Files.write(snapshot, Arrays.copyOf(complete, complete.length / 2));
+            awaitAtLeast(() -> source.getIncompleteFrames() + source.getDecodeFailures(), 1);
+            assertThat(frames).isEmpty();
+
+            Files.write(snapshot, complete);
+
+            BufferedImage frame = frames.poll(15, TimeUnit.SECONDS);
+            assertThat(frame).isNotNull();
+            // 下半部分也已解码, 不是半张图
+            // the lower half was decoded too, this is not a partial frame
+            Color lowerHalf = new Color(frame.getRGB(32, 40));
+            assertThat(lowerHalf.getRed()).isGreaterThan(200);
+            assertThat(lowerHalf.getBlue()).isLessThan(100);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.udacity.security.camera;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MjpegFramerTest {
+    private static final byte[] SMALL = jpegLike(300, 1);
+    private static final byte[] LARGE = jpegLike(5000, 7);
+
+    @Test
+    void drain_withContentLength_shouldSliceFramesAcrossSmallReads() {
+        byte[] stream = stream(true, SMALL, LARGE, SMALL, LARGE);
+
+        // 缓冲区小于一帧, 必须扩容并保留未完成的帧
+        // a buffer smaller than a frame has to grow and carry the incomplete frame over
+        List<byte[]> frames = feed(new MjpegFramer(1024), stream, 97);
+
+        assertThat(frames).hasSize(4);
+        assertThat(frames.get(0)).isEqualTo(SMALL);
+        assertThat(frames.get(1)).isEqualTo(LARGE);
+        assertThat(frames.get(2)).isEqualTo(SMALL);
+        assertThat(frames.get(3)).isEqualTo(LARGE);
+    }
+
+    @Test
+    void drain_withoutContentLength_shouldSplitAtNextBoundary() {
+        byte[] stream = stream(false, LARGE, SMALL, LARGE);
+
+        List<byte[]> frames = feed(new MjpegFramer(1024), stream, 256);
+
+        // 最后一帧要等下一个边界才算完整
+        // the last frame is only complete once the closing boundary arrives
+        assertThat(frames).hasSize(3);
+        assertThat(frames.get(0)).isEqualTo(LARGE);
+        assertThat(frames.get(1)).isEqualTo(SMALL);
+        assertThat(frames.get(2)).isEqualTo(LARGE);
+    }
+
+    @Test
+    void readResponseHead_whenNotMultipart_shouldThrow() {
+        MjpegFramer framer = new MjpegFramer(256);
+        framer.buffer().put("HTTP/1.0 200 OK\r\nContent-Type: image/jpeg\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertThrows(IllegalStateException.class, framer::readResponseHead);
+    }
+
+    private static List<byte[]> feed(MjpegFramer framer, byte[] stream, int readSize) {
+        List<ByteBuffer> slices = new ArrayList<>();
+        int pos = 0;
+        while (pos < stream.length) {
+            ByteBuffer buffer = framer.buffer();
+            int n = Math.min(Math.min(buffer.remaining(), readSize), stream.length - pos);
+            buffer.put(stream, pos, n);
+            pos += n;
+            if (framer.readResponseHead()) {
+                framer.drain(slices::add);
+            }
+        }
+        // 切片在之后的读取中必须保持不变
+        // slices must stay intact while later reads go on
+        List<byte[]> frames = new ArrayList<>();
+        for (ByteBuffer slice : slices) {
+            byte[] frame = new byte[slice.remaining()];
+            slice.get(frame);
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static byte[] stream(boolean contentLength, byte[]... frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("HTTP/1.0 200 OK\r\nContent-Type: multipart/x-mixed-replace; boundary=\"frame\"\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        for (byte[] frame : frames) {
+            String headers = "--frame\r\nContent-Type: image/jpeg\r\n"
+                    + (contentLength ? "Content-Length: " + frame.length + "\r\n" : "") + "\r\n";
+            out.writeBytes(headers.getBytes(StandardCharsets.US_ASCII));
+            out.writeBytes(frame);
+            out.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        out.writeBytes("--frame\r\n".getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static byte[] jpegLike(int length, int seed) {
+        byte[] bytes = new byte[length];
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xD8;
+        for (int i = 2; i < length - 2; i++) {
+            bytes[i] = (byte) ((i * 31 + seed) % 251);
+        }
+        bytes[length - 2] = (byte) 0xFF;
+        bytes[length - 1] = (byte) 0xD9;
+        return bytes;
+    }
+}
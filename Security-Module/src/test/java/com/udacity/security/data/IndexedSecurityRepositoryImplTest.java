@@ -0,0 +1,170 @@
+package com.udacity.security.data;
+
+import com.udacity.constant.common.Constants;
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.constant.enums.SensorType;
+import com.udacity.security.model.Sensor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IndexedSecurityRepositoryImplTest {
+
+    @Mock
+    private Storage storage;
+    @TempDir
+    Path directory;
+    private IndexedSecurityRepositoryImpl repository;
+
+    @AfterEach
+    void tearDown() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private Sensor createSensor(String name, SensorType type) {
+        return new Sensor.Builder().setName(name).setSensorType(type).build();
+    }
+
+    // 重新打开索引, 模拟应用重启
+    private IndexedSecurityRepositoryImpl reopen(Set<Sensor> legacySensors) {
+        if (repository != null) {
+            repository.close();
+        }
+        repository = new IndexedSecurityRepositoryImpl(directory, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED,
+                storage, () -> legacySensors);
+        return repository;
+    }
+
+    @Test
+    void open_freshDirectory_shouldImportLegacySensors() {
+        Set<Sensor> legacy = new TreeSet<>(Set.of(createSensor("door", SensorType.DOOR), createSensor("window", SensorType.WINDOW)));
+
+        reopen(legacy);
+
+        assertThat(repository.getSensors()).containsExactlyElementsIn(legacy);
+        // 已有索引时不再读取旧数据
+        assertThat(reopen(Set.of()).getSensors()).containsExactlyElementsIn(legacy);
+    }
+
+    @Test
+    void addRemoveUpdate_shouldSurviveReopen() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        Sensor window = createSensor("window", SensorType.WINDOW);
+        Sensor motion = createSensor("motion", SensorType.MOTION);
+        reopen(Set.of());
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(motion);
+        repository.removeSensor(door);
+        window.setActive(true);
+        repository.updateSensor(window);
+
+        reopen(Set.of());
+
+        assertThat(repository.getSensors()).containsExactly(window, motion);
+        for (Sensor sensor : repository.getSensors()) {
+            assertThat(sensor.getActive()).isEqualTo(sensor.equals(window));
+            assertThat(sensor.getSensorType()).isEqualTo(sensor.equals(window) ? SensorType.WINDOW : SensorType.MOTION);
+            assertThat(sensor.getName()).isEqualTo(sensor.equals(window) ? "window" : "motion");
+        }
+    }
+
+    @Test
+    void addSensor_sameSensorTwice_shouldStoreItOnce() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        reopen(Set.of());
+
+        repository.addSensor(door);
+        repository.addSensor(door);
+
+        assertThat(repository.getSensors()).hasSize(1);
+        assertThat(repository.getSensors().contains(door)).isTrue();
+    }
+
+    @Test
+    void getActiveSensorCount_shouldCountActiveSensorsWithoutExcludedOne() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        Sensor window = createSensor("window", SensorType.WINDOW);
+        reopen(Set.of(door, window));
+        door.setActive(true);
+        repository.updateSensor(door);
+
+        assertThat(repository.getActiveSensorCount(null).getAsInt()).isEqualTo(1);
+        assertThat(repository.getActiveSensorCount(door.getSensorId()).getAsInt()).isEqualTo(0);
+        assertThat(repository.getActiveSensorCount(window.getSensorId()).getAsInt()).isEqualTo(1);
+    }
+
+    @Test
+    void deactivateAllSensors_shouldDeactivateStoredAndHeldSensors() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        Sensor window = createSensor("window", SensorType.WINDOW);
+        reopen(Set.of());
+        repository.addSensor(door);
+        repository.addSensor(window);
+        door.setActive(true);
+        window.setActive(true);
+        repository.updateSensor(door);
+        repository.updateSensor(window);
+
+        assertThat(repository.deactivateAllSensors()).isTrue();
+
+        assertThat(repository.getActiveSensorCount(null).getAsInt()).isEqualTo(0);
+        assertThat(door.getActive()).isFalse();
+        assertThat(window.getActive()).isFalse();
+        assertThat(reopen(Set.of()).getActiveSensorCount(null).getAsInt()).isEqualTo(0);
+    }
+
+    @Test
+    void reloadSensorsAll_shouldReplaceStoredSensors() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        Sensor window = createSensor("window", SensorType.WINDOW);
+        Sensor motion = createSensor("motion", SensorType.MOTION);
+        reopen(Set.of(door, window));
+        window.setActive(true);
+
+        repository.reloadSensorsAll(Set.of(window, motion));
+
+        assertThat(reopen(Set.of()).getSensors()).containsExactly(window, motion);
+        assertThat(repository.getActiveSensorCount(null).getAsInt()).isEqualTo(1);
+    }
+
+    @Test
+    void getSensors_afterReopen_shouldOnlyMaterializeSensorsThatAreRead() {
+        Set<Sensor> legacy = new TreeSet<>();
+        for (int i = 0; i < 100; i++) {
+            legacy.add(createSensor("sensor-" + i, SensorType.DOOR));
+        }
+        reopen(legacy);
+        reopen(Set.of());
+
+        assertThat(repository.getSensors()).hasSize(100);
+        assertThat(repository.getMaterializedSensors()).isEqualTo(0);
+        Sensor first = repository.getSensors().iterator().next();
+        assertThat(first.getName()).startsWith("sensor-");
+        assertThat(repository.getMaterializedSensors()).isEqualTo(1);
+    }
+
+    @Test
+    void setAlarmStatus_shouldStillUseStorage() {
+        reopen(Set.of());
+
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        assertThat(repository.getAlarmStatus()).isEqualTo(AlarmStatus.ALARM);
+        verify(storage).put(Constants.ALARM_STATUS, AlarmStatus.ALARM.toString());
+    }
+}
@@ -0,0 +1,237 @@
+package com.udacity.security.data;
+
+import com.udacity.constant.enums.AlarmStatus;
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.constant.enums.SensorType;
+import com.udacity.security.model.Sensor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Behavior of the off-heap store itself; the repository contract shared with
+ * IndexedSecurityRepositoryImpl is covered by IndexedSecurityRepositoryImplTest.
+ */
+@ExtendWith(MockitoExtension.class)
+class OffHeapSecurityRepositoryImplTest {
+
+    @Mock
+    private Storage storage;
+    @TempDir
+    Path directory;
+    private OffHeapSecurityRepositoryImpl repository;
+
+    @AfterEach
+    void tearDown() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private Sensor createSensor(String name, SensorType type) {
+        return new Sensor.Builder().setName(name).setSensorType(type).build();
+    }
+
+    // 重新打开存储, 模拟应用重启
+    private OffHeapSecurityRepositoryImpl reopen() {
+        if (repository != null) {
+            repository.close();
+        }
+        repository = new OffHeapSecurityRepositoryImpl(directory, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED,
+                storage, Set::of);
+        return repository;
+    }
+
+    private OffHeapSecurityRepositoryImpl inDirectMemory(Set<Sensor> sensors) {
+        repository = new OffHeapSecurityRepositoryImpl(sensors, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, storage);
+        return repository;
+    }
+
+    @Test
+    void directMemoryStore_growingPastInitialCapacity_shouldCopyEveryRecord() {
+        inDirectMemory(Set.of());
+        long initialBytes = repository.getOffHeapBytes();
+        List<Sensor> added = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Sensor sensor = createSensor("sensor-" + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            added.add(sensor);
+            repository.addSensor(sensor);
+        }
+
+        assertThat(repository.getOffHeapBytes()).isGreaterThan(initialBytes);
+        assertThat(repository.getSensors()).containsExactlyElementsIn(added);
+        assertThat(repository.getActiveSensorCount(null).getAsInt()).isEqualTo(1000);
+        List<String> names = new ArrayList<>();
+        repository.getSensors().forEach(sensor -> names.add(sensor.getName()));
+        assertThat(names).contains("sensor-0");
+        assertThat(names).contains("sensor-2999");
+    }
+
+    @Test
+    void directMemoryStore_shouldNotCreateFiles() throws Exception {
+        inDirectMemory(Set.of(createSensor("door", SensorType.DOOR)));
+        repository.addSensor(createSensor("window", SensorType.WINDOW));
+
+        repository.close();
+
+        try (var files = Files.list(directory)) {
+            assertThat(files.count()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    void mappedStore_changes_shouldSurviveReopen() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        Sensor window = createSensor("window", SensorType.WINDOW);
+        Sensor unnamed = new Sensor.Builder().setSensorType(SensorType.MOTION).build();
+        reopen();
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(unnamed);
+        repository.removeSensor(door);
+        window.setActive(true);
+        repository.updateSensor(window);
+
+        reopen();
+
+        assertThat(repository.getSensors()).containsExactly(window, unnamed);
+        for (Sensor sensor : repository.getSensors()) {
+            assertThat(sensor.getActive()).isEqualTo(sensor.equals(window));
+            assertThat(sensor.getSensorType()).isEqualTo(sensor.equals(window) ? SensorType.WINDOW : SensorType.MOTION);
+            assertThat(sensor.getName()).isEqualTo(sensor.equals(window) ? "window" : null);
+        }
+    }
+
+    @Test
+    void mappedStore_growingPastInitialCapacity_shouldExtendFileAndSurviveReopen() throws Exception {
+        reopen();
+        long initialSize = Files.size(directory.resolve(OffHeapSecurityRepositoryImpl.RECORDS_FILE));
+        Set<Sensor> added = new TreeSet<>();
+        for (int i = 0; i < 2000; i++) {
+            Sensor sensor = createSensor("sensor-" + i, SensorType.DOOR);
+            added.add(sensor);
+            repository.addSensor(sensor);
+        }
+
+        reopen();
+
+        assertThat(Files.size(directory.resolve(OffHeapSecurityRepositoryImpl.RECORDS_FILE))).isGreaterThan(initialSize);
+        assertThat(repository.getSensors()).containsExactlyElementsIn(added);
+    }
+
+    @Test
+    void addAndRemove_manySensors_shouldReuseNameSpace() throws Exception {
+        reopen();
+        List<Sensor> kept = new ArrayList<>();
+        for (int round = 0; round < 20; round++) {
+            List<Sensor> added = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                added.add(createSensor("round-" + round + "-sensor-" + i, SensorType.WINDOW));
+            }
+            added.forEach(repository::addSensor);
+            kept.add(added.get(0));
+            added.subList(1, added.size()).forEach(repository::removeSensor);
+        }
+        long namesBytes = Files.size(directory.resolve(OffHeapSecurityRepositoryImpl.NAMES_FILE));
+
+        reopen();
+
+        assertThat(repository.getSensors()).containsExactlyElementsIn(kept);
+        for (Sensor sensor : repository.getSensors()) {
+            assertThat(sensor.getName()).endsWith("-sensor-0");
+        }
+        // 20 轮共写入约 50 万字节名称, 压缩后文件远小于此
+        assertThat(namesBytes).isLessThan(200_000L);
+    }
+
+    @Test
+    void open_notASensorStore_shouldThrow() throws Exception {
+        Files.write(directory.resolve(OffHeapSecurityRepositoryImpl.RECORDS_FILE), new byte[64]);
+        Files.write(directory.resolve(OffHeapSecurityRepositoryImpl.NAMES_FILE), new byte[64]);
+
+        assertThrows(RuntimeException.class, this::reopen);
+    }
+
+    @Test
+    void getSensors_heldSensor_shouldFollowChangesMadeThroughOtherObjects() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        inDirectMemory(Set.of(door));
+        Sensor held = repository.getSensors().iterator().next();
+        Sensor copy = new Sensor.Builder(door.getSensorId()).setName("door").setSensorType(SensorType.DOOR).build();
+
+        copy.setActive(true);
+        repository.updateSensor(copy);
+
+        assertThat(held.getActive()).isTrue();
+        assertThat(repository.getSensors().iterator().next()).isSameInstanceAs(held);
+        assertThat(repository.getHeldSensors()).isEqualTo(1);
+
+        repository.deactivateAllSensors();
+
+        assertThat(held.getActive()).isFalse();
+    }
+
+    @Test
+    void deactivateAllSensors_shouldDeactivateAddedSensors() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        inDirectMemory(Set.of());
+        repository.addSensor(door);
+        door.setActive(true);
+        repository.updateSensor(door);
+
+        repository.deactivateAllSensors();
+
+        assertThat(door.getActive()).isFalse();
+        assertThat(repository.getActiveSensorCount(null).getAsInt()).isEqualTo(0);
+    }
+
+    @Test
+    void reloadSensorsAll_shouldNotHoldReloadedSensors() {
+        Set<Sensor> sensors = new TreeSet<>();
+        for (int i = 0; i < 100; i++) {
+            sensors.add(createSensor("sensor-" + i, SensorType.DOOR));
+        }
+        inDirectMemory(sensors);
+
+        repository.reloadSensorsAll(sensors);
+
+        // 批量导入和重新加载不为每个传感器保留引用
+        assertThat(repository.getHeldSensors()).isEqualTo(0);
+    }
+
+    @Test
+    void forEachRecord_shouldVisitEveryRecord() {
+        Sensor door = createSensor("door", SensorType.DOOR);
+        Sensor window = createSensor("window", SensorType.WINDOW);
+        window.setActive(true);
+        inDirectMemory(Set.of(door, window));
+        Set<UUID> visited = new TreeSet<>();
+        List<Boolean> active = new ArrayList<>();
+
+        repository.forEachRecord((most, least, type, isActive) -> {
+            UUID sensorId = new UUID(most, least);
+            visited.add(sensorId);
+            assertThat(type).isEqualTo(sensorId.equals(door.getSensorId()) ? SensorType.DOOR : SensorType.WINDOW);
+            active.add(isActive);
+        });
+
+        assertThat(visited).containsExactly(door.getSensorId(), window.getSensorId());
+        assertThat(active).containsExactly(false, true);
+        assertThat(repository.getHeldSensors()).isEqualTo(0);
+    }
+}
@@ -10,9 +10,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -70,6 +73,23 @@ public class PreferencesStorageTest {
         assertThat(load).isEqualTo(sensor);
     }
 
+    @Test
+    void load_withLegacySensorJson_shouldReturnSensorWithSameFields(){
+        // 压缩前保存的传感器 JSON 格式
+        String key = "testKey";
+        String legacyJson = "{\"sensorId\":\"0f8fad5b-d9cb-469f-a165-70867728950e\",\"name\":\"Front Door\","
+                + "\"active\":true,\"sensorType\":\"DOOR\"}";
+
+        when(prefs.get(key, null)).thenReturn(legacyJson);
+        Sensor load = storage.load(key, Sensor.class, null);
+
+        assertThat(load.getSensorId().toString()).isEqualTo("0f8fad5b-d9cb-469f-a165-70867728950e");
+        assertThat(load.getName()).isEqualTo("Front Door");
+        assertThat(load.getActive()).isTrue();
+        assertThat(load.getSensorType()).isEqualTo(SensorType.DOOR);
+        assertThat(gson.toJson(load)).isEqualTo(legacyJson);
+    }
+
     @Test
     void load_withValidKeyAndSensor_shouldReturnDefaultValue(){
         // 准备测试数据
@@ -117,4 +137,17 @@ public class PreferencesStorageTest {
         when(prefs.get(key, null)).thenReturn(gsonJson);
         assertThat(storage.get(key,null)).isEqualTo(gsonJson);
     }
+
+    @Test
+    void flush_shouldFlushPreferences() throws BackingStoreException {
+        storage.flush();
+        verify(prefs).flush();
+    }
+
+    @Test
+    void flush_withBackingStoreFailure_shouldThrowRuntimeException() throws BackingStoreException {
+        doThrow(new BackingStoreException("disk full")).when(prefs).flush();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> storage.flush());
+        assertThat(e).hasCauseThat().isInstanceOf(BackingStoreException.class);
+    }
 }
@@ -13,7 +13,6 @@ import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.lang.reflect.Field;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -69,16 +68,14 @@ class PretendDatabaseSecurityRepositoryImplTest {
     }
 
     @Test
-    void updateSensor_withUpdateSensor_shouldUpdateSensorAndSaveSensorsToPreFs() throws NoSuchFieldException, IllegalAccessException {
+    void updateSensor_withUpdateSensor_shouldUpdateSensorAndSaveSensorsToPreFs() {
         // Arrange
         Sensor existingSensor = createSensor("Old Sensor", SensorType.DOOR);
         sensors.add(existingSensor);
 
-        Sensor updatedSensor = createSensor("Updated Sensor", SensorType.DOOR);
-        // 使用反射设置 updatedSensor 的 sensorId 与 existingSensor 一致
-        Field sensorIdField = Sensor.class.getDeclaredField("sensorId");
-        sensorIdField.setAccessible(true);
-        sensorIdField.set(updatedSensor, existingSensor.getSensorId());
+        // 使用相同的 sensorId 构建 updatedSensor
+        Sensor updatedSensor = new Sensor.Builder(existingSensor.getSensorId())
+                .setName("Updated Sensor").setSensorType(SensorType.DOOR).build();
 
         // Act: 调用要测试的方法
         repository.updateSensor(updatedSensor);
@@ -0,0 +1,144 @@
+package com.udacity.security.service;
+
+import com.udacity.image.service.ImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageScanExecutorTest {
+    // 阻塞识别请求, 直到测试放行
+    // Blocks every scan until the test releases it
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ImageService blockingImageService = (image, confidenceThreshold) -> {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    };
+    private ImageScanExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    void submit_whenMaxInFlightReached_shouldRejectImmediately() {
+        executor = new ImageScanExecutor(blockingImageService, 1, 5_000L);
+        CompletableFuture<Boolean> first = executor.submit(null, 70.0f);
+        CompletableFuture<Boolean> second = executor.submit(null, 70.0f);
+
+        ExecutionException e = assertThrows(ExecutionException.class, second::get);
+        assertThat(e).hasCauseThat().isInstanceOf(RejectedExecutionException.class);
+        assertThat(executor.getInFlight()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.join()).isTrue();
+    }
+
+    // 被中断的工作线程退出后才归还许可
+    // the permit comes back once the interrupted worker has left
+    private void awaitInFlight(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getInFlight() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(executor.getInFlight()).isEqualTo(expected);
+    }
+
+    @Test
+    void submit_whenScanExceedsTimeout_shouldCompleteExceptionallyAndReleasePermit() throws InterruptedException {
+        executor = new ImageScanExecutor(blockingImageService, 1, 50L);
+        CompletableFuture<Boolean> scan = executor.submit(null, 70.0f);
+
+        ExecutionException e = assertThrows(ExecutionException.class, scan::get);
+        assertThat(e).hasCauseThat().isInstanceOf(TimeoutException.class);
+        awaitInFlight(0);
+    }
+
+    @Test
+    void submit_whenCancelled_shouldReleasePermit() throws InterruptedException {
+        executor = new ImageScanExecutor(blockingImageService, 1, 5_000L);
+        CompletableFuture<Boolean> scan = executor.submit(null, 70.0f);
+        scan.cancel(true);
+
+        awaitInFlight(0);
+    }
+
+    @Test
+    void submit_whileTimedOutWorkerIsStuck_shouldKeepPermitAndReject() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        // 忽略中断的后端, 超时后工作线程仍卡住
+        // a backend that ignores interrupts keeps the worker stuck after the timeout
+        ImageService uninterruptible = (image, confidenceThreshold) -> {
+            started.countDown();
+            boolean interrupted = false;
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        executor = new ImageScanExecutor(uninterruptible, 1, 50L);
+        CompletableFuture<Boolean> stuck = executor.submit(null, 70.0f);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        ExecutionException timeout = assertThrows(ExecutionException.class, stuck::get);
+        assertThat(timeout).hasCauseThat().isInstanceOf(TimeoutException.class);
+        assertThat(executor.getInFlight()).isEqualTo(1);
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> executor.submit(null, 70.0f).get());
+        assertThat(rejected).hasCauseThat().isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        awaitInFlight(0);
+    }
+
+    @Test
+    void submit_cancelledBeforeItStarted_shouldReleasePermitAtOnce() {
+        ExecutorService busy = Executors.newSingleThreadExecutor();
+        try {
+            busy.submit(() -> {
+                release.await();
+                return null;
+            });
+            executor = new ImageScanExecutor(blockingImageService, busy, 2, 5_000L);
+            CompletableFuture<Boolean> queued = executor.submit(null, 70.0f);
+            assertThat(executor.getInFlight()).isEqualTo(1);
+
+            queued.cancel(true);
+
+            assertThat(executor.getInFlight()).isEqualTo(0);
+        } finally {
+            busy.shutdownNow();
+        }
+    }
+
+    @Test
+    void submit_fromCompletionCallback_shouldNotBeRejected() {
+        executor = new ImageScanExecutor((image, confidenceThreshold) -> true, 1, 5_000L);
+        CompletableFuture<CompletableFuture<Boolean>> next = executor.submit(null, 70.0f)
+                .thenApply(cat -> executor.submit(null, 70.0f));
+
+        assertThat(next.join().join()).isTrue();
+    }
+}
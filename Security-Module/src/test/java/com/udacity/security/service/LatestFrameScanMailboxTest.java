@@ -0,0 +1,124 @@
+package com.udacity.security.service;
+
+import com.udacity.image.service.ImageService;
+import com.udacity.security.data.FakeSecurityRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LatestFrameScanMailboxTest {
+    // 每次识别都阻塞, 直到测试放行一次
+    // Every scan blocks until the test lets one through
+    private final BlockingQueue<BufferedImage> started = new LinkedBlockingQueue<>();
+    private final Semaphore proceed = new Semaphore(0);
+    private final ImageService blockingImageService = (image, confidenceThreshold) -> {
+        started.add(image);
+        try {
+            proceed.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    };
+    private ImageScanExecutor scanExecutor;
+    private SecurityService securityService;
+
+    @AfterEach
+    void tearDown() {
+        proceed.release(100);
+        scanExecutor.close();
+    }
+
+    private LatestFrameScanMailbox newMailbox(int maxInFlight) {
+        scanExecutor = new ImageScanExecutor(blockingImageService, maxInFlight, 5_000L);
+        securityService = new SecurityService(new FakeSecurityRepository(), blockingImageService,
+                new HashSet<>(), scanExecutor);
+        return new LatestFrameScanMailbox(securityService);
+    }
+
+    private static BufferedImage frame() {
+        return new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private BufferedImage nextStarted() throws InterruptedException {
+        BufferedImage image = started.poll(5, TimeUnit.SECONDS);
+        assertThat(image).isNotNull();
+        return image;
+    }
+
+    @Test
+    void offer_whileScanRunning_shouldScanOnlyLatestWaitingFrame() throws InterruptedException {
+        LatestFrameScanMailbox mailbox = newMailbox(2);
+        BufferedImage first = frame();
+        BufferedImage replaced = frame();
+        BufferedImage latest = frame();
+
+        mailbox.offer("front-door", first, 1L);
+        assertThat(nextStarted()).isSameInstanceAs(first);
+        mailbox.offer("front-door", replaced, 2L);
+        mailbox.offer("front-door", latest, 3L);
+        proceed.release();
+
+        assertThat(nextStarted()).isSameInstanceAs(latest);
+        assertThat(mailbox.getFramesDropped()).isEqualTo(1);
+        assertThat(mailbox.getFramesOffered()).isEqualTo(3);
+    }
+
+    @Test
+    void offer_busyAndQuietCamera_shouldAlternateScans() throws InterruptedException {
+        LatestFrameScanMailbox mailbox = newMailbox(2);
+        BufferedImage busy1 = frame();
+        BufferedImage busy2 = frame();
+        BufferedImage busy3 = frame();
+        BufferedImage quiet1 = frame();
+
+        mailbox.offer("busy", busy1, 1L);
+        assertThat(nextStarted()).isSameInstanceAs(busy1);
+        mailbox.offer("busy", busy2, 2L);
+        mailbox.offer("quiet", quiet1, 3L);
+        proceed.release();
+
+        // 高帧率摄像头扫描完成后排到队尾, 安静的摄像头先扫描
+        assertThat(nextStarted()).isSameInstanceAs(quiet1);
+        mailbox.offer("busy", busy3, 4L);
+        proceed.release();
+        assertThat(nextStarted()).isSameInstanceAs(busy3);
+        assertThat(mailbox.getFramesDropped()).isEqualTo(1);
+    }
+
+    @Test
+    void processImageAsync_whileCameraFeedsSaturateMailbox_shouldNotBeRejected() throws InterruptedException {
+        LatestFrameScanMailbox mailbox = newMailbox(2);
+        mailbox.offer("front-door", frame(), 1L);
+        mailbox.offer("garden", frame(), 2L);
+        nextStarted();
+        assertThat(mailbox.getReadyCameras()).isEqualTo(1);
+
+        BufferedImage manual = frame();
+        // 手动扫描使用预留的工作线程
+        CompletableFuture<ScanResult> scan = securityService.processImageAsync(manual);
+
+        assertThat(nextStarted()).isSameInstanceAs(manual);
+        proceed.release(3);
+        assertThat(scan.join().isScanned()).isTrue();
+    }
+
+    @Test
+    void constructor_executorWithoutSpareWorker_shouldThrow() {
+        scanExecutor = new ImageScanExecutor(blockingImageService, 1, 5_000L);
+        SecurityService service = new SecurityService(new FakeSecurityRepository(), blockingImageService,
+                new HashSet<>(), scanExecutor);
+
+        assertThrows(IllegalArgumentException.class, () -> new LatestFrameScanMailbox(service));
+    }
+}
@@ -0,0 +1,90 @@
+package com.udacity.security.service;
+
+import com.udacity.constant.enums.ArmingStatus;
+import com.udacity.security.model.Camera;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class ScanGatingPolicyTest {
+
+    @Test
+    void shouldScan_givenSampleRates_shouldScanThatShareOfFrames() {
+        ScanGatingPolicy policy = new ScanGatingPolicy.Builder()
+                .setSampleRate(ArmingStatus.DISARMED, 0.0)
+                .setSampleRate(ArmingStatus.ARMED_HOME, 0.25)
+                .setSampleRate(ArmingStatus.ARMED_AWAY, 1.0)
+                .build();
+        Camera disarmed = new Camera("disarmed");
+        Camera home = new Camera("home");
+        Camera away = new Camera("away");
+
+        for (int i = 0; i < 8; i++) {
+            policy.shouldScan(disarmed, ArmingStatus.DISARMED, i);
+            policy.shouldScan(home, ArmingStatus.ARMED_HOME, i);
+            policy.shouldScan(away, ArmingStatus.ARMED_AWAY, i);
+        }
+
+        assertThat(policy.getScanned(ArmingStatus.DISARMED)).isEqualTo(0);
+        assertThat(policy.getScanned(ArmingStatus.ARMED_HOME)).isEqualTo(2);
+        assertThat(policy.getSkipped(ArmingStatus.ARMED_HOME)).isEqualTo(6);
+        assertThat(policy.getScanned(ArmingStatus.ARMED_AWAY)).isEqualTo(8);
+    }
+
+    @Test
+    void alwaysScan_shouldScanEveryFrameInEveryStatus() {
+        ScanGatingPolicy policy = ScanGatingPolicy.alwaysScan();
+        Camera camera = new Camera("camera");
+
+        for (ArmingStatus status : ArmingStatus.values()) {
+            assertThat(policy.shouldScan(camera, status, 0L)).isTrue();
+        }
+    }
+
+    @Test
+    void shouldScan_interleavedFeeds_shouldSampleEveryCameraAtItsRate() {
+        ScanGatingPolicy policy = new ScanGatingPolicy.Builder()
+                .setSampleRate(ArmingStatus.ARMED_HOME, 0.5)
+                .build();
+        Camera a = new Camera("a");
+        Camera b = new Camera("b");
+        int scannedA = 0;
+        int scannedB = 0;
+
+        // 两个摄像头的帧交替到达 A,B,A,B
+        // frames of the two feeds arrive interleaved A,B,A,B
+        for (int i = 0; i < 8; i++) {
+            scannedA += policy.shouldScan(a, ArmingStatus.ARMED_HOME, i) ? 1 : 0;
+            scannedB += policy.shouldScan(b, ArmingStatus.ARMED_HOME, i) ? 1 : 0;
+        }
+
+        assertThat(scannedA).isEqualTo(4);
+        assertThat(scannedB).isEqualTo(4);
+        assertThat(policy.getScanned(ArmingStatus.ARMED_HOME)).isEqualTo(8);
+        assertThat(policy.getSkipped(ArmingStatus.ARMED_HOME)).isEqualTo(8);
+    }
+
+    @Test
+    void shouldScan_sampledFrameTurnedAwayBySchedule_shouldKeepCreditForNextFrame() {
+        ScanGatingPolicy policy = new ScanGatingPolicy.Builder()
+                .setSampleRate(ArmingStatus.ARMED_HOME, 0.5)
+                .build();
+        Camera camera = new Camera("camera");
+        camera.setScanIntervalMillis(100L);
+        long interval = TimeUnit.MILLISECONDS.toNanos(100L);
+
+        assertThat(policy.shouldScan(camera, ArmingStatus.ARMED_HOME, 0L)).isFalse();
+        assertThat(policy.shouldScan(camera, ArmingStatus.ARMED_HOME, 1L)).isTrue();
+        // 已采样但扫描间隔未到: 不计为扫描, 额度保留
+        // sampled, but the interval has not passed: not counted as scanned, the credit stays
+        assertThat(policy.shouldScan(camera, ArmingStatus.ARMED_HOME, 2L)).isFalse();
+        assertThat(policy.shouldScan(camera, ArmingStatus.ARMED_HOME, 3L)).isFalse();
+        assertThat(policy.getScanned(ArmingStatus.ARMED_HOME)).isEqualTo(1);
+        assertThat(camera.getScheduleSkips()).isEqualTo(1);
+
+        assertThat(policy.shouldScan(camera, ArmingStatus.ARMED_HOME, 1L + interval)).isTrue();
+        assertThat(policy.getScanned(ArmingStatus.ARMED_HOME)).isEqualTo(2);
+    }
+}
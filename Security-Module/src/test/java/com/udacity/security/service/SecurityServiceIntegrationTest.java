@@ -7,6 +7,7 @@ import com.udacity.image.service.FakeImageService;
 import com.udacity.image.service.ImageService;
 import com.udacity.security.data.FakeSecurityRepository;
 import com.udacity.security.model.Sensor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -14,9 +15,15 @@ import org.junit.jupiter.params.provider.EnumSource;
 
 import java.awt.image.BufferedImage;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.*;
@@ -44,6 +51,11 @@ public class SecurityServiceIntegrationTest {
         securityService = new SecurityService(fakeRepository, fakeImageService, statusListeners);
     }
 
+    @AfterEach
+    void tearDown() {
+        securityService.close();
+    }
+
     private Sensor createSensor(String name, SensorType type) {
         return new Sensor.Builder().setName(name).setSensorType(type).build();
     }
@@ -232,4 +244,47 @@ public class SecurityServiceIntegrationTest {
         assertThat(fakeRepository.getSensors()).isEmpty();
     }
 
+    @Test
+    void scansCompletingWhileStateChanges_shouldNotFailOrRaiseAlarmWhileDisarmed() {
+        AtomicInteger scans = new AtomicInteger();
+        // 猫和无猫交替出现, 无猫结果会遍历传感器
+        // alternate cat and no cat; a no-cat answer walks the sensors
+        ImageService alternating = (image, confidenceThreshold) -> scans.incrementAndGet() % 2 == 0;
+        ImageScanExecutor executor = new ImageScanExecutor(alternating, 4, 5_000L);
+        SecurityService service = new SecurityService(fakeRepository, alternating, statusListeners, executor);
+        BufferedImage frame = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        List<CompletableFuture<ScanResult>> results = new ArrayList<>();
+        try {
+            for (int round = 0; round < 300; round++) {
+                service.setArmingStatus(ArmingStatus.ARMED_HOME);
+                for (int i = 0; i < 4; i++) {
+                    results.add(service.processImageAsync("camera-" + i, frame, System.nanoTime()));
+                }
+                Sensor sensor = createSensor("sensor-" + round, SensorType.DOOR);
+                service.addSensor(sensor);
+                service.changeSensorActivationStatus(sensor, true);
+                service.setArmingStatus(ArmingStatus.DISARMED);
+                // 撤防后, 之后完成的扫描不能再触发警报
+                // once disarmed, scans completing afterwards must not raise the alarm
+                assertThat(service.getAlarmStatus()).isEqualTo(AlarmStatus.NO_ALARM);
+                assertThat(service.getSensors().stream().filter(Sensor::getActive).count()).isAtMost(round + 1L);
+                if (round % 2 == 0) {
+                    service.removeSensor(sensor);
+                }
+            }
+            for (CompletableFuture<ScanResult> result : results) {
+                try {
+                    result.join();
+                } catch (CompletionException e) {
+                    // 只允许因并发上限被拒绝
+                    // only rejections by the in-flight limit are expected
+                    assertThat(e).hasCauseThat().isInstanceOf(RejectedExecutionException.class);
+                }
+            }
+            assertThat(service.getAlarmStatus()).isEqualTo(AlarmStatus.NO_ALARM);
+        } finally {
+            executor.close();
+        }
+    }
+
 }
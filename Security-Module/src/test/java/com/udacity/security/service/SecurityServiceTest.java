@@ -4,8 +4,10 @@ import com.udacity.constant.enums.AlarmStatus;
 import com.udacity.constant.enums.ArmingStatus;
 import com.udacity.constant.enums.SensorType;
 import com.udacity.image.service.ImageService;
+import com.udacity.image.service.RemoteScanException;
 import com.udacity.security.data.SecurityRepository;
 import com.udacity.security.model.Sensor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,8 +21,11 @@ import java.awt.image.BufferedImage;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,6 +46,12 @@ public class SecurityServiceTest {
         //securityService.addStatusListener(statusListener); // 添加监听器
     }
 
+    @AfterEach
+    void tearDown() {
+        // 关闭服务自己创建的扫描线程池
+        securityService.close();
+    }
+
     @ParameterizedTest
     @EnumSource(ArmingStatus.class)
     void setAlarmStatus_givenStatus_updatesArmingStatusInRepository(ArmingStatus armingStatus) {
@@ -278,6 +289,179 @@ public class SecurityServiceTest {
         }
     }
 
+    @Test
+    void processImageAsync_whenCatDetectedAndArmedHome_shouldTriggerAlarmOnCompletion() {
+        BufferedImage mockImage = Mockito.mock(BufferedImage.class);
+        when(imageService.imageContainsCat(mockImage, 70.0f)).thenReturn(true);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+
+        ScanResult result = securityService.processImageAsync(mockImage).join();
+
+        assertThat(result.isCatDetected()).isTrue();
+        verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    void close_shouldStopScanExecutorCreatedByService() {
+        BufferedImage mockImage = Mockito.mock(BufferedImage.class);
+        securityService.close();
+
+        // 线程池已关闭, 新的扫描被拒绝而不是留下空闲线程
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> securityService.processImageAsync(mockImage).join());
+        assertThat(e).hasCauseThat().isInstanceOf(RejectedExecutionException.class);
+        verifyNoInteractions(imageService);
+    }
+
+    @Test
+    void close_shouldNotStopInjectedScanExecutor() {
+        BufferedImage mockImage = Mockito.mock(BufferedImage.class);
+        try (ImageScanExecutor scanExecutor = new ImageScanExecutor(imageService)) {
+            new SecurityService(securityRepository, imageService, statusListeners, scanExecutor).close();
+
+            assertThat(scanExecutor.submit(mockImage, 70.0f).join()).isFalse();
+        }
+    }
+
+    @Test
+    void processImageAsync_whenRemoteScanFails_shouldLeaveCatAndAlarmUnchanged() {
+        BufferedImage mockImage = Mockito.mock(BufferedImage.class);
+        StatusListener listener = Mockito.mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        when(imageService.imageContainsCat(mockImage, 70.0f))
+                .thenThrow(new RemoteScanException("Remote image service unavailable, circuit breaker is OPEN"));
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> securityService.processImageAsync(mockImage).join());
+
+        assertThat(e).hasCauseThat().isInstanceOf(RemoteScanException.class);
+        assertThat(securityService.isCatDetected()).isFalse();
+        verify(securityRepository, never()).setAlarmStatus(any(AlarmStatus.class));
+        verifyNoInteractions(listener);
+    }
+
+    @Test
+    void processImageAsync_whenNewerFrameAlreadyDecided_shouldDiscardStaleResult() {
+        BufferedImage mockImage = Mockito.mock(BufferedImage.class);
+        when(imageService.imageContainsCat(mockImage, 70.0f)).thenReturn(false);
+
+        ScanResult newer = securityService.processImageAsync(mockImage, 200L).join();
+        ScanResult older = securityService.processImageAsync(mockImage, 100L).join();
+
+        assertThat(newer.isApplied()).isTrue();
+        assertThat(older.isApplied()).isFalse();
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @Test
+    void processImageAsync_whenOtherCameraStillSeesCat_shouldNotCancelAlarm() {
+        BufferedImage catImage = Mockito.mock(BufferedImage.class);
+        BufferedImage emptyImage = Mockito.mock(BufferedImage.class);
+        when(imageService.imageContainsCat(catImage, 70.0f)).thenReturn(true);
+        when(imageService.imageContainsCat(emptyImage, 70.0f)).thenReturn(false);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+
+        securityService.processImageAsync("front-door", catImage, 100L).join();
+        securityService.processImageAsync("garden", emptyImage, 50L).join();
+
+        // 每个摄像头的结果互不影响, garden 的旧帧不算过期
+        // cameras decide independently, the older garden frame is not stale
+        assertThat(securityService.getCamera("garden").isCatDetected()).isFalse();
+        assertThat(securityService.isCatDetected()).isTrue();
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+
+        securityService.processImageAsync("front-door", emptyImage, 200L).join();
+
+        assertThat(securityService.isCatDetected()).isFalse();
+        verify(securityRepository).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @Test
+    void processCameraFrameAsync_whenDisarmedAndPolicySkipsDisarmed_shouldNotCallImageService() {
+        ScanGatingPolicy policy = new ScanGatingPolicy.Builder()
+                .setSampleRate(ArmingStatus.DISARMED, 0.0)
+                .build();
+        try (ImageScanExecutor scanExecutor = new ImageScanExecutor(imageService)) {
+            SecurityService gatedService = new SecurityService(securityRepository, imageService, statusListeners,
+                    scanExecutor, policy);
+            BufferedImage mockImage = Mockito.mock(BufferedImage.class);
+            when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+
+            ScanResult result = gatedService.processCameraFrameAsync("front-door", mockImage, 100L).join();
+
+            assertThat(result.isScanned()).isFalse();
+            assertThat(policy.getSkipped(ArmingStatus.DISARMED)).isEqualTo(1);
+            verify(imageService, never()).imageContainsCat(any(BufferedImage.class), anyFloat());
+            verify(securityRepository, never()).setAlarmStatus(any(AlarmStatus.class));
+        }
+    }
+
+    @Test
+    void processCameraFrameAsync_interleavedFeedsAtHalfRate_shouldScanEveryCamera() {
+        ScanGatingPolicy policy = new ScanGatingPolicy.Builder()
+                .setSampleRate(ArmingStatus.ARMED_HOME, 0.5)
+                .build();
+        try (ImageScanExecutor scanExecutor = new ImageScanExecutor(imageService)) {
+            SecurityService gatedService = new SecurityService(securityRepository, imageService, statusListeners,
+                    scanExecutor, policy);
+            BufferedImage mockImage = Mockito.mock(BufferedImage.class);
+            when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+
+            // 两路视频流的帧交替到达, 每路都按各自的比例采样
+            // frames of two feeds interleave; each feed is sampled at its own rate
+            for (int i = 0; i < 4; i++) {
+                gatedService.processCameraFrameAsync("front-door", mockImage, 100L * i).join();
+                gatedService.processCameraFrameAsync("back-yard", mockImage, 100L * i + 50L).join();
+            }
+
+            assertThat(gatedService.getCamera("front-door").getScans()).isEqualTo(2);
+            assertThat(gatedService.getCamera("back-yard").getScans()).isEqualTo(2);
+            verify(imageService, times(4)).imageContainsCat(mockImage, 70.0f);
+        }
+    }
+
+    @Test
+    void processImage_whenDisarmedAndPolicySkipsDisarmed_shouldStillScan() {
+        ScanGatingPolicy policy = new ScanGatingPolicy.Builder()
+                .setSampleRate(ArmingStatus.DISARMED, 0.0)
+                .build();
+        try (ImageScanExecutor scanExecutor = new ImageScanExecutor(imageService)) {
+            SecurityService gatedService = new SecurityService(securityRepository, imageService, statusListeners,
+                    scanExecutor, policy);
+            BufferedImage mockImage = Mockito.mock(BufferedImage.class);
+            lenient().when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+
+            // 手动扫描不受采样策略影响
+            gatedService.processImage(mockImage);
+            ScanResult result = gatedService.processImageAsync(mockImage).join();
+
+            assertThat(result.isScanned()).isTrue();
+            assertThat(policy.getSkipped(ArmingStatus.DISARMED)).isEqualTo(0);
+            verify(imageService, times(2)).imageContainsCat(mockImage, 70.0f);
+        }
+    }
+
+    @Test
+    void processImage_catSeenWhileDisarmedThenArmedHome_shouldTriggerAlarm() {
+        ScanGatingPolicy policy = new ScanGatingPolicy.Builder()
+                .setSampleRate(ArmingStatus.DISARMED, 0.0)
+                .build();
+        try (ImageScanExecutor scanExecutor = new ImageScanExecutor(imageService)) {
+            SecurityService gatedService = new SecurityService(securityRepository, imageService, statusListeners,
+                    scanExecutor, policy);
+            BufferedImage catImage = Mockito.mock(BufferedImage.class);
+            when(imageService.imageContainsCat(catImage, 70.0f)).thenReturn(true);
+            when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+
+            gatedService.processImage(catImage);
+            verify(securityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+            gatedService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+            assertThat(gatedService.isCatDetected()).isTrue();
+            verify(securityRepository).setAlarmStatus(AlarmStatus.ALARM);
+        }
+    }
+
     @ParameterizedTest
     @EnumSource(AlarmStatus.class)
     void getAlarmStatus_shouldReturnAlarmStatus(AlarmStatus alarmStatus){